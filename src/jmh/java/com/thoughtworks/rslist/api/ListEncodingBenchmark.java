@@ -0,0 +1,102 @@
+package com.thoughtworks.rslist.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.RsEventDelta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cost of encoding a {@code /rs/list} page as JSON and as Smile, each with and without the gzip the
+ * server applies, next to a delta of twenty changed entries. Every method returns the bytes that
+ * would go on the wire, so their lengths can be compared directly. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListEncodingBenchmark {
+    @Param("1000")
+    int events;
+
+    ObjectMapper json;
+    ObjectMapper smile;
+    List<RsEvent> rsEvents;
+    RsEventDelta delta;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        json = new ObjectMapper();
+        smile = new ObjectMapper(new SmileFactory());
+        rsEvents = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            rsEvents.add(RsEvent.builder()
+                    .eventName("event " + random.nextInt(1_000_000))
+                    .keyword("keyword" + random.nextInt(50))
+                    .userId(random.nextInt(1_000_000))
+                    .voteNum(random.nextInt(100_000))
+                    .rank(i + 1)
+                    .build());
+        }
+        delta = RsEventDelta.builder()
+                .version(System.currentTimeMillis() << 20)
+                .rsEvents(rsEvents.subList(0, Math.min(20, events)))
+                .removed(Collections.emptyList())
+                .build();
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        return json.writeValueAsBytes(rsEvents);
+    }
+
+    @Benchmark
+    public byte[] jsonGzip() throws IOException {
+        return gzip(json.writeValueAsBytes(rsEvents));
+    }
+
+    @Benchmark
+    public byte[] smile() throws IOException {
+        return smile.writeValueAsBytes(rsEvents);
+    }
+
+    @Benchmark
+    public byte[] smileGzip() throws IOException {
+        return gzip(smile.writeValueAsBytes(rsEvents));
+    }
+
+    @Benchmark
+    public byte[] deltaJson() throws IOException {
+        return json.writeValueAsBytes(delta);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,89 @@
+package com.thoughtworks.rslist.ranking;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the boxed-comparator sort the list endpoint used to do with the primitive selection
+ * in {@link RankSelector}. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankSelectorBenchmark {
+    @Param("100000")
+    int events;
+
+    @Param("10")
+    int pageSize;
+
+    List<RsEvent> rsEvents;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Integer> ranks = new ArrayList<>(events);
+        for (int i = 1; i <= events; i++) {
+            ranks.add(i);
+        }
+        Collections.shuffle(ranks, random);
+        rsEvents = ranks.stream()
+                .map(rank -> RsEvent.builder().eventName("event").keyword("keyword").rank(rank).build())
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<RsEvent> comparatorSortThenPage() {
+        List<RsEvent> sorted = rsEvents.stream()
+                .sorted(Comparator.comparingInt(RsEvent::getRank))
+                .collect(Collectors.toList());
+        return sorted.subList(0, pageSize);
+    }
+
+    @Benchmark
+    public List<RsEvent> selectPage() {
+        return select(RankSelector.smallest(ranks(), rsEvents.size(), pageSize));
+    }
+
+    @Benchmark
+    public List<RsEvent> primitiveSortAll() {
+        return select(RankSelector.sort(ranks(), rsEvents.size()));
+    }
+
+    private int[] ranks() {
+        int[] ranks = new int[rsEvents.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = rsEvents.get(i).getRank();
+        }
+        return ranks;
+    }
+
+    private List<RsEvent> select(int[] positions) {
+        List<RsEvent> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(rsEvents.get(position));
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,56 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full re-rank of a large event set: single-threaded {@link RsEventColumns#rerank} against the
+ * parallel {@link RsEventColumns#rebuild}. The writer discards the changes, so this measures the
+ * ordering work only. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsEventColumnsBenchmark {
+    @Param("1000000")
+    int events;
+
+    RsEventColumns rsEventColumns;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rsEventColumns = new RsEventColumns(null);
+        for (int id = 1; id <= events; id++) {
+            int amount = id % 10_000 == 0 ? 100 : 0;
+            rsEventColumns.put(id, random.nextInt(100_000), amount > 0 ? id / 10_000 : 0, amount);
+        }
+    }
+
+    @Benchmark
+    public int rerank() {
+        return rsEventColumns.rerank((ids, ranks, count) -> {
+        });
+    }
+
+    @Benchmark
+    public int rebuild() {
+        return rsEventColumns.rebuild((ids, ranks, count) -> {
+        });
+    }
+}
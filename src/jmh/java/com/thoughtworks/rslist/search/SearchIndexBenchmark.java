@@ -0,0 +1,66 @@
+package com.thoughtworks.rslist.search;
+
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries against a million indexed events with a skewed vocabulary: two rare words, a word
+ * prefix, and a keyword shared by a twentieth of all events. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchIndexBenchmark {
+    private static final int WORDS = 50_000;
+
+    @Param("1000000")
+    int events;
+
+    SearchIndex searchIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        RsEventColumns rsEventColumns = new RsEventColumns(null);
+        searchIndex = new SearchIndex(null, rsEventColumns);
+        for (int id = 1; id <= events; id++) {
+            rsEventColumns.put(id, 0, id, 0);
+            searchIndex.add(id, "keyword" + id % 20, word(random) + " " + word(random) + " " + word(random));
+        }
+    }
+
+    @Benchmark
+    public int[] rareWords() {
+        return searchIndex.search("w4711 w123", 20);
+    }
+
+    @Benchmark
+    public int[] prefix() {
+        return searchIndex.search("w4711 w12", 20);
+    }
+
+    @Benchmark
+    public int[] commonKeyword() {
+        return searchIndex.search("keyword7", 20);
+    }
+
+    private static String word(Random random) {
+        return "w" + (int) (Math.pow(random.nextDouble(), 3) * WORDS);
+    }
+}
@@ -0,0 +1,207 @@
+package com.thoughtworks.rslist.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load: requests are due at a fixed rate whether or not earlier ones have been
+ * answered, and each latency is measured from the moment its request was due. A slow server thus
+ * shows up as queueing in the percentiles instead of quietly lowering the offered rate, which is
+ * what a closed loop of clients waiting on each other would do.
+ *
+ * <p>Requests are spread over {@code connections} threads, each holding one keep-alive connection.
+ * Each request picks a {@link Scenario} at random in proportion to the weights.
+ */
+class LoadDriver {
+    private static final byte[] DISCARD = new byte[8192];
+
+    final String baseUrl;
+    final int connections;
+    final int timeoutMillis;
+    final List<Scenario> scenarios;
+    private final int totalWeight;
+
+    LoadDriver(String baseUrl, int connections, Duration timeout, List<Scenario> scenarios) {
+        this.baseUrl = baseUrl;
+        this.connections = connections;
+        this.timeoutMillis = (int) timeout.toMillis();
+        this.scenarios = scenarios;
+        this.totalWeight = scenarios.stream().mapToInt(scenario -> scenario.weight).sum();
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+    }
+
+    /**
+     * Offers {@code rate} requests per second for {@code duration}, then waits for the backlog.
+     *
+     * @return statistics per scenario name, in the order the scenarios were given
+     */
+    Result run(int rate, Duration duration) throws InterruptedException {
+        Map<String, OperationStats> stats = new LinkedHashMap<>();
+        scenarios.forEach(scenario -> stats.put(scenario.name, new OperationStats(scenario.name)));
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long requests = duration.getSeconds() * rate + duration.getNano() / intervalNanos;
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Scenario scenario = pick();
+            workers.execute(new Request(scenario, stats.get(scenario.name), due));
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(Math.max(30_000, 10L * timeoutMillis), TimeUnit.MILLISECONDS)) {
+            for (Runnable abandoned : workers.shutdownNow()) {
+                ((Request) abandoned).abandon();
+            }
+        }
+        return new Result(stats, System.nanoTime() - start);
+    }
+
+    int get(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        return finish(connection);
+    }
+
+    int post(String path, String json) throws IOException {
+        HttpURLConnection connection = open(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        return finish(connection);
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        return connection;
+    }
+
+    /**
+     * Reads the body to its end, which hands the connection back to the keep-alive cache.
+     */
+    private static int finish(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try (InputStream body = in) {
+                while (body.read(DISCARD) >= 0) {
+                    // drained for keep-alive
+                }
+            }
+        }
+        return status;
+    }
+
+    private Scenario pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            ticket -= scenario.weight;
+            if (ticket < 0) {
+                return scenario;
+            }
+        }
+        return scenarios.get(scenarios.size() - 1);
+    }
+
+    private final class Request implements Runnable {
+        final Scenario scenario;
+        final OperationStats stats;
+        final long due;
+
+        Request(Scenario scenario, OperationStats stats, long due) {
+            this.scenario = scenario;
+            this.stats = stats;
+            this.due = due;
+        }
+
+        @Override
+        public void run() {
+            int status;
+            try {
+                status = scenario.call.send(LoadDriver.this);
+            } catch (IOException | RuntimeException e) {
+                status = 0;
+            }
+            stats.record(System.nanoTime() - due, status);
+        }
+
+        /**
+         * Counts a request still queued when the run gave up waiting as an error, so a backlog the
+         * server never worked off is not left out of the report.
+         */
+        void abandon() {
+            stats.record(System.nanoTime() - due, 0);
+        }
+    }
+
+    /**
+     * One kind of request, sent through the driver's {@link #get} and {@link #post}.
+     */
+    static final class Scenario {
+        final String name;
+        final int weight;
+        final Call call;
+
+        Scenario(String name, int weight, Call call) {
+            this.name = name;
+            this.weight = weight;
+            this.call = call;
+        }
+    }
+
+    @FunctionalInterface
+    interface Call {
+        /**
+         * @return the HTTP status of the answer
+         */
+        int send(LoadDriver driver) throws IOException;
+    }
+
+    static final class Result {
+        final Map<String, OperationStats> stats;
+        final long elapsedNanos;
+
+        Result(Map<String, OperationStats> stats, long elapsedNanos) {
+            this.stats = stats;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        OperationStats total() {
+            OperationStats total = new OperationStats("total");
+            stats.values().forEach(total::merge);
+            return total;
+        }
+
+        double throughput() {
+            return total().count() * 1e9 / elapsedNanos;
+        }
+    }
+}
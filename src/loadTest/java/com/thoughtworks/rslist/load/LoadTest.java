@@ -0,0 +1,213 @@
+package com.thoughtworks.rslist.load;
+
+import com.thoughtworks.rslist.RsListApplication;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test of the vote, buy and list endpoints against an in-process instance on an in-memory
+ * H2 database. Run with {@code ./gradlew loadTest}; every setting is a {@code load.*} system
+ * property, e.g. {@code ./gradlew loadTest -Dload.rate=2000 -Dload.duration=PT30S}.
+ *
+ * <p>Users and events are seeded first, see {@link Seeder}, then traffic is offered at {@code load.rate} requests per
+ * second: a warm-up that is not measured, then {@code load.duration} that is. The mix is set with
+ * {@code load.mix} as {@code list,vote,buy} weights:
+ * <ul>
+ * <li>list reads a top-{@code load.list-page} page of the vote ranking;</li>
+ * <li>vote casts one vote from a random user. Events are picked with Zipf weights of exponent
+ * {@code load.vote-skew}, so a few events draw most votes, as on a live list; 0 spreads the votes
+ * evenly;</li>
+ * <li>buy bids a random amount for a top-10 rank. Only the last percent of the events bid, so the
+ * events bought out of the list are never the ones being voted on.</li>
+ * </ul>
+ *
+ * <p>The report lists throughput, latency percentiles and outcomes per scenario. The run fails,
+ * exiting with status 1, when the error rate of any scenario is above {@code load.max-error-rate},
+ * when any scenario's p99 is above {@code load.max-p99}, or when fewer than
+ * {@code load.min-throughput} of the offered requests per second were answered. Answers with a
+ * 4xx status are counted as rejections, not errors: most bids are meant to lose. The rate limiter
+ * is switched off, since the aim is the capacity of the service behind it. Program arguments are
+ * passed on to the application, e.g. {@code ./gradlew loadTest --args='--rs.ranking.backend=redis'}.
+ */
+public class LoadTest {
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("load.rate", 5000);
+        Duration duration = Duration.parse(System.getProperty("load.duration", "PT60S"));
+        Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+        int connections = Integer.getInteger("load.connections", 256);
+        Duration timeout = Duration.parse(System.getProperty("load.timeout", "PT5S"));
+        int users = Integer.getInteger("load.users", 20_000);
+        int events = Integer.getInteger("load.events", 10_000);
+        int listPage = Integer.getInteger("load.list-page", 10);
+        double voteSkew = Double.parseDouble(System.getProperty("load.vote-skew", "1.0"));
+        int[] mix = Arrays.stream(System.getProperty("load.mix", "80,18,2").split(","))
+                .mapToInt(weight -> Integer.parseInt(weight.trim()))
+                .toArray();
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+        Duration maxP99 = Duration.parse(System.getProperty("load.max-p99", "PT0.2S"));
+        double minThroughput = Double.parseDouble(System.getProperty("load.min-throughput", "0.95"));
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--server.tomcat.max-threads=" + connections,
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--rs.rate-limit.enabled=false",
+                "--logging.level.root=WARN"));
+        arguments.addAll(Arrays.asList(args));
+        Seeder seeder = new Seeder(users, events);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(RsListApplication.class)
+                .listeners(seeder)
+                .run(arguments.toArray(new String[0]));
+        boolean passed;
+        try {
+            int[] userIds = seeder.userIds;
+            int[] rsEventIds = seeder.rsEventIds;
+            int bidders = Math.max(1, rsEventIds.length / 100);
+            int voted = rsEventIds.length - bidders;
+            double[] voteWeights = zipf(voted, voteSkew);
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            LoadDriver driver = new LoadDriver(baseUrl, connections, timeout, Arrays.asList(
+                    new LoadDriver.Scenario("list", mix[0], load ->
+                            load.get("/rs/list?start=1&end=" + listPage)),
+                    new LoadDriver.Scenario("vote", mix[1], load -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        int target = Arrays.binarySearch(voteWeights, random.nextDouble());
+                        return load.post("/rs/vote/" + rsEventIds[target < 0 ? -target - 1 : target],
+                                String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}",
+                                        userIds[random.nextInt(userIds.length)], LocalDateTime.now()));
+                    }),
+                    new LoadDriver.Scenario("buy", mix[2], load -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        return load.post("/rs/buy/" + rsEventIds[voted + random.nextInt(bidders)],
+                                String.format("{\"amount\":%d,\"rank\":%d}",
+                                        random.nextInt(1, 1_000_000), random.nextInt(1, 11)));
+                    })));
+
+            System.out.printf("warming up for %s at %d req/s%n", warmup, rate);
+            driver.run(rate, warmup);
+            System.out.printf("measuring for %s at %d req/s%n", duration, rate);
+            LoadDriver.Result result = driver.run(rate, duration);
+            passed = report(result, rate, maxErrorRate, maxP99, minThroughput);
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Seeds the database once the context is up, before the in-memory rankings load it on
+     * {@link org.springframework.boot.context.event.ApplicationReadyEvent}. The users get votes
+     * enough for the whole run. Event {@code i} starts with {@code events - i} votes at rank
+     * {@code i + 1}, a spread like that of a list that has been voted on for a while; with every
+     * event on zero votes, each first vote would move thousands of ranks at once.
+     */
+    static final class Seeder implements ApplicationListener<ApplicationStartedEvent> {
+        final int users;
+        final int events;
+        int[] userIds;
+        int[] rsEventIds;
+
+        Seeder(int users, int events) {
+            this.users = users;
+            this.events = events;
+        }
+
+        @Override
+        public void onApplicationEvent(ApplicationStartedEvent started) {
+            ConfigurableApplicationContext context = started.getApplicationContext();
+            List<UserDto> userDtos = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                userDtos.add(UserDto.builder().userName("user" + i).gender("female").age(20)
+                        .email("user" + i + "@load.test").phone("1" + (8_000_000_000L + i)).voteNum(1_000_000)
+                        .build());
+            }
+            context.getBean(UserRepository.class).saveAll(userDtos);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            userIds = jdbcTemplate.queryForList("select id from user order by id", Integer.class).stream()
+                    .mapToInt(Integer::intValue).toArray();
+            List<RsEventDto> rsEventDtos = new ArrayList<>(events);
+            for (int i = 0; i < events; i++) {
+                rsEventDtos.add(RsEventDto.builder().eventName("event " + i).keyword("keyword" + i % 50)
+                        .voteNum(events - i).rank(i + 1)
+                        .user(UserDto.builder().id(userIds[i % userIds.length]).build()).build());
+            }
+            context.getBean(RsEventRepository.class).saveAll(rsEventDtos);
+            rsEventIds = jdbcTemplate.queryForList("select id from rs_event order by id", Integer.class).stream()
+                    .mapToInt(Integer::intValue).toArray();
+            System.out.printf("seeded %d users and %d events%n", userIds.length, rsEventIds.length);
+        }
+    }
+
+    /**
+     * Cumulative Zipf distribution over {@code n} items, ending at 1.
+     */
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        cumulative[n - 1] = 1;
+        return cumulative;
+    }
+
+    private static boolean report(LoadDriver.Result result, int rate, double maxErrorRate, Duration maxP99,
+                                  double minThroughput) {
+        System.out.printf("%-6s %9s %9s %9s %9s %9s %9s %9s %9s %9s%n", "", "requests", "ok", "rejected",
+                "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        List<OperationStats> rows = new ArrayList<>(result.stats.values());
+        rows.add(result.total());
+        for (OperationStats stats : rows) {
+            System.out.printf("%-6s %9d %9d %9d %9d %9.1f %9.1f %9.1f %9.1f %9.1f%n", stats.name, stats.count(),
+                    stats.ok(), stats.rejected(), stats.errors(), millis(stats.percentile(0.5)),
+                    millis(stats.percentile(0.9)), millis(stats.percentile(0.99)),
+                    millis(stats.percentile(0.999)), millis(stats.percentile(1)));
+        }
+        double throughput = result.throughput();
+        System.out.printf("throughput %.0f req/s of %d offered%n", throughput, rate);
+
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, OperationStats> entry : result.stats.entrySet()) {
+            OperationStats stats = entry.getValue();
+            if (stats.errorRate() > maxErrorRate) {
+                failures.add(String.format("%s error rate %.4f above %.4f", entry.getKey(), stats.errorRate(),
+                        maxErrorRate));
+            }
+            if (stats.percentile(0.99) > maxP99.toNanos()) {
+                failures.add(String.format("%s p99 %.1f ms above %d ms", entry.getKey(),
+                        millis(stats.percentile(0.99)), maxP99.toMillis()));
+            }
+        }
+        if (throughput < minThroughput * rate) {
+            failures.add(String.format("throughput %.0f req/s below %.0f", throughput, minThroughput * rate));
+        }
+        failures.forEach(failure -> System.out.println("FAILED: " + failure));
+        return failures.isEmpty();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,88 @@
+package com.thoughtworks.rslist.load;
+
+import java.util.Arrays;
+
+/**
+ * Outcomes and latencies of one kind of request. Latencies are kept in full, a few MB for a
+ * minute at 5k req/s, so the percentiles are exact rather than bucketed.
+ */
+class OperationStats {
+    final String name;
+    private long[] latencies = new long[1 << 16];
+    private int count;
+    private long ok;
+    private long rejected;
+    private long errors;
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos  time from the moment the request was due to be sent until its answer arrived
+     * @param status HTTP status, or 0 when no answer arrived
+     */
+    synchronized void record(long nanos, int status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count << 1);
+        }
+        latencies[count++] = nanos;
+        if (status >= 200 && status < 400) {
+            ok++;
+        } else if (status >= 400 && status < 500) {
+            rejected++;
+        } else {
+            errors++;
+        }
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    synchronized long ok() {
+        return ok;
+    }
+
+    /**
+     * Answers with a 4xx status: lost bids, votes on events already bought out, and the like.
+     */
+    synchronized long rejected() {
+        return rejected;
+    }
+
+    /**
+     * 5xx answers, timeouts and connection failures.
+     */
+    synchronized long errors() {
+        return errors;
+    }
+
+    synchronized double errorRate() {
+        return count == 0 ? 0 : (double) errors / count;
+    }
+
+    /**
+     * Latency at {@code quantile}, between 0 and 1, in nanoseconds.
+     */
+    synchronized long percentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.max(0, Math.min(count - 1, Math.ceil(quantile * count) - 1))];
+    }
+
+    synchronized void merge(OperationStats other) {
+        for (int i = 0; i < other.count; i++) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count << 1);
+            }
+            latencies[count++] = other.latencies[i];
+        }
+        ok += other.ok;
+        rejected += other.rejected;
+        errors += other.errors;
+    }
+}
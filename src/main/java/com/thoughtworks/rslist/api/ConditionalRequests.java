@@ -0,0 +1,62 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+
+/**
+ * HTTP validators for the read endpoints, all derived from the version of {@link RsEventColumns}:
+ * it moves on every vote, purchase, new event and deletion, so a client or CDN whose copy carries
+ * the current version can be answered with 304 before any repository is read.
+ *
+ * <p>The ETag is strong, so it names the exact bytes: the negotiated variants get their own suffix,
+ * {@code -smile} when the client accepts Smile and {@code -gzip} when it accepts gzip, whether or
+ * not the body ends up large enough to be compressed. {@code Last-Modified} is the time the version
+ * was handed out. Versions are per node, so behind a load balancer a client that moves to another
+ * node sees one full response before its validators match again.
+ */
+@Component
+public class ConditionalRequests {
+    static final String SMILE = "application/x-jackson-smile";
+
+    final RsEventColumns rsEventColumns;
+    final String cacheControl;
+
+    public ConditionalRequests(RsEventColumns rsEventColumns,
+                               @Value("${rs.http-cache.max-age:PT0S}") Duration maxAge) {
+        this.rsEventColumns = rsEventColumns;
+        this.cacheControl = CacheControl.maxAge(maxAge).mustRevalidate().getHeaderValue();
+    }
+
+    /**
+     * Adds {@code ETag}, {@code Last-Modified} and {@code Cache-Control} to the response.
+     *
+     * @return true when the request's {@code If-None-Match} or {@code If-Modified-Since} still
+     * matches; the response is then a 304 and the handler should return at once
+     */
+    public boolean notModified(ServletWebRequest request) {
+        long lastModified = rsEventColumns.lastModified();
+        long version = rsEventColumns.version();
+        StringBuilder etag = new StringBuilder().append('"').append(version);
+        if (accepts(request, HttpHeaders.ACCEPT, SMILE)) {
+            etag.append("-smile");
+        }
+        if (accepts(request, HttpHeaders.ACCEPT_ENCODING, "gzip")) {
+            etag.append("-gzip");
+        }
+        etag.append('"');
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        request.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return request.checkNotModified(etag.toString(), lastModified);
+    }
+
+    private static boolean accepts(ServletWebRequest request, String header, String value) {
+        String accepted = request.getHeader(header);
+        return accepted != null && accepted.contains(value);
+    }
+}
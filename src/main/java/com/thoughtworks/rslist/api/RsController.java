@@ -1,16 +1,36 @@
 package com.thoughtworks.rslist.api;
 
+import com.thoughtworks.rslist.domain.CacheStats;
+import com.thoughtworks.rslist.domain.FraudStats;
+import com.thoughtworks.rslist.domain.ImportResult;
+import com.thoughtworks.rslist.domain.RateLimitStats;
+import com.thoughtworks.rslist.domain.RequestTrace;
 import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.RsEventDelta;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.exception.Error;
 import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.exception.TooManyRequestsException;
+import com.thoughtworks.rslist.fraud.VoteFraudDetector;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.ranking.TrendingWindow;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.IdempotencyCache;
+import com.thoughtworks.rslist.service.ImportService;
+import com.thoughtworks.rslist.service.RateLimiter;
 import com.thoughtworks.rslist.service.RsService;
+import com.thoughtworks.rslist.tracing.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -18,61 +38,138 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @Validated
 public class RsController {
+    public static final String LIST_VERSION_HEADER = "List-Version";
+    private static final int MAX_SEARCH_LIMIT = 1000;
+
     @Autowired
     RsEventRepository rsEventRepository;
     @Autowired
     UserRepository userRepository;
     @Autowired
     RsService rsService;
+    @Autowired
+    ImportService importService;
+    @Autowired
+    IdempotencyCache idempotencyCache;
+    @Autowired
+    RateLimiter rateLimiter;
+    @Autowired
+    InvalidationBus invalidationBus;
+    @Autowired
+    ConditionalRequests conditionalRequests;
+    @Autowired
+    Tracer tracer;
+    @Autowired
+    SecondLevelCache secondLevelCache;
+    @Autowired
+    VoteFraudDetector voteFraudDetector;
 
     @GetMapping("/rs/list")
     public ResponseEntity<List<RsEvent>> getRsEventListBetween(
-            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end) {
-        List<RsEvent> rsEvents =
-                rsEventRepository.findAll().stream()
-                        .map(item -> RsEvent.builder()
-                                .eventName(item.getEventName())
-                                .keyword(item.getKeyword())
-                                .userId(item.getId())
-                                .voteNum(item.getVoteNum())
-                                .rank(item.getRank())
-                                .build())
-                        .collect(Collectors.toList());
-        List<RsEvent> responseRsEvents = rsService.getResponseRsEvents(rsEvents, start, end);
-        if (start == null || end == null) {
-            return ResponseEntity.ok(rsEvents);
+            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end,
+            @RequestParam(required = false, defaultValue = "votes") String mode,
+            @RequestParam(required = false) String window,
+            @RequestParam(required = false) String keyword,
+            ServletWebRequest webRequest) {
+        if (keyword != null && (window != null || !"votes".equals(mode))) {
+            throw new RequestNotValidException("invalid mode");
+        }
+        if (window != null) {
+            TrendingWindow trendingWindow = TrendingWindow.of(window)
+                    .orElseThrow(() -> new RequestNotValidException("invalid window"));
+            List<RsEvent> trendingRsEvents = rsService.getTrendingRsEvents(trendingWindow,
+                    end == null ? Integer.MAX_VALUE : end);
+            if (start == null || end == null) {
+                return ResponseEntity.ok(trendingRsEvents);
+            }
+            if (start < 1 || start > end) {
+                throw new RequestNotValidException("invalid index");
+            }
+            return ResponseEntity.ok(trendingRsEvents.subList(Math.min(start - 1, trendingRsEvents.size()),
+                    trendingRsEvents.size()));
+        }
+        if (!"hot".equals(mode) && !"votes".equals(mode)) {
+            throw new RequestNotValidException("invalid mode");
+        }
+        if (conditionalRequests.notModified(webRequest)) {
+            return null;
+        }
+        if ("hot".equals(mode)) {
+            return ResponseEntity.ok(rsService.getHotRsEvents(start, end));
+        }
+        if (keyword != null) {
+            return ResponseEntity.ok(rsService.getRankedRsEvents(start, end, keyword));
+        }
+        long version = rsService.getRankingVersion();
+        return ResponseEntity.ok()
+                .header(LIST_VERSION_HEADER, String.valueOf(version))
+                .body(rsService.getRankedRsEvents(start, end, null));
+    }
+
+    /**
+     * Changes to the vote ranking since the version a client last saw, taken from the
+     * {@value #LIST_VERSION_HEADER} header of a full list or from the previous delta.
+     */
+    @GetMapping(value = "/rs/list", params = "sinceVersion")
+    public ResponseEntity<RsEventDelta> getRsEventDelta(
+            @RequestParam long sinceVersion, @RequestParam(required = false) Integer end,
+            @RequestParam(required = false, defaultValue = "votes") String mode,
+            @RequestParam(required = false) String window,
+            @RequestParam(required = false) String keyword) {
+        if (keyword != null || window != null || !"votes".equals(mode)) {
+            throw new RequestNotValidException("invalid mode");
+        }
+        if (end != null && end < 1) {
+            throw new RequestNotValidException("invalid index");
+        }
+        return ResponseEntity.ok(rsService.getRsEventDelta(sinceVersion, end));
+    }
+
+    @GetMapping("/rs/search")
+    public ResponseEntity<List<RsEvent>> searchRsEvents(@RequestParam String q,
+                                                        @RequestParam(required = false, defaultValue = "20") int limit) {
+        if (q.trim().isEmpty()) {
+            throw new RequestNotValidException("invalid query");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new RequestNotValidException("invalid limit");
         }
-        return ResponseEntity.ok(rsEvents.subList(start - 1, end));
+        return ResponseEntity.ok(rsService.searchRsEvents(q, limit));
     }
 
     @GetMapping("/rs/{index}")
-    public ResponseEntity<RsEvent> getRsEvent(@PathVariable int index) {
-        List<RsEvent> rsEvents =
-                rsEventRepository.findAll().stream()
-                        .map(
-                                item ->
-                                        RsEvent.builder()
-                                                .eventName(item.getEventName())
-                                                .keyword(item.getKeyword())
-                                                .userId(item.getId())
-                                                .voteNum(item.getVoteNum())
-                                                .build())
-                        .collect(Collectors.toList());
-        if (index < 1 || index > rsEvents.size()) {
+    public ResponseEntity<RsEvent> getRsEvent(@PathVariable int index, ServletWebRequest webRequest) {
+        if (index < 1) {
+            throw new RequestNotValidException("invalid index");
+        }
+        if (conditionalRequests.notModified(webRequest)) {
+            return null;
+        }
+        List<RsEventDto> page = rsEventRepository.findAllByOrderByIdAsc(PageRequest.of(index - 1, 1));
+        if (page.isEmpty()) {
             throw new RequestNotValidException("invalid index");
         }
-        return ResponseEntity.ok(rsEvents.get(index - 1));
+        RsEventDto item = page.get(0);
+        return ResponseEntity.ok(RsEvent.builder()
+                .eventName(item.getEventName())
+                .keyword(item.getKeyword())
+                .userId(item.getId())
+                .voteNum(item.getVoteNum())
+                .build());
     }
 
     @PostMapping("/rs/event")
@@ -87,24 +184,81 @@ public class RsController {
                 .voteNum(0)
                 .user(userDto.get())
                 .build();
-        rsEventRepository.save(build);
+        RsEventDto saved = rsEventRepository.save(build);
+        invalidationBus.publish(ChangeEvent.Type.RS_EVENT, saved.getId());
         return ResponseEntity.status(201).build();
     }
 
+    @PostMapping(value = "/rs/events", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ImportResult> addRsEvents(@RequestBody List<RsEvent> rsEvents) {
+        return ResponseEntity.ok(importService.importRsEvents(rsEvents));
+    }
+
+    @PostMapping(value = "/rs/events", consumes = ImportService.NDJSON)
+    public ResponseEntity<ImportResult> addRsEventsStreamed(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(importService.importRsEvents(request.getReader()));
+    }
+
     @PostMapping("/rs/vote/{id}")
-    public ResponseEntity<Object> vote(@PathVariable int id, @RequestBody Vote vote) {
-        rsService.vote(vote, id);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<Object> vote(@PathVariable int id, @RequestBody Vote vote,
+                                       @RequestHeader(value = IdempotencyCache.HEADER, required = false)
+                                               String idempotencyKey) {
+        return idempotencyCache.execute(idempotencyKey, "vote:" + id, vote, () -> {
+            try (Tracer.Span ignored = tracer.span("rate-limit")) {
+                rateLimiter.acquireVote(vote.getUserId(), id);
+            }
+            rsService.vote(vote, id);
+            return ResponseEntity.ok().build();
+        });
     }
 
     @PostMapping("/rs/buy/{id}")
-    public ResponseEntity<Object> buy(@PathVariable int id, @RequestBody Trade trade) {
-        if (!rsService.buy(trade, id)) {
-            return ResponseEntity.badRequest().build();
+    public ResponseEntity<Object> buy(@PathVariable int id, @RequestBody Trade trade,
+                                      @RequestHeader(value = IdempotencyCache.HEADER, required = false)
+                                              String idempotencyKey) {
+        return idempotencyCache.execute(idempotencyKey, "buy:" + id, trade, () -> {
+            try (Tracer.Span ignored = tracer.span("rate-limit")) {
+                rateLimiter.acquireBuy(id);
+            }
+            if (!rsService.buy(trade, id)) {
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    @GetMapping("/rs/rate-limit")
+    public ResponseEntity<RateLimitStats> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+
+    @GetMapping("/rs/fraud")
+    public ResponseEntity<FraudStats> getFraudStats() {
+        return ResponseEntity.ok(voteFraudDetector.getStats());
+    }
+
+    @GetMapping("/rs/cache-stats")
+    public ResponseEntity<CacheStats> getCacheStats() {
+        return ResponseEntity.ok(secondLevelCache.getStats());
+    }
+
+    @GetMapping("/rs/traces/slowest")
+    public ResponseEntity<List<RequestTrace>> getSlowestRequests(
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        if (limit < 1) {
+            throw new RequestNotValidException("invalid limit");
         }
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(tracer.slowest(limit));
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Error> handleTooManyRequests(TooManyRequestsException e) {
+        Error error = new Error();
+        error.setError(e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((e.getRetryAfterMillis() + 999) / 1000))
+                .body(error);
+    }
 
     @ExceptionHandler(RequestNotValidException.class)
     public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
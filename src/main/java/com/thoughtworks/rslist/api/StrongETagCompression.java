@@ -0,0 +1,24 @@
+package com.thoughtworks.rslist.api;
+
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets Tomcat compress responses that carry a strong ETag, which it refuses by default. The tags of
+ * {@link ConditionalRequests} already differ between the gzip and identity variants, so a
+ * compressed body never shares a strong ETag with an uncompressed one.
+ */
+@Component
+public class StrongETagCompression implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+    @Override
+    @SuppressWarnings("deprecation")
+    public void customize(TomcatServletWebServerFactory factory) {
+        factory.addConnectorCustomizers(connector -> {
+            if (connector.getProtocolHandler() instanceof AbstractHttp11Protocol) {
+                ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).setNoCompressionStrongETag(false);
+            }
+        });
+    }
+}
@@ -1,21 +1,34 @@
 package com.thoughtworks.rslist.api;
 
+import com.thoughtworks.rslist.domain.DeletionJob;
+import com.thoughtworks.rslist.domain.ImportResult;
 import com.thoughtworks.rslist.domain.User;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.ImportService;
+import com.thoughtworks.rslist.service.UserDeletionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
 
 @RestController
 public class UserController {
   @Autowired UserRepository userRepository;
+  @Autowired ImportService importService;
+  @Autowired UserDeletionService userDeletionService;
 
   @PostMapping("/user")
   public void register(@RequestBody @Valid User user) {
@@ -29,9 +42,39 @@ public class UserController {
     userRepository.save(userDto);
   }
 
+  @PostMapping(value = "/users", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ImportResult> registerAll(@RequestBody List<User> users) {
+    return ResponseEntity.ok(importService.importUsers(users));
+  }
+
+  @PostMapping(value = "/users", consumes = ImportService.NDJSON)
+  public ResponseEntity<ImportResult> registerAllStreamed(HttpServletRequest request)
+      throws IOException {
+    return ResponseEntity.ok(importService.importUsers(request.getReader()));
+  }
+
   @DeleteMapping("/user/{id}")
-  public ResponseEntity deleteUser(@PathVariable int id) {
-    userRepository.deleteById(id);
+  public ResponseEntity deleteUser(
+      @PathVariable int id, @RequestParam(required = false) boolean async) {
+    if (async) {
+      DeletionJob job = userDeletionService.submit(id);
+      return ResponseEntity.accepted().location(URI.create("/user/deletion/" + job.getId())).body(job);
+    }
+    DeletionJob job = userDeletionService.delete(id);
+    if (job.getStatus() == DeletionJob.Status.FAILED) {
+      return ResponseEntity.status(500).body(job);
+    }
+    if (!job.isUserDeleted()) {
+      return ResponseEntity.notFound().build();
+    }
     return ResponseEntity.ok().build();
   }
+
+  @GetMapping("/user/deletion/{jobId}")
+  public ResponseEntity<DeletionJob> getDeletionJob(@PathVariable String jobId) {
+    return userDeletionService
+        .getJob(jobId)
+        .map(ResponseEntity::ok)
+        .orElse(ResponseEntity.notFound().build());
+  }
 }
@@ -9,6 +9,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -16,10 +17,15 @@ import java.util.stream.Collectors;
 @RestController
 public class VoteController {
   @Autowired VoteRepository voteRepository;
+  @Autowired ConditionalRequests conditionalRequests;
 
   @GetMapping("/voteRecord")
   public ResponseEntity<List<Vote>> getVoteRecord(
-      @RequestParam int userId, @RequestParam int rsEventId, @RequestParam int pageIndex) {
+      @RequestParam int userId, @RequestParam int rsEventId, @RequestParam int pageIndex,
+      ServletWebRequest webRequest) {
+    if (conditionalRequests.notModified(webRequest)) {
+      return null;
+    }
     Pageable pageable = PageRequest.of(pageIndex - 1, 5);
     return ResponseEntity.ok(
         voteRepository.findAllByUserIdAndRsEventId(userId, rsEventId, pageable).stream()
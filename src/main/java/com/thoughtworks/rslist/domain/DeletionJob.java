@@ -0,0 +1,24 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class DeletionJob {
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+
+    private String id;
+    private int userId;
+    private volatile Status status = Status.PENDING;
+    private volatile int deletedRsEvents;
+    private volatile int deletedVotes;
+    private volatile int deletedTrades;
+    private volatile boolean userDeleted;
+    private volatile String error;
+
+    public DeletionJob(String id, int userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+}
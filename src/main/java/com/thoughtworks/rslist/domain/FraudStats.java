@@ -0,0 +1,20 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FraudStats {
+    private long screened;
+    private long flagged;
+    private long quarantined;
+    private long userBursts;
+    private long repeatedPairs;
+    private long concentratedEvents;
+    private int trackedEvents;
+}
@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ImportResult {
+    private int total;
+    private int imported;
+    private List<ImportError> errors = new ArrayList<>();
+
+    public ImportResult(int total) {
+        this.total = total;
+    }
+
+    public void merge(ImportResult other) {
+        total += other.getTotal();
+        imported += other.getImported();
+        errors.addAll(other.getErrors());
+    }
+}
@@ -0,0 +1,19 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitStats {
+    private long userRejections;
+    private long rsEventRejections;
+    private long untrackedUsers;
+    private long untrackedRsEvents;
+    private int trackedUsers;
+    private int trackedRsEvents;
+}
@@ -0,0 +1,24 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Answer to {@code /rs/list?sinceVersion=}: the events whose votes or rank changed since that
+ * version, with their current rank, and the ids of events that left the list. When the version is
+ * no longer covered, {@code full} is set and {@code rsEvents} is the whole list.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RsEventDelta {
+    private long version;
+    private boolean full;
+    private List<RsEvent> rsEvents;
+    private List<Integer> removed;
+}
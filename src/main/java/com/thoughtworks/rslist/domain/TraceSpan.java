@@ -0,0 +1,17 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraceSpan {
+    private String path;
+    private long count;
+    private double totalMillis;
+    private double maxMillis;
+}
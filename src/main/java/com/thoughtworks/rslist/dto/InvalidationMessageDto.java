@@ -0,0 +1,28 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "invalidation_message")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvalidationMessageDto {
+    @Id
+    @GeneratedValue
+    private int id;
+    @Column(length = 8192)
+    private byte[] payload;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,32 @@
+package com.thoughtworks.rslist.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox_event")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEventDto {
+    @Id
+    @GeneratedValue
+    private Integer id;
+    private String type;
+    private int rsEventId;
+    @JsonRawValue
+    @Column(length = 1024)
+    private String payload;
+    private LocalDateTime createdAt;
+}
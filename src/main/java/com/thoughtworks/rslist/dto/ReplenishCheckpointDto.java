@@ -0,0 +1,31 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "replenish_checkpoint")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplenishCheckpointDto {
+    @Id
+    @GeneratedValue
+    private int id;
+    private int amount;
+    private int cap;
+    private int lastUserId;
+    private int maxUserId;
+    private int replenishedUsers;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
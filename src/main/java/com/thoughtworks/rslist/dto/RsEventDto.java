@@ -1,12 +1,18 @@
 package com.thoughtworks.rslist.dto;
 
+import com.thoughtworks.rslist.ranking.RsEventColumnsListener;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
@@ -20,6 +26,9 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "rsEvent")
+@EntityListeners(RsEventColumnsListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCache.RS_EVENT_REGION)
 public class RsEventDto {
   @Id @GeneratedValue private int id;
   private String eventName;
@@ -1,10 +1,14 @@
 package com.thoughtworks.rslist.dto;
 
+import com.thoughtworks.rslist.repository.SecondLevelCache;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -16,6 +20,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "user")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCache.USER_REGION)
 @Data
 @Builder
 @NoArgsConstructor
@@ -31,6 +37,7 @@ public class UserDto {
     private String email;
     private String phone;
     private int voteNum =10;
+    private int voteWatermark;
 
     @OneToMany(cascade = CascadeType.REMOVE, mappedBy = "user")
     private List<RsEventDto> rsEventDtos;
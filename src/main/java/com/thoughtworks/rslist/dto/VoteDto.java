@@ -27,4 +27,6 @@ public class VoteDto {
   private int num;
   @ManyToOne @JoinColumn(name = "user_id") private UserDto user;
   @ManyToOne @JoinColumn(name = "rs_event_id") private RsEventDto rsEvent;
+  private Integer logSeq;
+  private boolean quarantined;
 }
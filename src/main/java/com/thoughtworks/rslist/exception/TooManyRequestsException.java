@@ -0,0 +1,20 @@
+package com.thoughtworks.rslist.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+  private String error;
+  private long retryAfterMillis;
+
+  public TooManyRequestsException(String error, long retryAfterMillis) {
+    this.error = error;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+
+  @Override
+  public String getMessage() {
+    return error;
+  }
+}
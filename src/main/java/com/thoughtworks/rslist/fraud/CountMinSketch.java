@@ -0,0 +1,53 @@
+package com.thoughtworks.rslist.fraud;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch of counts per {@code long} key in {@code depth} rows of {@code width} counters.
+ * An estimate is never below the true count, and with probability {@code 1 - e^-depth} it is at
+ * most {@code e / width} of the total count above it. Memory is fixed however many keys are added.
+ */
+final class CountMinSketch {
+    private final int depth;
+    private final int mask;
+    private final long[] counters;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    CountMinSketch(int width, int depth) {
+        int rowWidth = width <= 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.mask = rowWidth - 1;
+        this.counters = new long[rowWidth * depth];
+    }
+
+    /**
+     * Adds {@code count} to {@code key} and returns the new estimate, in one pass over the rows.
+     */
+    long add(long key, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = index(key, row);
+            counters[index] += count;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(key, row)]);
+        }
+        return estimate;
+    }
+
+    void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    private int index(long key, int row) {
+        return row * (mask + 1) + (int) (Hashing.mix(key, row) & mask);
+    }
+}
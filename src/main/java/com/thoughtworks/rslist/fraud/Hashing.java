@@ -0,0 +1,19 @@
+package com.thoughtworks.rslist.fraud;
+
+final class Hashing {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private Hashing() {
+    }
+
+    /**
+     * 64-bit hash of {@code key}, a different one for each {@code seed}: the finalizer of
+     * MurmurHash3, which spreads consecutive ids over all bits.
+     */
+    static long mix(long key, int seed) {
+        long hash = key + SEED * (seed + 1);
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
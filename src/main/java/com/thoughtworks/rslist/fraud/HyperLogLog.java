@@ -0,0 +1,60 @@
+package com.thoughtworks.rslist.fraud;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimate of the number of distinct {@code long} keys, in {@code 2^precision} one-byte
+ * registers. The standard error is about {@code 1.04 / sqrt(2^precision)}, 3% at precision 10;
+ * small counts fall back to linear counting, which is close to exact.
+ */
+final class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+    private final double alpha;
+
+    HyperLogLog(int precision) {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        int m = registers.length;
+        this.alpha = m >= 128 ? 0.7213 / (1 + 1.079 / m) : m == 64 ? 0.709 : m == 32 ? 0.697 : 0.673;
+    }
+
+    void add(long key) {
+        long hash = Hashing.mix(key, 0);
+        int index = (int) (hash >>> (64 - precision));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    long estimate() {
+        return estimate(null);
+    }
+
+    /**
+     * Estimate of the distinct keys added to this or to {@code other}, which must have the same
+     * precision; neither is changed.
+     */
+    long estimate(HyperLogLog other) {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            int register = other == null ? registers[i] : Math.max(registers[i], other.registers[i]);
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+}
@@ -0,0 +1,260 @@
+package com.thoughtworks.rslist.fraud;
+
+import com.thoughtworks.rslist.domain.FraudStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Screens every vote for the marks of a voting ring, in fixed memory and without a query.
+ *
+ * <p>Three signals are kept over the current {@code rs.fraud.window} and the one before it:
+ * <ul>
+ * <li>votes per user, in a {@link CountMinSketch}: above {@code rs.fraud.max-user-votes} the vote
+ * is a {@link Anomaly#USER_BURST};</li>
+ * <li>votes per user and event, in a second sketch: above {@code rs.fraud.max-pair-votes} the vote
+ * is a {@link Anomaly#REPEATED_PAIR};</li>
+ * <li>votes and distinct voters per event, the latter in a {@link HyperLogLog}: once an event has
+ * {@code rs.fraud.min-event-votes} votes, more than {@code rs.fraud.max-votes-per-voter} of them
+ * per distinct voter make a {@link Anomaly#CONCENTRATED_EVENT}. Only the
+ * {@code rs.fraud.tracked-events} most recently voted events are tracked; an event that drops out
+ * starts over.</li>
+ * </ul>
+ * Sketch counts can only overestimate, so a flagged vote is not proof, which is why quarantine is
+ * off unless {@code rs.fraud.quarantine} is set. A quarantined vote is still recorded and still
+ * spends the user's votes, but is kept out of the event's vote count and every ranking. The vote
+ * log has no room for the mark, so with {@code rs.vote-log.enabled} votes are only flagged.
+ *
+ * <p>One lock guards the sketches. A screening hashes a handful of times under it, and once an
+ * event has enough votes to be judged also reads its two voter registers; a few microseconds at
+ * most.
+ */
+@Component
+public class VoteFraudDetector {
+    private static final Logger log = LoggerFactory.getLogger(VoteFraudDetector.class);
+
+    final boolean enabled;
+    final boolean quarantine;
+    final long windowNanos;
+    final Thresholds thresholds;
+    final int trackedEvents;
+    final int precision;
+    final LongSupplier nanoClock;
+    private final long origin;
+    private final CountMinSketch[] userVotes;
+    private final CountMinSketch[] pairVotes;
+    private final LinkedHashMap<Integer, EventVotes> events;
+    private final LongAdder screened = new LongAdder();
+    private final LongAdder flagged = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+    private final LongAdder[] anomalies = new LongAdder[Anomaly.values().length];
+    private long epoch;
+
+    @Autowired
+    public VoteFraudDetector(@Value("${rs.fraud.enabled:true}") boolean enabled,
+                             @Value("${rs.fraud.quarantine:false}") boolean quarantine,
+                             @Value("${rs.vote-log.enabled:false}") boolean voteLogEnabled,
+                             @Value("${rs.fraud.window:PT10M}") Duration window,
+                             @Value("${rs.fraud.max-user-votes:200}") long maxUserVotes,
+                             @Value("${rs.fraud.max-pair-votes:50}") long maxPairVotes,
+                             @Value("${rs.fraud.min-event-votes:100}") long minEventVotes,
+                             @Value("${rs.fraud.max-votes-per-voter:10}") double maxVotesPerVoter,
+                             @Value("${rs.fraud.tracked-events:2000}") int trackedEvents,
+                             @Value("${rs.fraud.sketch-width:4096}") int sketchWidth,
+                             @Value("${rs.fraud.sketch-depth:4}") int sketchDepth,
+                             @Value("${rs.fraud.precision:10}") int precision) {
+        this(enabled, quarantine && !voteLogEnabled, window,
+                new Thresholds(maxUserVotes, maxPairVotes, minEventVotes, maxVotesPerVoter),
+                trackedEvents, sketchWidth, sketchDepth, precision, System::nanoTime);
+        if (quarantine && voteLogEnabled) {
+            log.warn("vote quarantine is not supported with the vote log, suspicious votes are only flagged");
+        }
+    }
+
+    VoteFraudDetector(boolean enabled, boolean quarantine, Duration window, Thresholds thresholds,
+                      int trackedEvents, int sketchWidth, int sketchDepth, int precision, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.quarantine = quarantine;
+        this.windowNanos = window.toNanos();
+        this.thresholds = thresholds;
+        this.trackedEvents = trackedEvents;
+        this.precision = precision;
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+        this.userVotes = new CountMinSketch[]{
+                new CountMinSketch(sketchWidth, sketchDepth), new CountMinSketch(sketchWidth, sketchDepth)};
+        this.pairVotes = new CountMinSketch[]{
+                new CountMinSketch(sketchWidth, sketchDepth), new CountMinSketch(sketchWidth, sketchDepth)};
+        this.events = new LinkedHashMap<Integer, EventVotes>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, EventVotes> eldest) {
+                return size() > VoteFraudDetector.this.trackedEvents;
+            }
+        };
+        for (int i = 0; i < anomalies.length; i++) {
+            anomalies[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a vote and tells whether to keep it out of the rankings.
+     *
+     * @return true when the vote looks fraudulent and quarantine is on
+     */
+    public boolean screen(int userId, int rsEventId, int voteNum) {
+        if (!enabled) {
+            return false;
+        }
+        EnumSet<Anomaly> found = inspect(userId, rsEventId, voteNum);
+        screened.increment();
+        if (found.isEmpty()) {
+            return false;
+        }
+        flagged.increment();
+        found.forEach(anomaly -> anomalies[anomaly.ordinal()].increment());
+        log.debug("vote of {} by user {} on event {} flagged: {}", voteNum, userId, rsEventId, found);
+        if (quarantine) {
+            quarantined.increment();
+        }
+        return quarantine;
+    }
+
+    public FraudStats getStats() {
+        int tracked;
+        synchronized (this) {
+            tracked = events.size();
+        }
+        return FraudStats.builder()
+                .screened(screened.sum())
+                .flagged(flagged.sum())
+                .quarantined(quarantined.sum())
+                .userBursts(anomalies[Anomaly.USER_BURST.ordinal()].sum())
+                .repeatedPairs(anomalies[Anomaly.REPEATED_PAIR.ordinal()].sum())
+                .concentratedEvents(anomalies[Anomaly.CONCENTRATED_EVENT.ordinal()].sum())
+                .trackedEvents(tracked)
+                .build();
+    }
+
+    /**
+     * Counts the vote and returns what is anomalous about it.
+     */
+    synchronized EnumSet<Anomaly> inspect(int userId, int rsEventId, int voteNum) {
+        rotate();
+        EnumSet<Anomaly> found = EnumSet.noneOf(Anomaly.class);
+        long pair = (long) userId << 32 | (rsEventId & 0xFFFFFFFFL);
+        if (userVotes[0].add(userId, voteNum) + userVotes[1].estimate(userId) > thresholds.maxUserVotes) {
+            found.add(Anomaly.USER_BURST);
+        }
+        if (pairVotes[0].add(pair, voteNum) + pairVotes[1].estimate(pair) > thresholds.maxPairVotes) {
+            found.add(Anomaly.REPEATED_PAIR);
+        }
+        EventVotes event = events.get(rsEventId);
+        if (event == null) {
+            event = new EventVotes(precision);
+            events.put(rsEventId, event);
+        }
+        event.rotate(epoch);
+        event.votes += voteNum;
+        event.voters.add(userId);
+        long votes = event.votes + event.previousVotes;
+        if (votes >= thresholds.minEventVotes
+                && votes > thresholds.maxVotesPerVoter * event.voters.estimate(event.previousVoters)) {
+            found.add(Anomaly.CONCENTRATED_EVENT);
+            if (!event.reported) {
+                event.reported = true;
+                log.warn("votes on event {} come from few voters: {} votes from about {} users", rsEventId, votes,
+                        event.voters.estimate(event.previousVoters));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Starts a new window when the current one is over: the user and pair sketches of the current
+     * window become the previous ones, or are dropped when more than a window has passed. Events
+     * catch up the same way when next voted on.
+     */
+    private void rotate() {
+        long now = (nanoClock.getAsLong() - origin) / windowNanos;
+        if (now == epoch) {
+            return;
+        }
+        if (now == epoch + 1) {
+            swap(userVotes);
+            swap(pairVotes);
+        } else {
+            userVotes[1].clear();
+            pairVotes[1].clear();
+        }
+        userVotes[0].clear();
+        pairVotes[0].clear();
+        epoch = now;
+    }
+
+    private static void swap(CountMinSketch[] sketches) {
+        CountMinSketch current = sketches[0];
+        sketches[0] = sketches[1];
+        sketches[1] = current;
+    }
+
+    enum Anomaly {
+        USER_BURST, REPEATED_PAIR, CONCENTRATED_EVENT
+    }
+
+    static class Thresholds {
+        final long maxUserVotes;
+        final long maxPairVotes;
+        final long minEventVotes;
+        final double maxVotesPerVoter;
+
+        Thresholds(long maxUserVotes, long maxPairVotes, long minEventVotes, double maxVotesPerVoter) {
+            this.maxUserVotes = maxUserVotes;
+            this.maxPairVotes = maxPairVotes;
+            this.minEventVotes = minEventVotes;
+            this.maxVotesPerVoter = maxVotesPerVoter;
+        }
+    }
+
+    private static final class EventVotes {
+        HyperLogLog voters;
+        HyperLogLog previousVoters;
+        long votes;
+        long previousVotes;
+        long epoch;
+        boolean reported;
+
+        EventVotes(int precision) {
+            this.voters = new HyperLogLog(precision);
+            this.previousVoters = new HyperLogLog(precision);
+            this.epoch = -1;
+        }
+
+        void rotate(long now) {
+            if (now == epoch) {
+                return;
+            }
+            HyperLogLog current = voters;
+            voters = previousVoters;
+            previousVoters = current;
+            if (now == epoch + 1) {
+                previousVotes = votes;
+            } else {
+                previousVoters.clear();
+                previousVotes = 0;
+            }
+            voters.clear();
+            votes = 0;
+            reported = false;
+            epoch = now;
+        }
+    }
+}
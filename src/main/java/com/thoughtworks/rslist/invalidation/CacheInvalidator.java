@@ -0,0 +1,130 @@
+package com.thoughtworks.rslist.invalidation;
+
+import com.thoughtworks.rslist.ranking.HotnessRanking;
+import com.thoughtworks.rslist.ranking.KeywordRankings;
+import com.thoughtworks.rslist.ranking.RankingBackend;
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.ranking.TrendingCounters;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
+import com.thoughtworks.rslist.search.SearchIndex;
+import com.thoughtworks.rslist.service.VoteBalanceStore;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies changes announced by other nodes to this node's caches: events are re-read from the
+ * database into {@link RsEventColumns}, the {@link RankingBackend}, the {@link KeywordRankings} and
+ * the {@link SearchIndex}, their {@link HotnessRanking} scores and {@link TrendingCounters} are
+ * rebuilt from their votes, or they are
+ * dropped everywhere when they are gone, and users lose their cached vote balance. Both are evicted
+ * from the {@link SecondLevelCache}.
+ */
+@Component
+public class CacheInvalidator {
+    final NamedParameterJdbcTemplate jdbcTemplate;
+    final RsEventColumns rsEventColumns;
+    final RankingBackend rankingBackend;
+    final KeywordRankings keywordRankings;
+    final VoteBalanceStore voteBalanceStore;
+    final HotnessRanking hotnessRanking;
+    final TrendingCounters trendingCounters;
+    final SearchIndex searchIndex;
+    final SecondLevelCache secondLevelCache;
+
+    public CacheInvalidator(NamedParameterJdbcTemplate jdbcTemplate,
+                            RsEventColumns rsEventColumns,
+                            RankingBackend rankingBackend,
+                            KeywordRankings keywordRankings,
+                            VoteBalanceStore voteBalanceStore,
+                            HotnessRanking hotnessRanking,
+                            TrendingCounters trendingCounters,
+                            SearchIndex searchIndex,
+                            SecondLevelCache secondLevelCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rsEventColumns = rsEventColumns;
+        this.rankingBackend = rankingBackend;
+        this.keywordRankings = keywordRankings;
+        this.voteBalanceStore = voteBalanceStore;
+        this.hotnessRanking = hotnessRanking;
+        this.trendingCounters = trendingCounters;
+        this.searchIndex = searchIndex;
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    @EventListener
+    public void changed(ChangeEvent event) {
+        switch (event.getType()) {
+            case RS_EVENT:
+                refreshRsEvents(event.getIds());
+                break;
+            case USER:
+                List<Integer> userIds = new ArrayList<>(event.getIds().length);
+                for (int userId : event.getIds()) {
+                    userIds.add(userId);
+                }
+                secondLevelCache.evictUsers(userIds);
+                voteBalanceStore.invalidate(userIds);
+                break;
+            case RESYNC:
+                secondLevelCache.evictAllRsEvents();
+                secondLevelCache.evictAllUsers();
+                rsEventColumns.load();
+                rankingBackend.load();
+                keywordRankings.load();
+                hotnessRanking.load();
+                trendingCounters.load();
+                searchIndex.load();
+                voteBalanceStore.invalidateAll();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void refreshRsEvents(int[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        Set<Integer> missing = new LinkedHashSet<>(ids.length);
+        for (int id : ids) {
+            missing.add(id);
+        }
+        secondLevelCache.evictRsEvents(new ArrayList<>(missing));
+        jdbcTemplate.query("select id, vote_num, rank, amount, keyword, event_name from rs_event where id in (:ids)",
+                Collections.singletonMap("ids", new ArrayList<>(missing)), resultSet -> {
+                    int id = resultSet.getInt(1);
+                    int voteNum = resultSet.getInt(2);
+                    int rank = resultSet.getInt(3);
+                    int amount = resultSet.getInt(4);
+                    rsEventColumns.put(id, voteNum, rank, amount);
+                    String keyword = resultSet.getString(5);
+                    rankingBackend.refresh(id, voteNum, rank, amount);
+                    keywordRankings.refresh(id, keyword, voteNum, rank, amount);
+                    searchIndex.add(id, keyword, resultSet.getString(6));
+                    missing.remove(id);
+                });
+        List<Integer> refreshed = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            if (!missing.contains(id)) {
+                refreshed.add(id);
+            }
+        }
+        hotnessRanking.reload(refreshed);
+        trendingCounters.reload(refreshed);
+        if (!missing.isEmpty()) {
+            rsEventColumns.remove(missing);
+            rankingBackend.remove(missing);
+            keywordRankings.remove(missing);
+            hotnessRanking.remove(missing);
+            trendingCounters.remove(missing);
+            searchIndex.remove(missing);
+        }
+    }
+}
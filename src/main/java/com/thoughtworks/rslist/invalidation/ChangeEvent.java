@@ -0,0 +1,35 @@
+package com.thoughtworks.rslist.invalidation;
+
+import java.util.Arrays;
+
+/**
+ * A change made on another node, delivered by {@link InvalidationBus} as a local application event.
+ * {@code ids} are event ids for {@link Type#RS_EVENT}, user ids for {@link Type#USER}, and empty
+ * for {@link Type#RESYNC}, which asks every node-local cache to reload from the database.
+ */
+public class ChangeEvent {
+    public enum Type {
+        RS_EVENT, USER, RESYNC
+    }
+
+    private final Type type;
+    private final int[] ids;
+
+    public ChangeEvent(Type type, int[] ids) {
+        this.type = type;
+        this.ids = ids;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return type + Arrays.toString(ids);
+    }
+}
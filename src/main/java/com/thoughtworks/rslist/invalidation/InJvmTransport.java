@@ -0,0 +1,50 @@
+package com.thoughtworks.rslist.invalidation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers messages synchronously to the application contexts in the same JVM that share its
+ * {@code rs.invalidation.jvm.channel}, which is enough for a single node and lets several nodes run
+ * side by side. Without a channel each context gets one of its own, so unrelated contexts in one JVM,
+ * such as cached test contexts, never reload each other's caches.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.invalidation.transport", havingValue = "jvm", matchIfMissing = true)
+public class InJvmTransport implements InvalidationTransport {
+    private static final Map<String, List<Consumer<byte[]>>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final List<Consumer<byte[]>> receivers;
+    private Consumer<byte[]> receiver;
+
+    public InJvmTransport(@Value("${rs.invalidation.jvm.channel:}") String channel) {
+        this.receivers = CHANNELS.computeIfAbsent(channel.isEmpty() ? UUID.randomUUID().toString() : channel,
+                name -> new CopyOnWriteArrayList<>());
+    }
+
+    @Override
+    public void send(byte[] message) {
+        for (Consumer<byte[]> each : receivers) {
+            each.accept(message);
+        }
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        receivers.add(receiver);
+    }
+
+    @Override
+    public void close() {
+        receivers.remove(receiver);
+    }
+}
@@ -0,0 +1,140 @@
+package com.thoughtworks.rslist.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells the other nodes which events and users changed here, so they can drop or reload what they
+ * cache about them.
+ *
+ * <p>Each message carries this node's random origin id and a sequence number that increases by one
+ * per message. A receiver ignores its own messages and any sequence it has already seen. When a
+ * sequence skips ahead, messages were lost or reordered, and the receiver reloads everything
+ * through a {@link ChangeEvent.Type#RESYNC} before applying the new one. Changes arriving from
+ * other nodes are published as {@link ChangeEvent} application events.
+ *
+ * <p>Publishing never fails the caller: a transport error is logged, and the receivers catch up on
+ * the next sequence gap.
+ */
+@Component
+public class InvalidationBus {
+    static final int MAX_IDS = 1000;
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+    private static final byte FORMAT = 1;
+    private static final int SEQUENCE_OFFSET = 9;
+    private static final int HEADER_BYTES = 22;
+
+    final InvalidationTransport transport;
+    final ApplicationEventPublisher publisher;
+    final long origin = new SecureRandom().nextLong();
+    private final Object sendLock = new Object();
+    private final Object receiveLock = new Object();
+    private final Map<Long, Long> received = new HashMap<>();
+    private long sequence;
+
+    public InvalidationBus(InvalidationTransport transport, ApplicationEventPublisher publisher) {
+        this.transport = transport;
+        this.publisher = publisher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        transport.start(this::receive);
+    }
+
+    @PreDestroy
+    public void close() {
+        transport.close();
+    }
+
+    public void publish(ChangeEvent.Type type, int id) {
+        publish(type, Collections.singletonList(id));
+    }
+
+    /**
+     * Announces a change that is already committed, in messages of at most {@value #MAX_IDS} ids.
+     * Only {@link ChangeEvent.Type#RESYNC} is sent without ids.
+     */
+    public void publish(ChangeEvent.Type type, Collection<Integer> ids) {
+        if (ids.isEmpty() && type != ChangeEvent.Type.RESYNC) {
+            return;
+        }
+        List<Integer> list = new ArrayList<>(ids);
+        int from = 0;
+        do {
+            int count = Math.min(MAX_IDS, list.size() - from);
+            ByteBuffer message = ByteBuffer.allocate(HEADER_BYTES + 4 * count);
+            message.put(FORMAT).putLong(origin).putLong(0).put((byte) type.ordinal()).putInt(count);
+            for (int i = from; i < from + count; i++) {
+                message.putInt(list.get(i));
+            }
+            send(message.array());
+            from += count;
+        } while (from < list.size());
+    }
+
+    private void send(byte[] message) {
+        synchronized (sendLock) {
+            ByteBuffer.wrap(message).putLong(SEQUENCE_OFFSET, ++sequence);
+            try {
+                transport.send(message);
+            } catch (RuntimeException e) {
+                log.warn("failed to publish invalidation message {}", sequence, e);
+            }
+        }
+    }
+
+    void receive(byte[] bytes) {
+        ChangeEvent event;
+        long from;
+        long seq;
+        try {
+            ByteBuffer message = ByteBuffer.wrap(bytes);
+            if (message.get() != FORMAT) {
+                log.warn("ignored invalidation message of unknown format");
+                return;
+            }
+            from = message.getLong();
+            seq = message.getLong();
+            ChangeEvent.Type type = ChangeEvent.Type.values()[message.get()];
+            int[] ids = new int[message.getInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = message.getInt();
+            }
+            event = new ChangeEvent(type, ids);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            log.warn("ignored malformed invalidation message");
+            return;
+        }
+        if (from == origin) {
+            return;
+        }
+        synchronized (receiveLock) {
+            Long last = received.get(from);
+            if (last != null && seq <= last) {
+                return;
+            }
+            received.put(from, seq);
+            if (last != null && seq > last + 1) {
+                log.info("missed invalidation messages {}..{} from node {}, reloading", last + 1, seq - 1, from);
+                publisher.publishEvent(new ChangeEvent(ChangeEvent.Type.RESYNC, new int[0]));
+            }
+            publisher.publishEvent(event);
+        }
+    }
+}
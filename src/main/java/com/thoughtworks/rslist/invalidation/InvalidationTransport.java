@@ -0,0 +1,19 @@
+package com.thoughtworks.rslist.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries encoded {@link InvalidationBus} messages between nodes. A transport may deliver a message
+ * more than once, out of order, or not at all; the bus copes with each. Select one with
+ * {@code rs.invalidation.transport}.
+ */
+public interface InvalidationTransport {
+    void send(byte[] message);
+
+    /**
+     * Starts handing messages from every node, this one included, to {@code receiver}.
+     */
+    void start(Consumer<byte[]> receiver);
+
+    void close();
+}
@@ -0,0 +1,99 @@
+package com.thoughtworks.rslist.invalidation;
+
+import com.thoughtworks.rslist.dto.InvalidationMessageDto;
+import com.thoughtworks.rslist.repository.InvalidationMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Passes messages through the {@code invalidation_message} table, for nodes that share the database
+ * but not a network segment. Every node polls for rows written within the last
+ * {@code rs.invalidation.outbox.lookback}, not just for ids above the last one it saw: ids come from
+ * a shared sequence and can commit out of order across processes. Rows already delivered are
+ * remembered for that window, and older rows are purged after {@code rs.invalidation.outbox.retention}.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.invalidation.transport", havingValue = "outbox")
+public class OutboxTransport implements InvalidationTransport {
+    private static final Logger log = LoggerFactory.getLogger(OutboxTransport.class);
+
+    final InvalidationMessageRepository invalidationMessageRepository;
+    final long pollInterval;
+    final Duration lookback;
+    final Duration retention;
+    private final Map<Integer, LocalDateTime> delivered = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invalidation-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OutboxTransport(InvalidationMessageRepository invalidationMessageRepository,
+                           @Value("${rs.invalidation.outbox.poll-interval:50}") long pollInterval,
+                           @Value("${rs.invalidation.outbox.lookback:PT2S}") Duration lookback,
+                           @Value("${rs.invalidation.outbox.retention:PT10M}") Duration retention) {
+        this.invalidationMessageRepository = invalidationMessageRepository;
+        this.pollInterval = pollInterval;
+        this.lookback = lookback;
+        this.retention = retention;
+    }
+
+    @Override
+    public void send(byte[] message) {
+        invalidationMessageRepository.save(InvalidationMessageDto.builder()
+                .payload(message)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll(receiver, startedAt);
+            } catch (RuntimeException e) {
+                log.warn("failed to poll invalidation messages", e);
+            }
+        }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                invalidationMessageRepository.deleteAllByCreatedAtBefore(LocalDateTime.now().minus(retention));
+            } catch (RuntimeException e) {
+                log.warn("failed to purge invalidation messages", e);
+            }
+        }, retention.toMillis(), retention.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void poll(Consumer<byte[]> receiver, LocalDateTime startedAt) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now.minus(lookback);
+        if (since.isBefore(startedAt)) {
+            since = startedAt;
+        }
+        for (InvalidationMessageDto message : invalidationMessageRepository.findAllByCreatedAtAfterOrderById(since)) {
+            if (delivered.putIfAbsent(message.getId(), message.getCreatedAt()) == null) {
+                receiver.accept(message.getPayload());
+            }
+        }
+        LocalDateTime forgetBefore = since;
+        delivered.values().removeIf(createdAt -> createdAt.isBefore(forgetBefore));
+    }
+}
@@ -0,0 +1,86 @@
+package com.thoughtworks.rslist.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Sends each message as one UDP datagram to a multicast group, so every node on the segment gets it
+ * within a network round trip. Datagrams can be lost or reordered; {@link InvalidationBus} notices
+ * the gap in sequence numbers and falls back to a full reload.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.invalidation.transport", havingValue = "udp")
+public class UdpMulticastTransport implements InvalidationTransport {
+    private static final Logger log = LoggerFactory.getLogger(UdpMulticastTransport.class);
+    private static final int MAX_DATAGRAM = 65507;
+
+    final InetAddress group;
+    final int port;
+    private final MulticastSocket socket;
+
+    public UdpMulticastTransport(@Value("${rs.invalidation.udp.group:239.255.42.99}") String group,
+                                 @Value("${rs.invalidation.udp.port:4446}") int port,
+                                 @Value("${rs.invalidation.udp.ttl:1}") int ttl) {
+        try {
+            this.group = InetAddress.getByName(group);
+            this.port = port;
+            this.socket = new MulticastSocket(port);
+            socket.setTimeToLive(ttl);
+            socket.joinGroup(this.group);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void send(byte[] message) {
+        try {
+            socket.send(new DatagramPacket(message, message.length, group, port));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[MAX_DATAGRAM];
+            while (!socket.isClosed()) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(packet);
+                    receiver.accept(Arrays.copyOf(packet.getData(), packet.getLength()));
+                } catch (IOException e) {
+                    if (!socket.isClosed()) {
+                        log.warn("failed to receive invalidation message", e);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("failed to apply invalidation message", e);
+                }
+            }
+        }, "invalidation-udp");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.leaveGroup(group);
+        } catch (IOException e) {
+            log.debug("failed to leave multicast group", e);
+        }
+        socket.close();
+    }
+}
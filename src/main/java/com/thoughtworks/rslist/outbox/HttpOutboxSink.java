@@ -0,0 +1,37 @@
+package com.thoughtworks.rslist.outbox;
+
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * POSTs each batch as a JSON array to {@code rs.outbox.http.url}. Any non-2xx answer or timeout
+ * fails the batch, and it is sent again on the next relay run.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.outbox.sink", havingValue = "http")
+public class HttpOutboxSink implements OutboxSink {
+    final String url;
+    final RestTemplate restTemplate;
+
+    public HttpOutboxSink(RestTemplateBuilder restTemplateBuilder,
+                          @Value("${rs.outbox.http.url:http://localhost:8081/outbox}") String url,
+                          @Value("${rs.outbox.http.timeout:2000}") long timeoutMillis) {
+        this.url = url;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(timeoutMillis))
+                .setReadTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+    }
+
+    @Override
+    public void deliver(List<OutboxEventDto> events) {
+        restTemplate.postForEntity(url, events, Void.class);
+    }
+}
@@ -0,0 +1,44 @@
+package com.thoughtworks.rslist.outbox;
+
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last {@code rs.outbox.memory.capacity} delivered events in process, for tests and for
+ * consumers running in the same JVM.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.outbox.sink", havingValue = "memory")
+public class MemoryOutboxSink implements OutboxSink {
+    final int capacity;
+    private final Deque<OutboxEventDto> events = new ArrayDeque<>();
+
+    public MemoryOutboxSink(@Value("${rs.outbox.memory.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void deliver(List<OutboxEventDto> batch) {
+        for (OutboxEventDto event : batch) {
+            if (events.size() == capacity) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    public synchronized List<OutboxEventDto> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
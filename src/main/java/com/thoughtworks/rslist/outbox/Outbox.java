@@ -0,0 +1,90 @@
+package com.thoughtworks.rslist.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records votes and trades in the {@code outbox_event} table for {@link OutboxRelay} to pass on.
+ *
+ * <p>Callers record inside the transaction that inserts the {@code vote} or {@code trade} rows, so
+ * an event is in the outbox exactly when its row is committed. Several votes go in as one batched
+ * insert. With {@code rs.outbox.enabled} off nothing is written.
+ */
+@Component
+public class Outbox {
+    public static final String VOTE = "VOTE";
+    public static final String TRADE = "TRADE";
+
+    final OutboxEventRepository outboxEventRepository;
+    final ObjectMapper objectMapper;
+    final boolean enabled;
+
+    public Outbox(OutboxEventRepository outboxEventRepository,
+                  ObjectMapper objectMapper,
+                  @Value("${rs.outbox.enabled:false}") boolean enabled) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void recordVotes(Collection<VoteDto> votes) {
+        if (!enabled || votes.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEventDto> events = new ArrayList<>(votes.size());
+        for (VoteDto vote : votes) {
+            Map<String, Object> payload = new LinkedHashMap<>();
+            payload.put("voteId", vote.getId());
+            payload.put("userId", vote.getUser().getId());
+            payload.put("rsEventId", vote.getRsEvent().getId());
+            payload.put("num", vote.getNum());
+            payload.put("time", vote.getLocalDateTime());
+            payload.put("quarantined", vote.isQuarantined());
+            events.add(event(VOTE, vote.getRsEvent().getId(), payload, now));
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    public void recordTrade(TradeDto trade) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("tradeId", trade.getId());
+        payload.put("rsEventId", trade.getRsEventDto().getId());
+        payload.put("rank", trade.getRank());
+        payload.put("amount", trade.getAmount());
+        outboxEventRepository.save(event(TRADE, trade.getRsEventDto().getId(), payload, LocalDateTime.now()));
+    }
+
+    private OutboxEventDto event(String type, int rsEventId, Map<String, Object> payload, LocalDateTime now) {
+        try {
+            return OutboxEventDto.builder()
+                    .type(type)
+                    .rsEventId(rsEventId)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .createdAt(now)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.thoughtworks.rslist.outbox;
+
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+import com.thoughtworks.rslist.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the {@code outbox_event} table into the {@link OutboxSink} in batches of
+ * {@code rs.outbox.batch-size}, oldest id first. Rows are deleted only after the sink accepted
+ * them; when the sink fails the relay stops and retries the same batch on its next run.
+ *
+ * <p>Ids come from a shared sequence, so a transaction that commits late can surface an id below
+ * one already relayed; it goes out with the next batch. Run the relay on one node only
+ * ({@code rs.outbox.relay-enabled}), or every node delivers the same rows.
+ */
+@Component
+public class OutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    final Outbox outbox;
+    final OutboxEventRepository outboxEventRepository;
+    final OutboxSink outboxSink;
+    final boolean relayEnabled;
+    final int batchSize;
+
+    public OutboxRelay(Outbox outbox,
+                       OutboxEventRepository outboxEventRepository,
+                       OutboxSink outboxSink,
+                       @Value("${rs.outbox.relay-enabled:true}") boolean relayEnabled,
+                       @Value("${rs.outbox.batch-size:500}") int batchSize) {
+        this.outbox = outbox;
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxSink = outboxSink;
+        this.relayEnabled = relayEnabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Relays everything committed so far.
+     *
+     * @return the number of events delivered
+     */
+    @Scheduled(fixedDelayString = "${rs.outbox.relay-interval:200}")
+    public synchronized int relay() {
+        if (!outbox.isEnabled() || !relayEnabled) {
+            return 0;
+        }
+        int total = 0;
+        List<OutboxEventDto> batch;
+        do {
+            batch = outboxEventRepository.findAllByOrderById(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            try {
+                outboxSink.deliver(batch);
+            } catch (IOException | RuntimeException e) {
+                log.warn("failed to relay {} outbox events, retrying later", batch.size(), e);
+                break;
+            }
+            List<Integer> ids = new ArrayList<>(batch.size());
+            batch.forEach(event -> ids.add(event.getId()));
+            outboxEventRepository.deleteAllByIdIn(ids);
+            total += batch.size();
+        } while (batch.size() == batchSize);
+        return total;
+    }
+}
@@ -0,0 +1,19 @@
+package com.thoughtworks.rslist.outbox;
+
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where {@link OutboxRelay} delivers outbox events, selected with {@code rs.outbox.sink}.
+ *
+ * <p>Delivery is at least once: a batch that failed, or whose rows could not be deleted afterwards,
+ * is delivered again, so consumers should skip event ids they have already seen.
+ */
+public interface OutboxSink {
+    /**
+     * Delivers one batch in id order, returning only once it is durably accepted.
+     */
+    void deliver(List<OutboxEventDto> events) throws IOException;
+}
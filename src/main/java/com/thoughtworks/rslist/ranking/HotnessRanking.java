@@ -0,0 +1,161 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time-decayed "hotness" of hot-search events.
+ *
+ * <p>A vote of {@code num} cast at time {@code t} is worth {@code num * 2^-((now - t) / halfLife)}.
+ * Because every score decays by the same factor, the ordering only depends on
+ * {@code sum(num * 2^((t - epoch) / halfLife))}, which never has to be decayed. That sum grows
+ * exponentially, so it is kept as its base-2 logarithm and votes are folded in with a log-sum-exp
+ * addition: recording a vote is O(1) and no score is ever recomputed as time passes.
+ */
+@Component
+public class HotnessRanking {
+    private static final Instant EPOCH = Instant.parse("2020-01-01T00:00:00Z");
+
+    final JdbcTemplate jdbcTemplate;
+    final double halfLifeMillis;
+    final Clock clock;
+    private final Map<Integer, Double> logScores = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HotnessRanking(JdbcTemplate jdbcTemplate,
+                          @Value("${rs.ranking.hotness.half-life:PT6H}") Duration halfLife) {
+        this(jdbcTemplate, halfLife, Clock.systemDefaultZone());
+    }
+
+    HotnessRanking(JdbcTemplate jdbcTemplate, Duration halfLife, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.halfLifeMillis = halfLife.toMillis();
+        this.clock = clock;
+    }
+
+    public void record(int rsEventId, int num, LocalDateTime time) {
+        if (num > 0) {
+            logScores.merge(rsEventId, contribution(num, time), HotnessRanking::logAdd);
+        }
+    }
+
+    /**
+     * Recomputes the scores of the given events from their {@code vote} rows, which picks up votes
+     * recorded on other nodes.
+     */
+    public void reload(Collection<Integer> rsEventIds) {
+        for (Integer rsEventId : rsEventIds) {
+            double[] logScore = {Double.NEGATIVE_INFINITY};
+            jdbcTemplate.query("select num, local_date_time from vote where rs_event_id = ? and quarantined = false",
+                    resultSet -> {
+                        int num = resultSet.getInt(1);
+                        Timestamp votedAt = resultSet.getTimestamp(2);
+                        if (num > 0) {
+                            logScore[0] = logAdd(logScore[0],
+                                    contribution(num, votedAt == null ? null : votedAt.toLocalDateTime()));
+                        }
+                    }, rsEventId);
+            if (logScore[0] == Double.NEGATIVE_INFINITY) {
+                logScores.remove(rsEventId);
+            } else {
+                logScores.put(rsEventId, logScore[0]);
+            }
+        }
+    }
+
+    public void remove(Collection<Integer> rsEventIds) {
+        rsEventIds.forEach(logScores::remove);
+    }
+
+    /**
+     * Ordering key of an event: higher is hotter, events without votes get negative infinity.
+     */
+    public double logScore(int rsEventId) {
+        return logScores.getOrDefault(rsEventId, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * The {@code limit} hottest of the first {@code count} of {@code rsEventIds}, hottest first and
+     * ties by id, selected with a bounded min-heap so the cost is O(n log limit) rather than a full
+     * sort. Events without votes come last.
+     */
+    public int[] top(int[] rsEventIds, int count, int limit) {
+        if (limit <= 0 || count == 0) {
+            return new int[0];
+        }
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = logScore(rsEventIds[i]);
+        }
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, (first, second) -> {
+            int byScore = Double.compare(scores[first], scores[second]);
+            return byScore != 0 ? byScore : Integer.compare(rsEventIds[second], rsEventIds[first]);
+        });
+        for (int i = 0; i < count; i++) {
+            if (heap.size() < limit) {
+                heap.add(i);
+            } else if (heap.comparator().compare(i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = rsEventIds[heap.poll()];
+        }
+        return top;
+    }
+
+    /**
+     * Decayed score at the current time, i.e. the sum of all votes weighted by their age.
+     */
+    public double score(int rsEventId) {
+        double now = (clock.millis() - EPOCH.toEpochMilli()) / halfLifeMillis;
+        return Math.pow(2, logScore(rsEventId) - now);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        logScores.clear();
+        jdbcTemplate.query("select rs_event_id, num, local_date_time from vote where quarantined = false", resultSet -> {
+            Timestamp votedAt = resultSet.getTimestamp(3);
+            record(resultSet.getInt(1), resultSet.getInt(2), votedAt == null ? null : votedAt.toLocalDateTime());
+        });
+    }
+
+    private double contribution(int num, LocalDateTime time) {
+        Instant now = clock.instant();
+        Instant votedAt = time == null ? now : time.atZone(clock.getZone()).toInstant();
+        if (votedAt.isAfter(now)) {
+            votedAt = now;
+        }
+        return log2(num) + (votedAt.toEpochMilli() - EPOCH.toEpochMilli()) / halfLifeMillis;
+    }
+
+    static double logAdd(double first, double second) {
+        double max = Math.max(first, second);
+        double min = Math.min(first, second);
+        if (min == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        return max + log2(1 + Math.pow(2, min - max));
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
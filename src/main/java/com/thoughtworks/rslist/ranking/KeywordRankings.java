@@ -0,0 +1,100 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One ranking partition per keyword, kept next to the global {@link RankingBackend} so that
+ * {@code /rs/list?keyword=} reads a keyword's events in order without filtering the whole table.
+ *
+ * <p>Each partition is a {@link LocalRankingBackend} of its own and follows the same ordering:
+ * votes first, ties by id, purchased events pinned at the rank they bought, or after the voted
+ * events when the keyword has fewer events than that. A vote touches only its event's partition,
+ * and each partition locks on its own. Purchases have already been checked against the global
+ * ranking, so they are mirrored with {@link RankingBackend#refresh} rather than bought again.
+ *
+ * <p>Partitions are per node, like {@link RsEventColumns}; other nodes' changes arrive through the
+ * invalidation bus.
+ */
+@Component
+public class KeywordRankings {
+    final JdbcTemplate jdbcTemplate;
+    private final Map<String, LocalRankingBackend> partitions = new ConcurrentHashMap<>();
+    private final Map<Integer, LocalRankingBackend> owners = new ConcurrentHashMap<>();
+
+    public KeywordRankings(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        partitions.clear();
+        owners.clear();
+        jdbcTemplate.query("select id, keyword, vote_num, rank, amount from rs_event", resultSet -> {
+            add(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3), resultSet.getInt(4),
+                    resultSet.getInt(5));
+        });
+    }
+
+    /**
+     * Registers a new event; like {@link RankingBackend#add}, an event already known is left alone.
+     */
+    public void add(int rsEventId, String keyword, int voteNum, int rank, int amount) {
+        if (keyword == null) {
+            return;
+        }
+        LocalRankingBackend partition = partition(keyword);
+        if (owners.putIfAbsent(rsEventId, partition) == null) {
+            partition.add(rsEventId, voteNum, rank, amount);
+        }
+    }
+
+    public void addVotes(int rsEventId, int num) {
+        LocalRankingBackend partition = owners.get(rsEventId);
+        if (partition != null) {
+            partition.addVotes(rsEventId, num);
+        }
+    }
+
+    /**
+     * Replaces an event's entry, after a purchase or a change on another node.
+     */
+    public synchronized void refresh(int rsEventId, String keyword, int voteNum, int rank, int amount) {
+        LocalRankingBackend partition = keyword == null ? null : partition(keyword);
+        LocalRankingBackend previous = partition == null ? owners.remove(rsEventId) : owners.put(rsEventId, partition);
+        if (previous != null && previous != partition) {
+            previous.remove(Collections.singletonList(rsEventId));
+        }
+        if (partition != null) {
+            partition.refresh(rsEventId, voteNum, rank, amount);
+        }
+    }
+
+    public void remove(Collection<Integer> rsEventIds) {
+        for (Integer rsEventId : rsEventIds) {
+            LocalRankingBackend partition = owners.remove(rsEventId);
+            if (partition != null) {
+                partition.remove(Collections.singletonList(rsEventId));
+            }
+        }
+    }
+
+    /**
+     * Ids of the keyword's events ranked {@code 1..limit} within the keyword, in rank order.
+     */
+    public int[] top(String keyword, int limit) {
+        LocalRankingBackend partition = partitions.get(keyword);
+        return partition == null ? new int[0] : partition.top(limit);
+    }
+
+    private LocalRankingBackend partition(String keyword) {
+        return partitions.computeIfAbsent(keyword, k -> new LocalRankingBackend(null));
+    }
+}
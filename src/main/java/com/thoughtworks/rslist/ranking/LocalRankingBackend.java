@@ -0,0 +1,179 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * In-process {@link RankingBackend}. Each node holds its own copy, loaded from the
+ * {@code rs_event} table at startup, so it only stays consistent for a single instance.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.ranking.backend", havingValue = "local", matchIfMissing = true)
+public class LocalRankingBackend implements RankingBackend {
+    final JdbcTemplate jdbcTemplate;
+    private final TreeSet<Long> order = new TreeSet<>();
+    private final Map<Integer, Integer> voteNums = new HashMap<>();
+    private final TreeMap<Integer, Integer> slots = new TreeMap<>();
+    private final Map<Integer, int[]> purchases = new HashMap<>();
+
+    public LocalRankingBackend(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        order.clear();
+        voteNums.clear();
+        slots.clear();
+        purchases.clear();
+        jdbcTemplate.query("select id, vote_num, rank, amount from rs_event", resultSet -> {
+            add(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3), resultSet.getInt(4));
+        });
+    }
+
+    @Override
+    public synchronized void add(int rsEventId, int voteNum, int rank, int amount) {
+        if (voteNums.containsKey(rsEventId) || purchases.containsKey(rsEventId)) {
+            return;
+        }
+        if (amount > 0) {
+            slots.put(rank, rsEventId);
+            purchases.put(rsEventId, new int[]{rank, amount});
+        } else {
+            voteNums.put(rsEventId, voteNum);
+            order.add(key(voteNum, rsEventId));
+        }
+    }
+
+    @Override
+    public synchronized void addVotes(int rsEventId, int num) {
+        Integer voteNum = voteNums.get(rsEventId);
+        if (voteNum == null) {
+            return;
+        }
+        order.remove(key(voteNum, rsEventId));
+        voteNums.put(rsEventId, voteNum + num);
+        order.add(key(voteNum + num, rsEventId));
+    }
+
+    @Override
+    public synchronized int buy(int rsEventId, int rank, int amount) {
+        int[] purchase = purchases.get(rsEventId);
+        if (purchase == null && !voteNums.containsKey(rsEventId)) {
+            return REJECTED;
+        }
+        if (amount <= 0 || rank < 1 || rank > voteNums.size() + slots.size()) {
+            return REJECTED;
+        }
+        int displaced = 0;
+        Integer holder = slots.get(rank);
+        if (holder != null) {
+            if (amount <= purchases.get(holder)[1]) {
+                return REJECTED;
+            }
+            if (holder != rsEventId) {
+                displaced = holder;
+                purchases.remove(holder);
+            }
+        }
+        if (purchase != null) {
+            slots.remove(purchase[0]);
+        }
+        Integer voteNum = voteNums.remove(rsEventId);
+        if (voteNum != null) {
+            order.remove(key(voteNum, rsEventId));
+        }
+        slots.put(rank, rsEventId);
+        purchases.put(rsEventId, new int[]{rank, amount});
+        return displaced;
+    }
+
+    @Override
+    public synchronized void remove(Collection<Integer> rsEventIds) {
+        for (Integer rsEventId : rsEventIds) {
+            Integer voteNum = voteNums.remove(rsEventId);
+            if (voteNum != null) {
+                order.remove(key(voteNum, rsEventId));
+            }
+            int[] purchase = purchases.remove(rsEventId);
+            if (purchase != null) {
+                slots.remove(purchase[0]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void refresh(int rsEventId, int voteNum, int rank, int amount) {
+        remove(Collections.singletonList(rsEventId));
+        Integer holder = amount > 0 ? slots.get(rank) : null;
+        if (holder != null) {
+            // the slot was bought away from its holder on the other node
+            remove(Collections.singletonList(holder));
+        }
+        add(rsEventId, voteNum, rank, amount);
+    }
+
+    @Override
+    public synchronized int[] top(int limit) {
+        Iterator<Long> keys = order.descendingIterator();
+        return interleave(slots, new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return Integer.MAX_VALUE - (int) (long) keys.next();
+            }
+        }, Math.min(limit, voteNums.size() + slots.size()));
+    }
+
+    /**
+     * Fills ranks {@code 1..count} from the purchased {@code slots}, keyed by rank, and the
+     * unpurchased ids in vote order. Slots beyond the last voted event follow in rank order.
+     */
+    static int[] interleave(TreeMap<Integer, Integer> slots, PrimitiveIterator.OfInt voted, int count) {
+        int[] ids = new int[count];
+        int i = 0;
+        while (i < count) {
+            Integer slot = slots.get(i + 1);
+            if (slot != null) {
+                ids[i++] = slot;
+            } else if (voted.hasNext()) {
+                ids[i++] = voted.nextInt();
+            } else {
+                for (Integer id : slots.tailMap(i + 1, false).values()) {
+                    if (i == count) {
+                        break;
+                    }
+                    ids[i++] = id;
+                }
+                break;
+            }
+        }
+        return i == count ? ids : Arrays.copyOf(ids, i);
+    }
+
+    /**
+     * Ascending key order is fewest votes first and, within equal votes, highest id first, so a
+     * descending walk yields the ranking order.
+     */
+    private static long key(int voteNum, int rsEventId) {
+        return ((long) voteNum << 32) | (Integer.MAX_VALUE - rsEventId);
+    }
+}
@@ -0,0 +1,104 @@
+package com.thoughtworks.rslist.ranking;
+
+import java.util.Arrays;
+
+/**
+ * Ordering helpers that work on primitive {@code int} keys instead of boxed comparators.
+ *
+ * <p>Both methods order positions by ascending key and break ties by ascending position, which is
+ * what a stable sort of the original list would produce. Callers wanting a descending order pass
+ * negated keys.
+ */
+public final class RankSelector {
+    private RankSelector() {
+    }
+
+    /**
+     * Positions of all {@code count} keys in sorted order. Each key is packed together with its
+     * position into one {@code long} so a single primitive sort does the work.
+     */
+    public static int[] sort(int[] keys, int count) {
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = pack(keys[i], i);
+        }
+        Arrays.sort(packed);
+        return positions(packed, count);
+    }
+
+    /**
+     * Same ordering as {@link #sort(int[], int)}, but the packed keys are sorted with a fork/join
+     * merge sort across the common pool. Worth it from a few hundred thousand keys on.
+     */
+    public static int[] parallelSort(int[] keys, int count) {
+        long[] packed = new long[count];
+        Arrays.parallelSetAll(packed, i -> pack(keys[i], i));
+        Arrays.parallelSort(packed);
+        return positions(packed, count);
+    }
+
+    private static int[] positions(long[] packed, int count) {
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = (int) packed[i];
+        }
+        return positions;
+    }
+
+    /**
+     * Positions of the {@code k} smallest of {@code count} keys in sorted order, selected with a
+     * bounded max-heap in O(count log k) time and O(k) extra memory.
+     */
+    public static int[] smallest(int[] keys, int count, int k) {
+        k = Math.min(k, count);
+        if (k <= 0) {
+            return new int[0];
+        }
+        if (k > count / 2) {
+            return Arrays.copyOf(sort(keys, count), k);
+        }
+        long[] heap = new long[k];
+        for (int i = 0; i < k; i++) {
+            heap[i] = pack(keys[i], i);
+        }
+        for (int i = k / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i, k);
+        }
+        for (int i = k; i < count; i++) {
+            long candidate = pack(keys[i], i);
+            if (candidate < heap[0]) {
+                heap[0] = candidate;
+                siftDown(heap, 0, k);
+            }
+        }
+        Arrays.sort(heap);
+        int[] positions = new int[k];
+        for (int i = 0; i < k; i++) {
+            positions[i] = (int) heap[i];
+        }
+        return positions;
+    }
+
+    private static long pack(int key, int position) {
+        return (long) key << 32 | position;
+    }
+
+    private static void siftDown(long[] heap, int index, int size) {
+        long value = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= value) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
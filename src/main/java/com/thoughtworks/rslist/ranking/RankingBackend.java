@@ -0,0 +1,62 @@
+package com.thoughtworks.rslist.ranking;
+
+import java.util.Collection;
+
+/**
+ * Vote ranking state that several application nodes can share.
+ *
+ * <p>Unpurchased events form a sorted set scored by votes, most first, ties by id. Purchased events
+ * sit in fixed slots at the rank they bought, and the sorted set fills the remaining ranks in order.
+ * This is the same ordering {@link RsEventColumns} computes. Every method is atomic on its own, so
+ * concurrent votes and purchases on different nodes cannot interleave halfway.
+ *
+ * <p>{@link LocalRankingBackend} keeps the state in process and is the default.
+ * {@link RedisRankingBackend} keeps it in Redis for multi-node deployments. Select one with
+ * {@code rs.ranking.backend}.
+ */
+public interface RankingBackend {
+    /**
+     * Returned by {@link #buy(int, int, int)} when the purchase is refused.
+     */
+    int REJECTED = -1;
+
+    /**
+     * Reloads the state from the {@code rs_event} table. A shared backend that was already loaded
+     * keeps its state, since it is the copy of record for every node.
+     */
+    void load();
+
+    /**
+     * Registers a new event. An event that is already known is left as it is, so a late or repeated
+     * registration cannot undo votes counted in the meantime.
+     */
+    void add(int rsEventId, int voteNum, int rank, int amount);
+
+    /**
+     * Adds votes to an unpurchased event. Unknown and purchased events are left alone.
+     */
+    void addVotes(int rsEventId, int num);
+
+    /**
+     * Moves an event into the purchased slot at {@code rank} if {@code amount} beats whatever that
+     * slot was bought for. The rank must lie within the current number of events.
+     *
+     * @return {@link #REJECTED}, the id of the purchased event that lost its slot, or 0 when the
+     *         slot was free
+     */
+    int buy(int rsEventId, int rank, int amount);
+
+    void remove(Collection<Integer> rsEventIds);
+
+    /**
+     * Replaces this node's copy of an event after another node changed it. A shared backend has
+     * already seen the change and has nothing to refresh.
+     */
+    void refresh(int rsEventId, int voteNum, int rank, int amount);
+
+    /**
+     * Ids of the events ranked {@code 1..limit}, in rank order. Fewer are returned when there are
+     * fewer events.
+     */
+    int[] top(int limit);
+}
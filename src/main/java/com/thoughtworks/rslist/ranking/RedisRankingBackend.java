@@ -0,0 +1,315 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link RankingBackend} kept in Redis, so every node reads and updates the same ranking.
+ *
+ * <p>Three keys under {@code rs.ranking.redis.key-prefix} hold the state: the sorted set
+ * {@code votes} of unpurchased events scored by votes, the hash {@code slots} from purchased rank to
+ * event id, and the hash {@code purchases} from event id to {@code rank:amount}. Sorted set members
+ * are {@code Integer.MAX_VALUE - id}, zero-padded, so that reverse order breaks ties by ascending id
+ * as the database ranking does. Votes use {@code ZADD XX INCR}. Registration, purchase, removal and
+ * the ranked read are Lua scripts, so each runs atomically on the server.
+ *
+ * <p>The first node to start against an unloaded store takes the {@code loading} lock, a key with
+ * a random token and a {@code rs.ranking.redis.load-lock-timeout} expiry, and loads the store from
+ * the {@code rs_event} table, extending the lock after every batch. It sets {@code loaded} only once
+ * the store is full, then releases the lock if the token is still its own. Other nodes wait until
+ * {@code loaded} appears; if the loader dies, its lock expires and the next node reloads from
+ * scratch, so a partial store is never marked loaded.
+ */
+@Component
+@ConditionalOnProperty(name = "rs.ranking.backend", havingValue = "redis")
+public class RedisRankingBackend implements RankingBackend {
+    static final String ADD_SCRIPT = ""
+            + "if redis.call('HEXISTS', KEYS[3], ARGV[1]) == 1 or redis.call('ZSCORE', KEYS[1], ARGV[2]) then\n"
+            + "  return 0\n"
+            + "end\n"
+            + "if tonumber(ARGV[5]) > 0 then\n"
+            + "  redis.call('HSET', KEYS[2], ARGV[4], ARGV[1])\n"
+            + "  redis.call('HSET', KEYS[3], ARGV[1], ARGV[4] .. ':' .. ARGV[5])\n"
+            + "else\n"
+            + "  redis.call('ZADD', KEYS[1], ARGV[3], ARGV[2])\n"
+            + "end\n"
+            + "return 1\n";
+    static final String BUY_SCRIPT = ""
+            + "local id, member, rank, amount = ARGV[1], ARGV[2], tonumber(ARGV[3]), tonumber(ARGV[4])\n"
+            + "local purchase = redis.call('HGET', KEYS[3], id)\n"
+            + "if not purchase and not redis.call('ZSCORE', KEYS[1], member) then\n"
+            + "  return -1\n"
+            + "end\n"
+            + "if amount <= 0 or rank < 1 or rank > redis.call('ZCARD', KEYS[1]) + redis.call('HLEN', KEYS[2]) then\n"
+            + "  return -1\n"
+            + "end\n"
+            + "local displaced = 0\n"
+            + "local holder = redis.call('HGET', KEYS[2], rank)\n"
+            + "if holder then\n"
+            + "  local held = redis.call('HGET', KEYS[3], holder)\n"
+            + "  if amount <= tonumber(string.match(held, ':(%d+)$')) then\n"
+            + "    return -1\n"
+            + "  end\n"
+            + "  if holder ~= id then\n"
+            + "    displaced = tonumber(holder)\n"
+            + "    redis.call('HDEL', KEYS[3], holder)\n"
+            + "  end\n"
+            + "end\n"
+            + "if purchase then\n"
+            + "  redis.call('HDEL', KEYS[2], string.match(purchase, '^(%d+):'))\n"
+            + "end\n"
+            + "redis.call('ZREM', KEYS[1], member)\n"
+            + "redis.call('HSET', KEYS[2], rank, id)\n"
+            + "redis.call('HSET', KEYS[3], id, rank .. ':' .. amount)\n"
+            + "return displaced\n";
+    static final String REMOVE_SCRIPT = ""
+            + "for i = 1, #ARGV, 2 do\n"
+            + "  redis.call('ZREM', KEYS[1], ARGV[i + 1])\n"
+            + "  local purchase = redis.call('HGET', KEYS[3], ARGV[i])\n"
+            + "  if purchase then\n"
+            + "    redis.call('HDEL', KEYS[2], string.match(purchase, '^(%d+):'))\n"
+            + "    redis.call('HDEL', KEYS[3], ARGV[i])\n"
+            + "  end\n"
+            + "end\n"
+            + "return 0\n";
+    static final String TOP_SCRIPT = ""
+            + "return {redis.call('HGETALL', KEYS[2]), redis.call('ZREVRANGE', KEYS[1], 0, tonumber(ARGV[1])),\n"
+            + "  redis.call('ZCARD', KEYS[1])}\n";
+    static final String RELEASE_SCRIPT = ""
+            + "if redis.call('GET', KEYS[1]) == ARGV[1] then\n"
+            + "  return redis.call('DEL', KEYS[1])\n"
+            + "end\n"
+            + "return 0\n";
+    static final String EXTEND_SCRIPT = ""
+            + "if redis.call('GET', KEYS[1]) == ARGV[1] then\n"
+            + "  return redis.call('PEXPIRE', KEYS[1], ARGV[2])\n"
+            + "end\n"
+            + "return 0\n";
+    private static final Logger log = LoggerFactory.getLogger(RedisRankingBackend.class);
+    private static final int LOAD_BATCH = 1000;
+    private static final long LOAD_POLL_MILLIS = 100;
+
+    final RespClient client;
+    final JdbcTemplate jdbcTemplate;
+    final String votesKey;
+    final String slotsKey;
+    final String purchasesKey;
+    final String loadedKey;
+    final String loadingKey;
+    final long loadLockMillis;
+    private final Map<String, String> shas = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RedisRankingBackend(JdbcTemplate jdbcTemplate,
+                               @Value("${rs.ranking.redis.host:localhost}") String host,
+                               @Value("${rs.ranking.redis.port:6379}") int port,
+                               @Value("${rs.ranking.redis.timeout:2000}") int timeoutMillis,
+                               @Value("${rs.ranking.redis.pool-size:8}") int poolSize,
+                               @Value("${rs.ranking.redis.key-prefix:rs:ranking:}") String keyPrefix,
+                               @Value("${rs.ranking.redis.load-lock-timeout:30000}") long loadLockMillis) {
+        this(new RespClient(host, port, timeoutMillis, poolSize), jdbcTemplate, keyPrefix, loadLockMillis);
+    }
+
+    RedisRankingBackend(RespClient client, JdbcTemplate jdbcTemplate, String keyPrefix, long loadLockMillis) {
+        this.client = client;
+        this.jdbcTemplate = jdbcTemplate;
+        this.votesKey = keyPrefix + "votes";
+        this.slotsKey = keyPrefix + "slots";
+        this.purchasesKey = keyPrefix + "purchases";
+        this.loadedKey = keyPrefix + "loaded";
+        this.loadingKey = keyPrefix + "loading";
+        this.loadLockMillis = loadLockMillis;
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        String token = UUID.randomUUID().toString();
+        while (!isLoaded()) {
+            if (client.call("SET", loadingKey, token, "NX", "PX", loadLockMillis) != null) {
+                try {
+                    if (!isLoaded()) {
+                        fill(token);
+                        client.call("SET", loadedKey, "1");
+                    }
+                } finally {
+                    eval(RELEASE_SCRIPT, new String[]{loadingKey}, token);
+                }
+                return;
+            }
+            try {
+                Thread.sleep(LOAD_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for the shared ranking to load", e);
+            }
+        }
+    }
+
+    private boolean isLoaded() {
+        return (Long) client.call("EXISTS", loadedKey) == 1;
+    }
+
+    private void fill(String token) {
+        client.call("DEL", votesKey, slotsKey, purchasesKey);
+        List<Object> command = new ArrayList<>();
+        int[] loaded = new int[1];
+        jdbcTemplate.query("select id, vote_num, rank, amount from rs_event", resultSet -> {
+            int id = resultSet.getInt(1);
+            int amount = resultSet.getInt(4);
+            if (amount > 0) {
+                add(id, resultSet.getInt(2), resultSet.getInt(3), amount);
+            } else {
+                if (command.isEmpty()) {
+                    command.add("ZADD");
+                    command.add(votesKey);
+                }
+                command.add(resultSet.getInt(2));
+                command.add(member(id));
+                if (command.size() >= 2 + 2 * LOAD_BATCH) {
+                    client.call(command.toArray());
+                    command.clear();
+                    extendLoadLock(token);
+                }
+            }
+            loaded[0]++;
+        });
+        if (!command.isEmpty()) {
+            client.call(command.toArray());
+        }
+        extendLoadLock(token);
+        log.info("loaded {} events into the shared ranking", loaded[0]);
+    }
+
+    private void extendLoadLock(String token) {
+        if ((Long) eval(EXTEND_SCRIPT, new String[]{loadingKey}, token, loadLockMillis) == 0) {
+            throw new IllegalStateException("lost the shared ranking load lock to another node");
+        }
+    }
+
+    @Override
+    public void add(int rsEventId, int voteNum, int rank, int amount) {
+        eval(ADD_SCRIPT, rsEventId, member(rsEventId), voteNum, rank, amount);
+    }
+
+    @Override
+    public void addVotes(int rsEventId, int num) {
+        client.call("ZADD", votesKey, "XX", "INCR", num, member(rsEventId));
+    }
+
+    @Override
+    public int buy(int rsEventId, int rank, int amount) {
+        return ((Long) eval(BUY_SCRIPT, rsEventId, member(rsEventId), rank, amount)).intValue();
+    }
+
+    @Override
+    public void remove(Collection<Integer> rsEventIds) {
+        if (rsEventIds.isEmpty()) {
+            return;
+        }
+        Object[] args = new Object[rsEventIds.size() * 2];
+        int i = 0;
+        for (Integer rsEventId : rsEventIds) {
+            args[i++] = rsEventId;
+            args[i++] = member(rsEventId);
+        }
+        eval(REMOVE_SCRIPT, args);
+    }
+
+    @Override
+    public void refresh(int rsEventId, int voteNum, int rank, int amount) {
+        // every node writes to the same keys
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int[] top(int limit) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+        List<Object> reply = (List<Object>) eval(TOP_SCRIPT, limit == Integer.MAX_VALUE ? -1 : limit - 1);
+        List<Object> slotPairs = (List<Object>) reply.get(0);
+        TreeMap<Integer, Integer> slots = new TreeMap<>();
+        for (int i = 0; i < slotPairs.size(); i += 2) {
+            slots.put(Integer.parseInt((String) slotPairs.get(i)), Integer.parseInt((String) slotPairs.get(i + 1)));
+        }
+        Iterator<Object> members = ((List<Object>) reply.get(1)).iterator();
+        long size = (Long) reply.get(2) + slots.size();
+        return LocalRankingBackend.interleave(slots, new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return members.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return Integer.MAX_VALUE - Integer.parseInt((String) members.next());
+            }
+        }, (int) Math.min(limit, size));
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+
+    private Object eval(String script, Object... args) {
+        return eval(script, new String[]{votesKey, slotsKey, purchasesKey}, args);
+    }
+
+    private Object eval(String script, String[] keys, Object... args) {
+        Object[] command = new Object[3 + keys.length + args.length];
+        command[0] = "EVALSHA";
+        command[1] = shas.computeIfAbsent(script, RedisRankingBackend::sha1);
+        command[2] = keys.length;
+        System.arraycopy(keys, 0, command, 3, keys.length);
+        System.arraycopy(args, 0, command, 3 + keys.length, args.length);
+        try {
+            return client.call(command);
+        } catch (RespClient.RespException e) {
+            if (!e.getMessage().startsWith("NOSCRIPT")) {
+                throw e;
+            }
+            command[0] = "EVAL";
+            command[1] = script;
+            return client.call(command);
+        }
+    }
+
+    private static String member(int rsEventId) {
+        return String.format("%010d", Integer.MAX_VALUE - rsEventId);
+    }
+
+    private static String sha1(String script) {
+        try {
+            StringBuilder hex = new StringBuilder(40);
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.thoughtworks.rslist.ranking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Just enough of the Redis protocol (RESP2) for {@link RedisRankingBackend}: commands go out as
+ * arrays of bulk strings, and replies come back as {@code String} (status and bulk strings,
+ * {@code null} for nil), {@code Long} (integers) or {@code List<Object>} (arrays). Error replies
+ * are thrown as {@link RespException}.
+ *
+ * <p>Connections are blocking sockets. Up to {@code poolSize} idle ones are kept for reuse, and a
+ * connection that fails with an I/O error is dropped.
+ */
+class RespClient implements AutoCloseable {
+    final String host;
+    final int port;
+    final int timeoutMillis;
+    private final BlockingQueue<Connection> idle;
+
+    RespClient(String host, int port, int timeoutMillis, int poolSize) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    Object call(Object... command) {
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = new Connection();
+            }
+            connection.write(command);
+            Object reply = connection.read();
+            if (!idle.offer(connection)) {
+                connection.close();
+            }
+            if (reply instanceof RespException) {
+                throw (RespException) reply;
+            }
+            return reply;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            throw new UncheckedIOException("redis " + host + ":" + port + " failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    static class RespException extends RuntimeException {
+        RespException(String message) {
+            super(message);
+        }
+    }
+
+    private class Connection {
+        final Socket socket;
+        final OutputStream out;
+        final InputStream in;
+
+        Connection() throws IOException {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        void write(Object[] command) throws IOException {
+            out.write(('*' + Integer.toString(command.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object argument : command) {
+                byte[] bytes = String.valueOf(argument).getBytes(StandardCharsets.UTF_8);
+                out.write(('$' + Integer.toString(bytes.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(bytes);
+                out.write('\r');
+                out.write('\n');
+            }
+            out.flush();
+        }
+
+        Object read() throws IOException {
+            int type = in.read();
+            if (type < 0) {
+                throw new EOFException();
+            }
+            String line = readLine();
+            switch (type) {
+                case '+':
+                    return line;
+                case '-':
+                    return new RespException(line);
+                case ':':
+                    return Long.parseLong(line);
+                case '$': {
+                    int length = Integer.parseInt(line);
+                    if (length < 0) {
+                        return null;
+                    }
+                    byte[] bytes = new byte[length];
+                    int read = 0;
+                    while (read < length) {
+                        int n = in.read(bytes, read, length - read);
+                        if (n < 0) {
+                            throw new EOFException();
+                        }
+                        read += n;
+                    }
+                    readLine();
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+                case '*': {
+                    int length = Integer.parseInt(line);
+                    if (length < 0) {
+                        return null;
+                    }
+                    List<Object> items = new ArrayList<>(length);
+                    for (int i = 0; i < length; i++) {
+                        items.add(read());
+                    }
+                    return items;
+                }
+                default:
+                    throw new IOException("unexpected reply type " + (char) type);
+            }
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(16);
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                line.write(b);
+            }
+            in.read();
+            return new String(line.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+    }
+}
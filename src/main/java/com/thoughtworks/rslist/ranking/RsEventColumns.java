@@ -0,0 +1,563 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking-relevant columns of every hot-search event, held as parallel primitive arrays.
+ *
+ * <p>Slots are ordered by event id. Ids come from a shared increasing sequence, so new events are
+ * appended and an id is found by binary search. At 24 bytes per event, four {@code int} columns and
+ * a {@code long} version, a million events need about 24 MB in five arrays, and re-ranking never
+ * loads a JPA entity. {@link RsEventColumnsListener}
+ * keeps the arrays in step with the {@code rs_event} table; bulk deletes that bypass JPA call
+ * {@link #remove(Collection)} themselves. {@link RsEventSnapshot} warms the store at startup.
+ *
+ * <p>Every change to an event's votes or rank also stamps its slot with a new version, and removals
+ * are kept in a ring of the last {@value #REMOVED_CAPACITY}, so {@link #changesSince(long)} can tell
+ * a client which events to fetch again. Versions are per node and start from the clock at startup,
+ * which keeps a version handed out by another node or an earlier run outside the window this node
+ * answers for. The same version, with the time it was handed out, backs the HTTP validators of the
+ * read endpoints.
+ */
+@Component
+public class RsEventColumns {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int REMOVED_CAPACITY = 4096;
+
+    final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rerankLock = new ReentrantLock();
+    private final Set<Integer> unwritten = new HashSet<>();
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] voteNums = new int[INITIAL_CAPACITY];
+    private int[] ranks = new int[INITIAL_CAPACITY];
+    private int[] amounts = new int[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int size;
+    private long version = System.currentTimeMillis() << 20;
+    private long oldestVersion = version;
+    private long lastModified = System.currentTimeMillis();
+    private final int[] removedIds = new int[REMOVED_CAPACITY];
+    private final long[] removedVersions = new long[REMOVED_CAPACITY];
+    private long removedCount;
+
+    @Autowired
+    public RsEventColumns(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Full load from the {@code rs_event} table. {@link RsEventSnapshot} calls it at startup when no
+     * usable snapshot exists.
+     */
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            jdbcTemplate.query("select id, vote_num, rank, amount from rs_event order by id",
+                    resultSet -> {
+                        put(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3), resultSet.getInt(4));
+                    });
+            unwritten.clear();
+            forgetChanges();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces all columns with {@code count} entries read from the given buffers, which must hold
+     * ids in ascending order.
+     */
+    public void restore(int count, IntBuffer ids, IntBuffer voteNums, IntBuffer ranks, IntBuffer amounts) {
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            ensureCapacity(count);
+            ids.get(this.ids, 0, count);
+            voteNums.get(this.voteNums, 0, count);
+            ranks.get(this.ranks, 0, count);
+            amounts.get(this.amounts, 0, count);
+            size = count;
+            forgetChanges();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hands a consistent view of the columns to {@code exporter}. Writers are blocked meanwhile, so
+     * the exporter should only copy.
+     */
+    public void export(Exporter exporter) {
+        lock.readLock().lock();
+        try {
+            exporter.export(size, ids, voteNums, ranks, amounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(int id, int voteNum, int rank, int amount) {
+        lock.writeLock().lock();
+        try {
+            int slot = size > 0 && id > ids[size - 1] ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+            if (slot < 0) {
+                slot = -slot - 1;
+                ensureCapacity(size + 1);
+                int tail = size - slot;
+                System.arraycopy(ids, slot, ids, slot + 1, tail);
+                System.arraycopy(voteNums, slot, voteNums, slot + 1, tail);
+                System.arraycopy(ranks, slot, ranks, slot + 1, tail);
+                System.arraycopy(amounts, slot, amounts, slot + 1, tail);
+                System.arraycopy(versions, slot, versions, slot + 1, tail);
+                ids[slot] = id;
+                size++;
+            } else if (voteNums[slot] == voteNum && ranks[slot] == rank && amounts[slot] == amount) {
+                return;
+            }
+            versions[slot] = nextVersion();
+            voteNums[slot] = voteNum;
+            ranks[slot] = rank;
+            amounts[slot] = amount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds votes to an event that are not yet in its {@code rs_event} row. The stored ranks are left
+     * to the next {@link #rerank(RankWriter)}, but the unpurchased events the vote overtakes, each
+     * moved down one place, are stamped with the new version along with the event itself, so
+     * {@link #changesSince(long)} still reports every entry whose position changed.
+     *
+     * @return false when the event is unknown
+     */
+    public boolean addVotes(int rsEventId, int num) {
+        lock.writeLock().lock();
+        try {
+            int slot = Arrays.binarySearch(ids, 0, size, rsEventId);
+            if (slot < 0) {
+                return false;
+            }
+            int before = voteNums[slot];
+            voteNums[slot] += num;
+            long added = nextVersion();
+            versions[slot] = added;
+            if (num > 0 && amounts[slot] <= 0) {
+                int after = voteNums[slot];
+                for (int other = 0; other < size; other++) {
+                    int votes = voteNums[other];
+                    if (amounts[other] <= 0 && other != slot
+                            && (votes > before || votes == before && other < slot)
+                            && (votes < after || votes == after && other > slot)) {
+                        versions[other] = added;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gives an event the rank it bought for {@code amount}, keeping its votes.
+     *
+     * @return false when the event is unknown
+     */
+    public boolean purchase(int rsEventId, int rank, int amount) {
+        lock.writeLock().lock();
+        try {
+            int slot = Arrays.binarySearch(ids, 0, size, rsEventId);
+            if (slot < 0) {
+                return false;
+            }
+            ranks[slot] = rank;
+            amounts[slot] = amount;
+            versions[slot] = nextVersion();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int rsEventId) {
+        lock.readLock().lock();
+        try {
+            return Arrays.binarySearch(ids, 0, size, rsEventId) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the given events, compacting the arrays in a single pass.
+     */
+    public void remove(Collection<Integer> rsEventIds) {
+        if (rsEventIds.isEmpty()) {
+            return;
+        }
+        int[] removed = rsEventIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+        lock.writeLock().lock();
+        try {
+            int kept = 0;
+            for (int slot = 0; slot < size; slot++) {
+                if (Arrays.binarySearch(removed, ids[slot]) >= 0) {
+                    recordRemoved(ids[slot]);
+                    continue;
+                }
+                ids[kept] = ids[slot];
+                voteNums[kept] = voteNums[slot];
+                ranks[kept] = ranks[slot];
+                amounts[kept] = amounts[slot];
+                versions[kept] = versions[slot];
+                kept++;
+            }
+            size = kept;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank stored for an event, or 0 when the event is unknown.
+     */
+    public int rank(int rsEventId) {
+        lock.readLock().lock();
+        try {
+            int slot = Arrays.binarySearch(ids, 0, size, rsEventId);
+            return slot < 0 ? 0 : ranks[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stored ranks of the first {@code count} of {@code rsEventIds}, which must be ascending, under a
+     * single read lock. Each id is found by galloping forward from the previous one, so the cost
+     * follows the gaps between the ids rather than the number of events. Unknown events get 0.
+     */
+    public int[] ranks(int[] rsEventIds, int count) {
+        int[] result = new int[count];
+        lock.readLock().lock();
+        try {
+            int slot = 0;
+            for (int i = 0; i < count && slot < size; i++) {
+                int id = rsEventIds[i];
+                int step = 1;
+                int bound = slot;
+                while (bound < size && ids[bound] < id) {
+                    slot = bound + 1;
+                    bound += step;
+                    step <<= 1;
+                }
+                int found = Arrays.binarySearch(ids, slot, Math.min(bound + 1, size), id);
+                slot = found < 0 ? -found - 1 : found;
+                if (found >= 0) {
+                    result[i] = ranks[found];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Latest version handed out; it grows with every change to the columns.
+     */
+    public long version() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Time the latest version was handed out, in epoch milliseconds.
+     */
+    public long lastModified() {
+        lock.readLock().lock();
+        try {
+            return lastModified;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands out a new version for a change that the columns do not hold, such as new or deleted
+     * {@code vote} rows, stamping the given events with it.
+     */
+    public void touch(Collection<Integer> rsEventIds) {
+        lock.writeLock().lock();
+        try {
+            long touched = nextVersion();
+            for (Integer rsEventId : rsEventIds) {
+                int slot = Arrays.binarySearch(ids, 0, size, rsEventId);
+                if (slot >= 0) {
+                    versions[slot] = touched;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Events whose votes or rank changed after version {@code since}, and events removed since then.
+     *
+     * @return null when {@code since} is not a version of this node's current window: too old for
+     * the removals still kept, from before a reload, or from another node
+     */
+    public Changes changesSince(long since) {
+        lock.readLock().lock();
+        try {
+            if (since < oldestVersion || since > version) {
+                return null;
+            }
+            int[] changed = new int[16];
+            int changedCount = 0;
+            for (int slot = 0; slot < size; slot++) {
+                if (versions[slot] > since) {
+                    if (changedCount == changed.length) {
+                        changed = Arrays.copyOf(changed, changedCount << 1);
+                    }
+                    changed[changedCount++] = ids[slot];
+                }
+            }
+            int[] removed = new int[(int) Math.min(removedCount, REMOVED_CAPACITY)];
+            int removedSince = 0;
+            for (long i = removedCount - 1; i >= removedCount - removed.length; i--) {
+                int index = (int) (i % REMOVED_CAPACITY);
+                if (removedVersions[index] <= since) {
+                    break;
+                }
+                removed[removedSince++] = removedIds[index];
+            }
+            return new Changes(version, Arrays.copyOf(changed, changedCount), Arrays.copyOf(removed, removedSince));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes every rank and hands the ranks that changed to {@code writer}. The new ranks are
+     * computed and applied under the write lock, and the writer runs after it is released, so votes
+     * and reads never wait for the database. Re-ranks run one at a time. An event whose write failed,
+     * or whose rank changed again while the batch was written, is written again by the next re-rank.
+     *
+     * <p>Unpurchased events are ordered by votes, most first, ties by id. Purchased events then take
+     * the rank they bought, pushing later events down, which matches the ordering the vote list has
+     * always used.
+     *
+     * @return the number of events whose rank changed
+     */
+    public int rerank(RankWriter writer) {
+        return rerank(writer, false);
+    }
+
+    /**
+     * Full rebuild for large event sets: same result as {@link #rerank(RankWriter)}, but the orderings
+     * are computed with parallel sorts and the writer is expected to spread its work as well.
+     */
+    public int rebuild(RankWriter writer) {
+        return rerank(writer, true);
+    }
+
+    private int rerank(RankWriter writer, boolean parallel) {
+        rerankLock.lock();
+        try {
+            int[] changedIds;
+            int[] changedRanks;
+            int changed;
+            lock.writeLock().lock();
+            try {
+                changedIds = new int[size];
+                changedRanks = new int[size];
+                changed = computeRanks(changedIds, changedRanks, parallel);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (changed == 0) {
+                return 0;
+            }
+            boolean written = false;
+            try {
+                writer.write(changedIds, changedRanks, changed);
+                written = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    for (int i = 0; i < changed; i++) {
+                        int slot = Arrays.binarySearch(ids, 0, size, changedIds[i]);
+                        if (slot >= 0 && (!written || ranks[slot] != changedRanks[i])) {
+                            unwritten.add(changedIds[i]);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            return changed;
+        } finally {
+            rerankLock.unlock();
+        }
+    }
+
+    /**
+     * Orders the events, applies the ranks that moved and collects them, with the events left over
+     * from an unfinished write, into {@code changedIds} and {@code changedRanks}. Called under the
+     * write lock.
+     */
+    private int computeRanks(int[] changedIds, int[] changedRanks, boolean parallel) {
+        int purchasedCount = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (amounts[slot] > 0) {
+                purchasedCount++;
+            }
+        }
+        int[] purchased = new int[purchasedCount];
+        int[] purchasedRanks = new int[purchasedCount];
+        int[] voted = new int[size - purchasedCount];
+        int[] negatedVoteNums = new int[voted.length];
+        for (int slot = 0, p = 0, v = 0; slot < size; slot++) {
+            if (amounts[slot] > 0) {
+                purchased[p] = slot;
+                purchasedRanks[p++] = ranks[slot];
+            } else {
+                voted[v] = slot;
+                negatedVoteNums[v++] = -voteNums[slot];
+            }
+        }
+        int[] purchasedOrder = RankSelector.sort(purchasedRanks, purchasedCount);
+        int[] votedOrder = parallel
+                ? RankSelector.parallelSort(negatedVoteNums, voted.length)
+                : RankSelector.sort(negatedVoteNums, voted.length);
+
+        int changed = 0;
+        long rerankVersion = 0;
+        for (int position = 0, p = 0, v = 0; position < size; position++) {
+            int slot;
+            if (p < purchasedCount && (v == voted.length
+                    || purchasedRanks[purchasedOrder[p]] - 1 <= position)) {
+                slot = purchased[purchasedOrder[p++]];
+            } else {
+                slot = voted[votedOrder[v++]];
+            }
+            boolean moved = ranks[slot] != position + 1;
+            if (moved || unwritten.contains(ids[slot])) {
+                changedIds[changed] = ids[slot];
+                changedRanks[changed++] = position + 1;
+            }
+            if (moved) {
+                if (rerankVersion == 0) {
+                    rerankVersion = nextVersion();
+                }
+                ranks[slot] = position + 1;
+                versions[slot] = rerankVersion;
+            }
+        }
+        unwritten.clear();
+        return changed;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, grown);
+        voteNums = Arrays.copyOf(voteNums, grown);
+        ranks = Arrays.copyOf(ranks, grown);
+        amounts = Arrays.copyOf(amounts, grown);
+        versions = Arrays.copyOf(versions, grown);
+    }
+
+    private long nextVersion() {
+        lastModified = System.currentTimeMillis();
+        return ++version;
+    }
+
+    private void recordRemoved(int id) {
+        int index = (int) (removedCount++ % REMOVED_CAPACITY);
+        if (removedCount > REMOVED_CAPACITY) {
+            oldestVersion = removedVersions[index];
+        }
+        removedIds[index] = id;
+        removedVersions[index] = nextVersion();
+    }
+
+    private void forgetChanges() {
+        oldestVersion = nextVersion();
+        removedCount = 0;
+    }
+
+    /**
+     * Result of {@link #changesSince(long)}: the version it covers, the ascending ids of changed
+     * events and the ids of removed ones.
+     */
+    public static final class Changes {
+        private final long version;
+        private final int[] changed;
+        private final int[] removed;
+
+        Changes(long version, int[] changed, int[] removed) {
+            this.version = version;
+            this.changed = changed;
+            this.removed = removed;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int[] getChanged() {
+            return changed;
+        }
+
+        public int[] getRemoved() {
+            return removed;
+        }
+    }
+
+    /**
+     * Receives the first {@code size} entries of each column; the arrays must not be kept.
+     */
+    @FunctionalInterface
+    public interface Exporter {
+        void export(int size, int[] ids, int[] voteNums, int[] ranks, int[] amounts);
+    }
+
+    /**
+     * Persists a batch of rank changes: {@code ranks[i]} is the new rank of event {@code ids[i]}
+     * for {@code i < count}.
+     */
+    @FunctionalInterface
+    public interface RankWriter {
+        void write(int[] ids, int[] ranks, int count);
+    }
+}
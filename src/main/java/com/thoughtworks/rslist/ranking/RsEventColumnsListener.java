@@ -0,0 +1,85 @@
+package com.thoughtworks.rslist.ranking;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.search.SearchIndex;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JPA listener on {@link RsEventDto} that mirrors inserts, updates and deletes into
+ * {@link RsEventColumns}, and new and deleted events into the {@link RankingBackend}, the
+ * {@link KeywordRankings} and the {@link SearchIndex}; votes and purchases reach the backend through {@code RsService}. Inside a transaction the change is applied
+ * after commit, so a rolled back write never reaches either. A new event reaches the columns last,
+ * so by the time its version is handed out the list already shows it.
+ */
+@Component
+public class RsEventColumnsListener {
+    final RsEventColumns rsEventColumns;
+    final RankingBackend rankingBackend;
+    final KeywordRankings keywordRankings;
+    final SearchIndex searchIndex;
+
+    public RsEventColumnsListener(RsEventColumns rsEventColumns, RankingBackend rankingBackend,
+                                  KeywordRankings keywordRankings, SearchIndex searchIndex) {
+        this.rsEventColumns = rsEventColumns;
+        this.rankingBackend = rankingBackend;
+        this.keywordRankings = keywordRankings;
+        this.searchIndex = searchIndex;
+    }
+
+    @PostPersist
+    public void created(RsEventDto rsEventDto) {
+        int id = rsEventDto.getId();
+        int voteNum = rsEventDto.getVoteNum();
+        int rank = rsEventDto.getRank();
+        int amount = rsEventDto.getAmount();
+        String keyword = rsEventDto.getKeyword();
+        String eventName = rsEventDto.getEventName();
+        afterCommit(() -> {
+            rankingBackend.add(id, voteNum, rank, amount);
+            keywordRankings.add(id, keyword, voteNum, rank, amount);
+            searchIndex.add(id, keyword, eventName);
+            rsEventColumns.put(id, voteNum, rank, amount);
+        });
+    }
+
+    @PostUpdate
+    public void updated(RsEventDto rsEventDto) {
+        int id = rsEventDto.getId();
+        int voteNum = rsEventDto.getVoteNum();
+        int rank = rsEventDto.getRank();
+        int amount = rsEventDto.getAmount();
+        afterCommit(() -> rsEventColumns.put(id, voteNum, rank, amount));
+    }
+
+    @PostRemove
+    public void removed(RsEventDto rsEventDto) {
+        List<Integer> ids = Collections.singletonList(rsEventDto.getId());
+        afterCommit(() -> {
+            rsEventColumns.remove(ids);
+            rankingBackend.remove(ids);
+            keywordRankings.remove(ids);
+            searchIndex.remove(ids);
+        });
+    }
+
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
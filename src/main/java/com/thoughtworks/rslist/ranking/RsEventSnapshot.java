@@ -0,0 +1,149 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checkpoints {@link RsEventColumns} to a memory-mapped file and restores it at startup.
+ *
+ * <p>The file holds a header followed by the id, vote, rank and amount columns, each a block of
+ * {@code int}s. The header records a watermark: the highest id in {@code rs_event}, {@code vote}
+ * and {@code trade} read before the columns were copied. All three tables draw ids from one
+ * increasing sequence, so after a restore only events newer than the watermark, or touched by a
+ * newer vote or trade, have to be re-read. The watermark is lowered by
+ * {@code rs.ranking.snapshot.catch-up-margin} ids to cover transactions that took an id before the
+ * checkpoint but committed after it. Deleted events leave no id behind. If the restored store does
+ * not end up with the table's row count, the snapshot is discarded and the table is loaded in full.
+ *
+ * <p>Disabled unless {@code rs.ranking.snapshot.path} is set.
+ */
+@Component
+public class RsEventSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(RsEventSnapshot.class);
+    private static final int MAGIC = 0x52534331;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    final RsEventColumns rsEventColumns;
+    final JdbcTemplate jdbcTemplate;
+    final Path path;
+    final long catchUpMargin;
+
+    public RsEventSnapshot(RsEventColumns rsEventColumns,
+                           JdbcTemplate jdbcTemplate,
+                           @Value("${rs.ranking.snapshot.path:}") String path,
+                           @Value("${rs.ranking.snapshot.catch-up-margin:10000}") long catchUpMargin) {
+        this.rsEventColumns = rsEventColumns;
+        this.jdbcTemplate = jdbcTemplate;
+        this.path = path.isEmpty() ? null : Paths.get(path);
+        this.catchUpMargin = catchUpMargin;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (path != null && Files.exists(path)) {
+            try {
+                if (restore()) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("ignoring unreadable ranking snapshot {}", path, e);
+            }
+        }
+        rsEventColumns.load();
+    }
+
+    @Scheduled(fixedDelayString = "${rs.ranking.snapshot.interval:60000}",
+            initialDelayString = "${rs.ranking.snapshot.interval:60000}")
+    public void checkpoint() throws IOException {
+        if (path != null) {
+            write();
+        }
+    }
+
+    void write() throws IOException {
+        long watermark = watermark();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            IOException[] failure = new IOException[1];
+            rsEventColumns.export((size, ids, voteNums, ranks, amounts) -> {
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            HEADER_BYTES + 16L * size);
+                    buffer.putInt(MAGIC).putInt(size).putLong(watermark).putLong(System.currentTimeMillis());
+                    IntBuffer columns = buffer.asIntBuffer();
+                    columns.put(ids, 0, size).put(voteNums, 0, size).put(ranks, 0, size).put(amounts, 0, size);
+                    buffer.force();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return whether the columns were restored and caught up; {@code false} means a full load is needed
+     */
+    boolean restore() throws IOException {
+        long watermark;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                return false;
+            }
+            int size = buffer.getInt();
+            watermark = buffer.getLong();
+            buffer.getLong();
+            if (buffer.remaining() != 16L * size) {
+                return false;
+            }
+            rsEventColumns.restore(size, column(buffer, size, 0), column(buffer, size, 1),
+                    column(buffer, size, 2), column(buffer, size, 3));
+        }
+        long since = Math.max(0, watermark - catchUpMargin);
+        jdbcTemplate.query("select id, vote_num, rank, amount from rs_event where id > ?"
+                        + " or id in (select rs_event_id from vote where id > ?)"
+                        + " or id in (select rs_event_id from trade where id > ?)",
+                resultSet -> {
+                    rsEventColumns.put(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3),
+                            resultSet.getInt(4));
+                }, since, since, since);
+        Integer rows = jdbcTemplate.queryForObject("select count(*) from rs_event", Integer.class);
+        return rows != null && rows == rsEventColumns.size();
+    }
+
+    private long watermark() {
+        Long watermark = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from ("
+                + "select max(id) id from rs_event"
+                + " union all select max(id) id from vote"
+                + " union all select max(id) id from trade) ids", Long.class);
+        return watermark == null ? 0 : watermark;
+    }
+
+    private static IntBuffer column(ByteBuffer buffer, int size, int index) {
+        ByteBuffer column = buffer.duplicate();
+        column.position(HEADER_BYTES + index * 4 * size);
+        return column.slice().asIntBuffer();
+    }
+}
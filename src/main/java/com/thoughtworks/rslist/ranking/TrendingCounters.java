@@ -0,0 +1,212 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-event vote counters over the last hour and the last day.
+ *
+ * <p>Each event owns a ring buffer of 60 minute buckets and one of 24 hour buckets; every bucket
+ * remembers which minute or hour it currently counts, so stale buckets are recognised and reused
+ * without a background reset. The hourly window therefore has minute resolution and the daily
+ * window hour resolution. Events without votes in the last day are dropped by {@link #evictIdle()},
+ * which keeps memory proportional to the number of recently voted events.
+ */
+@Component
+public class TrendingCounters {
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    final JdbcTemplate jdbcTemplate;
+    final Clock clock;
+    private final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TrendingCounters(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, Clock.systemDefaultZone());
+    }
+
+    TrendingCounters(JdbcTemplate jdbcTemplate, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = clock;
+    }
+
+    public void record(int rsEventId, int num, LocalDateTime time) {
+        long now = clock.millis();
+        long votedAt = time == null ? now : Math.min(now, time.atZone(clock.getZone()).toInstant().toEpochMilli());
+        if (num <= 0 || votedAt <= now - 24 * HOUR_MILLIS) {
+            return;
+        }
+        counters.computeIfAbsent(rsEventId, id -> new Counter()).add(num, votedAt);
+    }
+
+    /**
+     * Rebuilds the counters of the given events from their {@code vote} rows of the last day, which
+     * picks up votes recorded on other nodes.
+     */
+    public void reload(Collection<Integer> rsEventIds) {
+        long now = clock.millis();
+        Timestamp since = new Timestamp(now - 24 * HOUR_MILLIS);
+        for (Integer rsEventId : rsEventIds) {
+            Counter counter = new Counter();
+            boolean[] voted = new boolean[1];
+            jdbcTemplate.query("select num, local_date_time from vote"
+                            + " where rs_event_id = ? and local_date_time > ? and quarantined = false",
+                    resultSet -> {
+                        int num = resultSet.getInt(1);
+                        if (num > 0) {
+                            LocalDateTime votedAt = resultSet.getTimestamp(2).toLocalDateTime();
+                            counter.add(num, Math.min(now, votedAt.atZone(clock.getZone()).toInstant().toEpochMilli()));
+                            voted[0] = true;
+                        }
+                    }, rsEventId, since);
+            if (voted[0]) {
+                counters.put(rsEventId, counter);
+            } else {
+                counters.remove(rsEventId);
+            }
+        }
+    }
+
+    public int count(int rsEventId, TrendingWindow window) {
+        Counter counter = counters.get(rsEventId);
+        return counter == null ? 0 : counter.count(window, clock.millis());
+    }
+
+    /**
+     * The {@code limit} events with most votes in {@code window}, most voted first, selected with a
+     * bounded min-heap so the cost is O(n log limit) rather than a full sort.
+     */
+    public List<TrendingEntry> top(TrendingWindow window, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        long now = clock.millis();
+        PriorityQueue<TrendingEntry> heap = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                TrendingEntry::compareTo);
+        counters.forEach((rsEventId, counter) -> {
+            int count = counter.count(window, now);
+            if (count == 0) {
+                return;
+            }
+            TrendingEntry entry = new TrendingEntry(rsEventId, count);
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (entry.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        });
+        List<TrendingEntry> top = new ArrayList<>(heap);
+        top.sort(Collections.reverseOrder());
+        return top;
+    }
+
+    public void remove(Collection<Integer> rsEventIds) {
+        rsEventIds.forEach(counters::remove);
+    }
+
+    @Scheduled(fixedDelay = MINUTE_MILLIS)
+    public void evictIdle() {
+        long now = clock.millis();
+        counters.values().removeIf(counter -> counter.count(TrendingWindow.ONE_DAY, now) == 0);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        counters.clear();
+        Timestamp since = new Timestamp(clock.millis() - 24 * HOUR_MILLIS);
+        jdbcTemplate.query("select rs_event_id, num, local_date_time from vote"
+                        + " where local_date_time > ? and quarantined = false",
+                resultSet -> {
+                    record(resultSet.getInt(1), resultSet.getInt(2),
+                            resultSet.getTimestamp(3).toLocalDateTime());
+                }, since);
+    }
+
+    public static class TrendingEntry implements Comparable<TrendingEntry> {
+        private final int rsEventId;
+        private final int count;
+
+        TrendingEntry(int rsEventId, int count) {
+            this.rsEventId = rsEventId;
+            this.count = count;
+        }
+
+        public int getRsEventId() {
+            return rsEventId;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public int compareTo(TrendingEntry other) {
+            if (count != other.count) {
+                return Integer.compare(count, other.count);
+            }
+            return Integer.compare(other.rsEventId, rsEventId);
+        }
+    }
+
+    private static class Counter {
+        private final int[] minuteCounts = new int[60];
+        private final long[] minutes = new long[60];
+        private final int[] hourCounts = new int[24];
+        private final long[] hours = new long[24];
+
+        synchronized void add(int num, long votedAt) {
+            add(minuteCounts, minutes, votedAt / MINUTE_MILLIS, num);
+            add(hourCounts, hours, votedAt / HOUR_MILLIS, num);
+        }
+
+        /**
+         * Votes carry the client's timestamp and arrive in any order, so a vote for a period older
+         * than the one its slot already counts is dropped rather than resetting the slot.
+         */
+        private static void add(int[] counts, long[] periods, long period, int num) {
+            int slot = (int) (period % counts.length);
+            if (periods[slot] > period) {
+                return;
+            }
+            if (periods[slot] != period) {
+                periods[slot] = period;
+                counts[slot] = 0;
+            }
+            counts[slot] += num;
+        }
+
+        synchronized int count(TrendingWindow window, long now) {
+            if (window == TrendingWindow.ONE_HOUR) {
+                return sum(minuteCounts, minutes, now / MINUTE_MILLIS);
+            }
+            return sum(hourCounts, hours, now / HOUR_MILLIS);
+        }
+
+        private static int sum(int[] counts, long[] periods, long current) {
+            int total = 0;
+            for (int slot = 0; slot < counts.length; slot++) {
+                if (periods[slot] > current - counts.length) {
+                    total += counts[slot];
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.thoughtworks.rslist.ranking;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum TrendingWindow {
+    ONE_HOUR("1h"),
+    ONE_DAY("24h");
+
+    private final String value;
+
+    TrendingWindow(String value) {
+        this.value = value;
+    }
+
+    public static Optional<TrendingWindow> of(String value) {
+        return Arrays.stream(values()).filter(window -> window.value.equals(value)).findFirst();
+    }
+}
@@ -0,0 +1,17 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.IdempotencyKeyDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends CrudRepository<IdempotencyKeyDto, String> {
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKeyDto k where k.createdAt < :before")
+    int deleteAllByCreatedAtBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,20 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.InvalidationMessageDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface InvalidationMessageRepository extends CrudRepository<InvalidationMessageDto, Integer> {
+    List<InvalidationMessageDto> findAllByCreatedAtAfterOrderById(LocalDateTime after);
+
+    @Transactional
+    @Modifying
+    @Query("delete from InvalidationMessageDto m where m.createdAt < :before")
+    int deleteAllByCreatedAtBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,21 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends CrudRepository<OutboxEventDto, Integer> {
+    List<OutboxEventDto> findAllByOrderById(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxEventDto e where e.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Integer> ids);
+}
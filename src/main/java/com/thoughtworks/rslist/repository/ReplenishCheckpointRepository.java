@@ -0,0 +1,10 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.ReplenishCheckpointDto;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.Optional;
+
+public interface ReplenishCheckpointRepository extends CrudRepository<ReplenishCheckpointDto, Integer> {
+    Optional<ReplenishCheckpointDto> findFirstByFinishedAtIsNullOrderByIdDesc();
+}
@@ -1,16 +1,33 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.RsEventDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
 public interface RsEventRepository extends CrudRepository<RsEventDto, Integer> {
   List<RsEventDto> findAll();
 
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
   RsEventDto findByRank(int rank);
 
+  List<RsEventDto> findAllByOrderByIdAsc(Pageable pageable);
+
   @Transactional
   void deleteAllByUserId(int userId);
+
+  @Query("select e.id from RsEventDto e where e.user.id = :userId")
+  List<Integer> findIdsByUserId(@Param("userId") int userId, Pageable pageable);
+
+  @Modifying
+  @Query("delete from RsEventDto e where e.id in :ids")
+  int deleteAllByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,114 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.domain.CacheRegionStats;
+import com.thoughtworks.rslist.domain.CacheStats;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evicts {@link UserDto} and {@link RsEventDto} from Hibernate's second-level cache after writes
+ * that bypass Hibernate: the JDBC batches of ranks, projected votes and vote balances, and changes
+ * announced by other nodes. Writes through the repositories keep the cache up to date by
+ * themselves, and bulk JPQL deletes evict the whole region.
+ *
+ * <p>Inside a transaction the entries are evicted at once and again after commit, so a concurrent
+ * load of the old row that lands in between is not left behind. Evicting events also clears the
+ * query cache, which holds the results of {@link RsEventRepository#findByRank}.
+
+ */
+@Component
+public class SecondLevelCache {
+    public static final String USER_REGION = "user";
+    public static final String RS_EVENT_REGION = "rsEvent";
+    private static final List<String> REGIONS = Arrays.asList(USER_REGION, RS_EVENT_REGION,
+            RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+
+    final Cache cache;
+    final Statistics statistics;
+
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.cache = sessionFactory.getCache();
+        this.statistics = sessionFactory.getStatistics();
+    }
+
+    public void evictRsEvents(Collection<Integer> ids) {
+        if (!ids.isEmpty()) {
+            evict(() -> {
+                ids.forEach(id -> cache.evictEntityData(RsEventDto.class, id));
+                cache.evictDefaultQueryRegion();
+            });
+        }
+    }
+
+    public void evictUsers(Collection<Integer> ids) {
+        if (!ids.isEmpty()) {
+            evict(() -> ids.forEach(id -> cache.evictEntityData(UserDto.class, id)));
+        }
+    }
+
+    public void evictAllRsEvents() {
+        evict(() -> {
+            cache.evictEntityData(RsEventDto.class);
+            cache.evictDefaultQueryRegion();
+        });
+    }
+
+    public void evictAllUsers() {
+        evict(() -> cache.evictEntityData(UserDto.class));
+    }
+
+    /**
+     * Hits, misses and puts per region since startup, and the statements prepared over the same
+     * time; all zero unless {@code hibernate.generate_statistics} is on.
+     */
+    public CacheStats getStats() {
+        List<CacheRegionStats> regions = new ArrayList<>(REGIONS.size());
+        for (String region : REGIONS) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            long hits = regionStatistics.getHitCount();
+            long misses = regionStatistics.getMissCount();
+            regions.add(CacheRegionStats.builder()
+                    .region(region)
+                    .hits(hits)
+                    .misses(misses)
+                    .puts(regionStatistics.getPutCount())
+                    .hitRatio(hits + misses == 0 ? 0 : (double) hits / (hits + misses))
+                    .build());
+        }
+        return CacheStats.builder()
+                .enabled(statistics.isStatisticsEnabled())
+                .regions(regions)
+                .statements(statistics.getPrepareStatementCount())
+                .build();
+    }
+
+    private static void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.thoughtworks.rslist.repository;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gives each application context a JCache manager of its own for Hibernate's second-level cache;
+ * Hibernate closes it with the session factory. The provider's default manager is shared by the
+ * whole JVM, so nodes run side by side in one JVM, as in tests, would share cached rows and evict
+ * each other's entries on every change they announce. The regions themselves are configured in
+ * {@code application.conf}.
+ */
+@Component
+public class SecondLevelCacheManager implements HibernatePropertiesCustomizer {
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, provider.getCacheManager(
+                URI.create("rs-list:" + UUID.randomUUID()), SecondLevelCacheManager.class.getClassLoader()));
+    }
+}
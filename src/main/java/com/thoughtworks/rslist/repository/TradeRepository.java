@@ -1,10 +1,18 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.TradeDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TradeRepository extends CrudRepository<TradeDto, Integer> {
     List<TradeDto> findAll();
+
+    @Modifying
+    @Query("delete from TradeDto t where t.rsEventDto.id in :rsEventIds")
+    int deleteAllByRsEventIdIn(@Param("rsEventIds") Collection<Integer> rsEventIds);
 }
@@ -1,10 +1,21 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.UserDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface UserRepository extends CrudRepository<UserDto, Integer> {
     List<UserDto> findAll();
+
+    @Query("select u.voteNum from UserDto u where u.id = :id")
+    Optional<Integer> findVoteNumById(@Param("id") int id);
+
+    @Modifying
+    @Query("delete from UserDto u where u.id = :id")
+    int deleteUserById(@Param("id") int id);
 }
@@ -0,0 +1,7 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.VoteLogCheckpointDto;
+import org.springframework.data.repository.CrudRepository;
+
+public interface VoteLogCheckpointRepository extends CrudRepository<VoteLogCheckpointDto, Integer> {
+}
@@ -2,11 +2,23 @@ package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.VoteDto;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface VoteRepository extends PagingAndSortingRepository<VoteDto, Integer> {
     List<VoteDto> findAll();
     List<VoteDto> findAllByUserIdAndRsEventId(int userId, int rsEventId, Pageable pageable);
+
+    @Modifying
+    @Query("delete from VoteDto v where v.rsEvent.id in :rsEventIds")
+    int deleteAllByRsEventIdIn(@Param("rsEventIds") Collection<Integer> rsEventIds);
+
+    @Modifying
+    @Query("delete from VoteDto v where v.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") int userId);
 }
@@ -0,0 +1,391 @@
+package com.thoughtworks.rslist.search;
+
+import com.thoughtworks.rslist.ranking.RankSelector;
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over the {@code keyword} and {@code eventName} of every hot-search
+ * event.
+ *
+ * <p>Text is lower-cased and split into words of letters and digits. Han, kana and hangul runs
+ * have no spaces to split on, so each of their characters is indexed on its own and together with
+ * the next one; a query of two or more such characters then matches on those pairs. Each term maps
+ * to a sorted {@code int} posting list of event ids. A query matches the events holding all of
+ * its terms, the last word also matching as a prefix so results follow typing. Posting lists are
+ * intersected smallest first with binary search, the prefix is checked against the few candidates
+ * left rather than expanded, and the matches are ordered by the ranks held in
+ * {@link RsEventColumns} without touching the database. Only a query that is nothing but a short
+ * prefix has to merge many posting lists.
+ *
+ * <p>{@code RsEventColumnsListener} keeps the index in step with inserts and deletes through JPA;
+ * bulk deletes call {@link #remove(Collection)} themselves.
+ */
+@Component
+public class SearchIndex {
+    static final int MAX_PREFIX_TERMS = 1000;
+    private static final String[] NO_TERMS = new String[0];
+
+    final JdbcTemplate jdbcTemplate;
+    final RsEventColumns rsEventColumns;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    private final Map<Integer, String[]> documents = new HashMap<>();
+
+    public SearchIndex(JdbcTemplate jdbcTemplate, RsEventColumns rsEventColumns) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rsEventColumns = rsEventColumns;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            jdbcTemplate.query("select id, keyword, event_name from rs_event order by id", resultSet -> {
+                add(resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes an event. An event already indexed is re-indexed if its terms changed.
+     */
+    public void add(int rsEventId, String keyword, String eventName) {
+        Set<String> terms = new LinkedHashSet<>();
+        tokenize(keyword, terms, true);
+        tokenize(eventName, terms, true);
+        lock.writeLock().lock();
+        try {
+            String[] existing = documents.get(rsEventId);
+            if (existing != null && existing.length == terms.size() && terms.containsAll(Arrays.asList(existing))) {
+                return;
+            }
+            removeDocument(rsEventId);
+            String[] interned = new String[terms.size()];
+            int i = 0;
+            for (String term : terms) {
+                Map.Entry<String, Posting> entry = postings.ceilingEntry(term);
+                if (entry != null && entry.getKey().equals(term)) {
+                    entry.getValue().add(rsEventId);
+                    interned[i++] = entry.getKey();
+                } else {
+                    Posting posting = new Posting();
+                    posting.add(rsEventId);
+                    postings.put(term, posting);
+                    interned[i++] = term;
+                }
+            }
+            documents.put(rsEventId, interned.length == 0 ? NO_TERMS : interned);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<Integer> rsEventIds) {
+        lock.writeLock().lock();
+        try {
+            for (Integer rsEventId : rsEventIds) {
+                removeDocument(rsEventId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of at most {@code limit} events matching {@code query}, best rank first. Unranked events
+     * come last, by id.
+     */
+    public int[] search(String query, int limit) {
+        Set<String> exact = new LinkedHashSet<>();
+        tokenize(query, exact, false);
+        String prefix = lastWord(query);
+        if (prefix != null) {
+            exact.remove(prefix);
+        }
+        if (limit <= 0 || (exact.isEmpty() && prefix == null)) {
+            return new int[0];
+        }
+        int[] matches;
+        int count;
+        lock.readLock().lock();
+        try {
+            if (exact.isEmpty()) {
+                matches = expand(prefix);
+                count = matches.length;
+            } else {
+                List<Posting> lists = new ArrayList<>(exact.size());
+                for (String term : exact) {
+                    Posting posting = postings.get(term);
+                    if (posting == null) {
+                        return new int[0];
+                    }
+                    lists.add(posting);
+                }
+                lists.sort(Comparator.comparingInt(posting -> posting.size));
+                matches = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+                count = matches.length;
+                for (int i = 1; i < lists.size() && count > 0; i++) {
+                    count = retain(matches, count, lists.get(i).ids, lists.get(i).size);
+                }
+                if (prefix != null && count > 0) {
+                    count = retainPrefixed(matches, count, prefix);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int[] ranks = rsEventColumns.ranks(matches, count);
+        for (int i = 0; i < count; i++) {
+            if (ranks[i] == 0) {
+                ranks[i] = Integer.MAX_VALUE;
+            }
+        }
+        int[] positions = RankSelector.smallest(ranks, count, limit);
+        int[] ids = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            ids[i] = matches[positions[i]];
+        }
+        return ids;
+    }
+
+    /**
+     * Union of the postings of up to {@value #MAX_PREFIX_TERMS} terms starting with {@code prefix}.
+     */
+    private int[] expand(String prefix) {
+        NavigableMap<String, Posting> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (range.isEmpty()) {
+            return new int[0];
+        }
+        if (range.firstKey().equals(range.lastKey())) {
+            Posting posting = range.firstEntry().getValue();
+            return Arrays.copyOf(posting.ids, posting.size);
+        }
+        int total = 0;
+        int terms = 0;
+        for (Posting posting : range.values()) {
+            if (terms++ == MAX_PREFIX_TERMS) {
+                break;
+            }
+            total += posting.size;
+        }
+        int[] union = new int[total];
+        int offset = 0;
+        terms = 0;
+        for (Posting posting : range.values()) {
+            if (terms++ == MAX_PREFIX_TERMS) {
+                break;
+            }
+            System.arraycopy(posting.ids, 0, union, offset, posting.size);
+            offset += posting.size;
+        }
+        Arrays.sort(union);
+        int distinct = 0;
+        for (int i = 0; i < total; i++) {
+            if (distinct == 0 || union[distinct - 1] != union[i]) {
+                union[distinct++] = union[i];
+            }
+        }
+        return Arrays.copyOf(union, distinct);
+    }
+
+    /**
+     * Keeps the first {@code count} of {@code ids} holding a term that starts with {@code prefix}.
+     * When the terms with that prefix have fewer postings than there are candidates, their union
+     * is intersected; otherwise each candidate's own terms are checked.
+     */
+    private int retainPrefixed(int[] ids, int count, String prefix) {
+        NavigableMap<String, Posting> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        long postingTotal = 0;
+        for (Posting posting : range.values()) {
+            postingTotal += posting.size;
+            if (postingTotal > count) {
+                break;
+            }
+        }
+        if (postingTotal <= count) {
+            int[] union = expand(prefix);
+            return retain(ids, count, union, union.length);
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            for (String term : documents.get(ids[i])) {
+                if (term.startsWith(prefix)) {
+                    ids[kept++] = ids[i];
+                    break;
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps the first {@code count} of {@code ids} that also occur in {@code other}; both sorted.
+     */
+    private static int retain(int[] ids, int count, int[] other, int otherSize) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count && from < otherSize; i++) {
+            int found = Arrays.binarySearch(other, from, otherSize, ids[i]);
+            if (found >= 0) {
+                ids[kept++] = ids[i];
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return kept;
+    }
+
+    private void removeDocument(int rsEventId) {
+        String[] terms = documents.remove(rsEventId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Posting posting = postings.get(term);
+            if (posting != null && posting.remove(rsEventId) == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * The last word of {@code query} when it is a plain word the user may still be typing, else
+     * {@code null}.
+     */
+    static String lastWord(String query) {
+        if (query == null || query.isEmpty() || !Character.isLetterOrDigit(query.codePointBefore(query.length()))) {
+            return null;
+        }
+        int end = query.length();
+        int start = end;
+        while (start > 0) {
+            int codePoint = query.codePointBefore(start);
+            if (!Character.isLetterOrDigit(codePoint) || isCjk(codePoint)) {
+                break;
+            }
+            start -= Character.charCount(codePoint);
+        }
+        return start == end ? null : query.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds the terms of {@code text} to {@code terms}. When indexing, every CJK character is also a
+     * term of its own; a query only uses single characters for a one-character run.
+     */
+    static void tokenize(String text, Collection<String> terms, boolean indexing) {
+        if (text == null) {
+            return;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        int previousCjk = -1;
+        for (int i = 0; i < lower.length(); ) {
+            int codePoint = lower.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isCjk(codePoint)) {
+                flush(word, terms);
+                String single = new String(Character.toChars(codePoint));
+                if (indexing) {
+                    terms.add(single);
+                }
+                if (previousCjk >= 0) {
+                    terms.add(new String(Character.toChars(previousCjk)) + single);
+                } else if (!indexing && (i >= lower.length() || !isCjk(lower.codePointAt(i)))) {
+                    terms.add(single);
+                }
+                previousCjk = codePoint;
+            } else {
+                previousCjk = -1;
+                if (Character.isLetterOrDigit(codePoint)) {
+                    word.appendCodePoint(codePoint);
+                } else {
+                    flush(word, terms);
+                }
+            }
+        }
+        flush(word, terms);
+    }
+
+    private static void flush(StringBuilder word, Collection<String> terms) {
+        if (word.length() > 0) {
+            terms.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * Event ids holding one term, ascending. Ids come from an increasing sequence, so adding is
+     * nearly always an append.
+     */
+    private static class Posting {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) {
+                return;
+            }
+            at = at < 0 ? -at - 1 : at;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        int remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                size--;
+                if (size > 16 && size * 4 < ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+            }
+            return size;
+        }
+    }
+}
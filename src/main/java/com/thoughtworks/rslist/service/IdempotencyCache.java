@@ -0,0 +1,237 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.dto.IdempotencyKeyDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates retried requests that carry an {@code Idempotency-Key} header.
+ *
+ * <p>The first request with a key runs normally and its response status is remembered for
+ * {@code rs.idempotency.ttl}. Retries get that status back from memory without running the
+ * request again. They are marked with an {@code Idempotent-Replayed} header. A retry that arrives
+ * while the first request is still running waits up to {@code rs.idempotency.wait} for its
+ * outcome, and then gets 409. A key reused with a different request body is rejected: each key
+ * keeps the SHA-256 digest of its request serialized as JSON. Requests that throw or end in a 5xx
+ * status are not remembered, so the client may retry them.
+ *
+ * <p>At most {@code rs.idempotency.capacity} keys are kept in memory, oldest first out. With
+ * {@code rs.idempotency.persistent} set, outcomes are also written to the {@code idempotency_key}
+ * table and consulted on a local miss, so retries that land on another node or after a restart
+ * are still deduplicated.
+ */
+@Component
+public class IdempotencyCache {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyCache.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    final IdempotencyKeyRepository idempotencyKeyRepository;
+    final ObjectMapper objectMapper;
+    final int capacity;
+    final Duration ttl;
+    final Duration wait;
+    final boolean persistent;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyCache(IdempotencyKeyRepository idempotencyKeyRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${rs.idempotency.capacity:100000}") int capacity,
+                            @Value("${rs.idempotency.ttl:PT24H}") Duration ttl,
+                            @Value("${rs.idempotency.wait:PT5S}") Duration wait,
+                            @Value("${rs.idempotency.persistent:false}") boolean persistent) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.capacity = capacity;
+        this.ttl = ttl;
+        this.wait = wait;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Runs {@code action} once per {@code key} within {@code scope}. Without a key the action
+     * simply runs.
+     */
+    public ResponseEntity<Object> execute(String key, String scope, Object request,
+                                          Supplier<ResponseEntity<Object>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new RequestNotValidException("invalid idempotency key");
+        }
+        String id = scope + ":" + key;
+        String fingerprint = fingerprint(request);
+        Entry entry = new Entry(fingerprint, System.nanoTime());
+        Entry existing = putIfAbsent(id, entry);
+        if (existing != null) {
+            return replay(existing, fingerprint);
+        }
+
+        ResponseEntity<Object> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            forget(id, entry);
+            entry.status.completeExceptionally(e);
+            throw e;
+        }
+        int status = response.getStatusCodeValue();
+        if (status >= 500) {
+            forget(id, entry);
+        } else if (persistent) {
+            persist(id, fingerprint, status);
+        }
+        entry.status.complete(status);
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${rs.idempotency.purge-interval:3600000}")
+    public void purge() {
+        synchronized (entries) {
+            removeExpired(System.nanoTime());
+        }
+        if (persistent) {
+            idempotencyKeyRepository.deleteAllByCreatedAtBefore(LocalDateTime.now().minus(ttl));
+        }
+    }
+
+    private Entry putIfAbsent(String id, Entry entry) {
+        Optional<Entry> stored = Optional.empty();
+        if (persistent) {
+            synchronized (entries) {
+                Entry existing = entries.get(id);
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            stored = load(id);
+        }
+        synchronized (entries) {
+            removeExpired(entry.createdAt);
+            Entry existing = entries.get(id);
+            if (existing != null) {
+                return existing;
+            }
+            if (stored.isPresent()) {
+                entries.put(id, stored.get());
+                return stored.get();
+            }
+            entries.put(id, entry);
+            if (entries.size() > capacity) {
+                Iterator<Entry> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return null;
+        }
+    }
+
+    private ResponseEntity<Object> replay(Entry entry, String fingerprint) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new RequestNotValidException("idempotency key reused with a different request");
+        }
+        int status;
+        try {
+            status = entry.status.get(wait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+        return ResponseEntity.status(status).header(REPLAYED_HEADER, "true").build();
+    }
+
+    private void forget(String id, Entry entry) {
+        synchronized (entries) {
+            entries.remove(id, entry);
+        }
+    }
+
+    private void removeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && now - iterator.next().createdAt > ttl.toNanos()) {
+            iterator.remove();
+        }
+    }
+
+    private Optional<Entry> load(String id) {
+        try {
+            return idempotencyKeyRepository.findById(id)
+                    .filter(stored -> stored.getCreatedAt().isAfter(LocalDateTime.now().minus(ttl)))
+                    .map(stored -> {
+                        Entry entry = new Entry(stored.getFingerprint(), System.nanoTime());
+                        entry.status.complete(stored.getStatus());
+                        return entry;
+                    });
+        } catch (DataAccessException e) {
+            log.warn("failed to look up idempotency key {}", id, e);
+            return Optional.empty();
+        }
+    }
+
+    private void persist(String id, String fingerprint, int status) {
+        try {
+            idempotencyKeyRepository.save(IdempotencyKeyDto.builder()
+                    .id(id)
+                    .fingerprint(fingerprint)
+                    .status(status)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (DataAccessException e) {
+            log.warn("failed to persist idempotency key {}", id, e);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Entry {
+        final String fingerprint;
+        final long createdAt;
+        final CompletableFuture<Integer> status = new CompletableFuture<>();
+
+        Entry(String fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
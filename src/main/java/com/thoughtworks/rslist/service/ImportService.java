@@ -0,0 +1,247 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.ImportError;
+import com.thoughtworks.rslist.domain.ImportResult;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.User;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Bulk onboarding of users and hot-search events.
+ *
+ * <p>Rows are validated with the same bean-validation annotations as the single-row endpoints,
+ * then persisted chunk by chunk with one {@code saveAll} per chunk so Hibernate can send the
+ * inserts as JDBC batches. A chunk that fails as a whole is retried row by row so the caller
+ * gets an error for the offending rows only. Imported events are ranked with one full rebuild at
+ * the end rather than one re-rank per row.
+ */
+@Service
+public class ImportService {
+    public static final String NDJSON = "application/x-ndjson";
+
+    final UserRepository userRepository;
+    final RsEventRepository rsEventRepository;
+    final Validator validator;
+    final ObjectMapper objectMapper;
+    final RankRebuildService rankRebuildService;
+    final InvalidationBus invalidationBus;
+    final TransactionTemplate transactionTemplate;
+    final int chunkSize;
+
+    public ImportService(UserRepository userRepository,
+                         RsEventRepository rsEventRepository,
+                         Validator validator,
+                         ObjectMapper objectMapper,
+                         RankRebuildService rankRebuildService,
+                         InvalidationBus invalidationBus,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${rs.import.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.rsEventRepository = rsEventRepository;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.rankRebuildService = rankRebuildService;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportResult importUsers(List<User> users) {
+        return importList(users, this::importUserChunk);
+    }
+
+    public ImportResult importUsers(Reader ndjson) throws IOException {
+        return importNdjson(ndjson, User.class, this::importUserChunk);
+    }
+
+    public ImportResult importRsEvents(List<RsEvent> rsEvents) {
+        return rebuildRanks(importList(rsEvents, this::importRsEventChunk));
+    }
+
+    public ImportResult importRsEvents(Reader ndjson) throws IOException {
+        return rebuildRanks(importNdjson(ndjson, RsEvent.class, this::importRsEventChunk));
+    }
+
+    private ImportResult rebuildRanks(ImportResult result) {
+        if (result.getImported() > 0) {
+            rankRebuildService.rebuild();
+            invalidationBus.publish(ChangeEvent.Type.RESYNC, Collections.emptyList());
+        }
+        return result;
+    }
+
+    private <T> ImportResult importList(List<T> items, Function<List<Row<T>>, ImportResult> chunkImporter) {
+        ImportResult result = new ImportResult();
+        List<Row<T>> chunk = new ArrayList<>(Math.min(chunkSize, items.size()));
+        for (int i = 0; i < items.size(); i++) {
+            chunk.add(new Row<>(i, items.get(i)));
+            if (chunk.size() == chunkSize) {
+                result.merge(chunkImporter.apply(chunk));
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.merge(chunkImporter.apply(chunk));
+        }
+        return result;
+    }
+
+    private <T> ImportResult importNdjson(Reader ndjson, Class<T> type,
+                                          Function<List<Row<T>>, ImportResult> chunkImporter) throws IOException {
+        ImportResult result = new ImportResult();
+        BufferedReader reader = new BufferedReader(ndjson);
+        List<Row<T>> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                chunk.add(new Row<>(index, objectMapper.readValue(line, type)));
+            } catch (JsonProcessingException e) {
+                result.setTotal(result.getTotal() + 1);
+                result.getErrors().add(new ImportError(index, "invalid json"));
+            }
+            index++;
+            if (chunk.size() == chunkSize) {
+                result.merge(chunkImporter.apply(chunk));
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.merge(chunkImporter.apply(chunk));
+        }
+        return result;
+    }
+
+    private ImportResult importUserChunk(List<Row<User>> rows) {
+        ImportResult result = new ImportResult(rows.size());
+        List<Row<UserDto>> valid = new ArrayList<>(rows.size());
+        for (Row<User> row : rows) {
+            String error = validate(row.value);
+            if (error != null) {
+                result.getErrors().add(new ImportError(row.index, error));
+                continue;
+            }
+            User user = row.value;
+            valid.add(new Row<>(row.index, UserDto.builder()
+                    .userName(user.getUserName())
+                    .gender(user.getGender())
+                    .age(user.getAge())
+                    .email(user.getEmail())
+                    .phone(user.getPhone())
+                    .voteNum(user.getVoteNum())
+                    .build()));
+        }
+        persist(valid, userRepository, result);
+        return result;
+    }
+
+    private ImportResult importRsEventChunk(List<Row<RsEvent>> rows) {
+        ImportResult result = new ImportResult(rows.size());
+        List<Row<RsEvent>> validated = new ArrayList<>(rows.size());
+        for (Row<RsEvent> row : rows) {
+            String error = validate(row.value);
+            if (error != null) {
+                result.getErrors().add(new ImportError(row.index, error));
+            } else {
+                validated.add(row);
+            }
+        }
+        Set<Integer> userIds = validated.stream()
+                .map(row -> row.value.getUserId())
+                .collect(Collectors.toSet());
+        Map<Integer, UserDto> users = StreamSupport.stream(userRepository.findAllById(userIds).spliterator(), false)
+                .collect(Collectors.toMap(UserDto::getId, Function.identity()));
+
+        List<Row<RsEventDto>> valid = new ArrayList<>(validated.size());
+        for (Row<RsEvent> row : validated) {
+            UserDto user = users.get(row.value.getUserId());
+            if (user == null) {
+                result.getErrors().add(new ImportError(row.index, "user not exist"));
+                continue;
+            }
+            valid.add(new Row<>(row.index, RsEventDto.builder()
+                    .keyword(row.value.getKeyword())
+                    .eventName(row.value.getEventName())
+                    .voteNum(0)
+                    .user(user)
+                    .build()));
+        }
+        persist(valid, rsEventRepository, result);
+        return result;
+    }
+
+    private <D> void persist(List<Row<D>> rows, CrudRepository<D, Integer> repository, ImportResult result) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<D> entities = rows.stream().map(row -> row.value).collect(Collectors.toList());
+        try {
+            transactionTemplate.execute(status -> repository.saveAll(entities));
+            result.setImported(result.getImported() + rows.size());
+        } catch (DataAccessException e) {
+            for (Row<D> row : rows) {
+                try {
+                    transactionTemplate.execute(status -> repository.save(row.value));
+                    result.setImported(result.getImported() + 1);
+                } catch (DataAccessException rowException) {
+                    result.getErrors().add(new ImportError(row.index, rowException.getMostSpecificCause().getMessage()));
+                }
+            }
+        }
+        result.getErrors().sort((first, second) -> Integer.compare(first.getIndex(), second.getIndex()));
+    }
+
+    private <T> String validate(T value) {
+        if (value == null) {
+            return "row must not be null";
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(value);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static class Row<T> {
+        final int index;
+        final T value;
+
+        Row(int index, T value) {
+            this.index = index;
+            this.value = value;
+        }
+    }
+}
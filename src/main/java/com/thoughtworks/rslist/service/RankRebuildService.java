@@ -0,0 +1,184 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persists ranks computed by {@link RsEventColumns}, and the purchases and votes they are computed
+ * from. Every write touches only its own columns, so concurrent writers never overwrite each other's
+ * {@code vote_num}.
+ *
+ * <p>{@link #write(int[], int[], int)} sends one JDBC batch and suits the handful of ranks a vote
+ * moves. {@link #rebuild()} is for full re-ranks after bulk imports or deletions: it sorts with
+ * parallel sorts and splits the changed ranks into batches of {@code rs.ranking.rebuild.batch-size}
+ * rows, written concurrently by {@code rs.ranking.rebuild.writers} threads, each on its own
+ * connection. The events written are evicted from the {@link SecondLevelCache}.
+ *
+ * <p>The columns are not locked while a rebuild writes, but re-ranks run one at a time and the
+ * scheduled one holds a connection while it waits, so a rebuild reserves its connections before it
+ * starts rather than borrowing them from the pool mid-write. Rebuilds run one at a time so two of
+ * them never hold part of the connections each.
+ */
+@Service
+public class RankRebuildService {
+    private static final String UPDATE_RANK = "update rs_event set rank = ? where id = ?";
+    private static final String UPDATE_PURCHASE = "update rs_event set rank = ?, amount = ? where id = ?";
+    private static final String ADD_VOTES = "update rs_event set vote_num = vote_num + ? where id = ?";
+
+    final RsEventColumns rsEventColumns;
+    final JdbcTemplate jdbcTemplate;
+    final SecondLevelCache secondLevelCache;
+    final int batchSize;
+    final int writerCount;
+    private final ExecutorService writers;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public RankRebuildService(RsEventColumns rsEventColumns,
+                              JdbcTemplate jdbcTemplate,
+                              SecondLevelCache secondLevelCache,
+                              @Value("${rs.ranking.rebuild.writers:4}") int writers,
+                              @Value("${rs.ranking.rebuild.batch-size:5000}") int batchSize) {
+        this.rsEventColumns = rsEventColumns;
+        this.jdbcTemplate = jdbcTemplate;
+        this.secondLevelCache = secondLevelCache;
+        this.batchSize = batchSize;
+        this.writerCount = writers;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "rank-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Re-ranks every event and writes the changed ranks in parallel batches.
+     *
+     * @return the number of events whose rank changed
+     */
+    public int rebuild() {
+        rebuildLock.lock();
+        List<Connection> reserved = new ArrayList<>();
+        try {
+            int batches = (rsEventColumns.size() + batchSize - 1) / batchSize;
+            BlockingQueue<JdbcTemplate> connections = new LinkedBlockingQueue<>();
+            for (int i = 0; i < Math.max(1, Math.min(writerCount, batches)); i++) {
+                Connection connection = reserveConnection();
+                reserved.add(connection);
+                connections.add(new JdbcTemplate(new SingleConnectionDataSource(connection, true)));
+            }
+            return rsEventColumns.rebuild((ids, ranks, count) -> writeInParallel(ids, ranks, count, connections));
+        } finally {
+            reserved.forEach(JdbcUtils::closeConnection);
+            rebuildLock.unlock();
+        }
+    }
+
+    public void write(int[] ids, int[] ranks, int count) {
+        write(jdbcTemplate, ids, ranks, 0, count);
+    }
+
+    private Connection reserveConnection() {
+        try {
+            return jdbcTemplate.getDataSource().getConnection();
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("failed to reserve a connection for the rank rebuild", e);
+        }
+    }
+
+    /**
+     * Persists a purchased rank and its price, leaving {@code vote_num} to the vote paths.
+     */
+    public void writePurchase(int id, int rank, int amount) {
+        jdbcTemplate.update(UPDATE_PURCHASE, rank, amount, id);
+        secondLevelCache.evictRsEvents(Collections.singletonList(id));
+    }
+
+    /**
+     * Adds {@code num} votes to an event's {@code vote_num} in place.
+     */
+    public void writeVotes(int id, int num) {
+        jdbcTemplate.update(ADD_VOTES, num, id);
+        secondLevelCache.evictRsEvents(Collections.singletonList(id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    /**
+     * Writes the ranks in batches, each on one of the reserved {@code connections}; a batch waits
+     * for a connection another batch has finished with.
+     */
+    private void writeInParallel(int[] ids, int[] ranks, int count, BlockingQueue<JdbcTemplate> connections) {
+        if (count <= batchSize) {
+            write(connections.peek(), ids, ranks, 0, count);
+            return;
+        }
+        List<Future<?>> batches = new ArrayList<>();
+        for (int from = 0; from < count; from += batchSize) {
+            int start = from;
+            int end = Math.min(count, from + batchSize);
+            batches.add(writers.submit(() -> {
+                JdbcTemplate jdbc = connections.take();
+                try {
+                    write(jdbc, ids, ranks, start, end);
+                } finally {
+                    connections.add(jdbc);
+                }
+                return null;
+            }));
+        }
+        RuntimeException failure = null;
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IllegalStateException("rank rebuild interrupted", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void write(JdbcTemplate jdbc, int[] ids, int[] ranks, int from, int to) {
+        List<Object[]> args = new ArrayList<>(to - from);
+        List<Integer> written = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            args.add(new Object[]{ranks[i], ids[i]});
+            written.add(ids[i]);
+        }
+        jdbc.batchUpdate(UPDATE_RANK, args);
+        secondLevelCache.evictRsEvents(written);
+    }
+}
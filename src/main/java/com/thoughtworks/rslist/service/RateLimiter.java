@@ -0,0 +1,176 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RateLimitStats;
+import com.thoughtworks.rslist.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket limits on votes per user and on votes and purchases per event.
+ *
+ * <p>Each bucket is a single {@link AtomicLong} holding the bucket's "theoretical arrival time"
+ * (the generic cell rate algorithm): a request is admitted when that time is at most
+ * {@code burst - 1} intervals ahead of now, and admitting it pushes the time one interval further.
+ * This is equivalent to a bucket of {@code burst} tokens refilled at {@code rate} per second and
+ * needs one compare-and-set per request, no lock.
+ *
+ * <p>A bucket whose arrival time has passed is full again, which is also what a missing bucket
+ * means, so {@link #evictIdle()} drops those. Beyond {@code rs.rate-limit.max-keys} tracked users,
+ * or as many tracked events, new keys are let through untracked and counted, rather than growing
+ * memory without bound.
+ */
+@Component
+public class RateLimiter {
+    final boolean enabled;
+    final Limit userLimit;
+    final Limit rsEventLimit;
+    final int maxKeys;
+    final LongSupplier nanoClock;
+    private final ConcurrentHashMap<Integer, AtomicLong> userBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, AtomicLong> rsEventBuckets = new ConcurrentHashMap<>();
+    private final LongAdder userRejections = new LongAdder();
+    private final LongAdder rsEventRejections = new LongAdder();
+    private final LongAdder untrackedUsers = new LongAdder();
+    private final LongAdder untrackedRsEvents = new LongAdder();
+
+    @Autowired
+    public RateLimiter(@Value("${rs.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${rs.rate-limit.user.rate:5}") double userRate,
+                       @Value("${rs.rate-limit.user.burst:10}") int userBurst,
+                       @Value("${rs.rate-limit.rs-event.rate:100}") double rsEventRate,
+                       @Value("${rs.rate-limit.rs-event.burst:200}") int rsEventBurst,
+                       @Value("${rs.rate-limit.max-keys:100000}") int maxKeys) {
+        this(enabled, new Limit(userRate, userBurst), new Limit(rsEventRate, rsEventBurst), maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(boolean enabled, Limit userLimit, Limit rsEventLimit, int maxKeys, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.userLimit = userLimit;
+        this.rsEventLimit = rsEventLimit;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Admits one vote or throws {@link TooManyRequestsException}. Both buckets are checked before
+     * either is charged, so a vote the event bucket rejects costs the user nothing; should the event
+     * bucket fill between the check and the charge, the user's token is handed back.
+     */
+    public void acquireVote(int userId, int rsEventId) {
+        if (!enabled) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        AtomicLong userBucket = bucket(userBuckets, userId, now, untrackedUsers);
+        AtomicLong rsEventBucket = bucket(rsEventBuckets, rsEventId, now, untrackedRsEvents);
+        if (userBucket != null) {
+            check(userBucket, userLimit, now, userRejections, "too many votes from user");
+        }
+        if (rsEventBucket != null) {
+            check(rsEventBucket, rsEventLimit, now, rsEventRejections, "too many requests for event");
+        }
+        if (userBucket != null) {
+            acquire(userBucket, userLimit, now, userRejections, "too many votes from user");
+        }
+        if (rsEventBucket != null) {
+            try {
+                acquire(rsEventBucket, rsEventLimit, now, rsEventRejections, "too many requests for event");
+            } catch (TooManyRequestsException e) {
+                if (userBucket != null) {
+                    userBucket.addAndGet(-userLimit.interval);
+                }
+                throw e;
+            }
+        }
+    }
+
+    public void acquireBuy(int rsEventId) {
+        if (!enabled) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        AtomicLong rsEventBucket = bucket(rsEventBuckets, rsEventId, now, untrackedRsEvents);
+        if (rsEventBucket != null) {
+            acquire(rsEventBucket, rsEventLimit, now, rsEventRejections, "too many requests for event");
+        }
+    }
+
+    public RateLimitStats getStats() {
+        return RateLimitStats.builder()
+                .userRejections(userRejections.sum())
+                .rsEventRejections(rsEventRejections.sum())
+                .untrackedUsers(untrackedUsers.sum())
+                .untrackedRsEvents(untrackedRsEvents.sum())
+                .trackedUsers(userBuckets.size())
+                .trackedRsEvents(rsEventBuckets.size())
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${rs.rate-limit.evict-interval:10000}")
+    public void evictIdle() {
+        long now = nanoClock.getAsLong();
+        userBuckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+        rsEventBuckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    /**
+     * The bucket tracked for {@code key}, created when there is room, or null once
+     * {@code rs.rate-limit.max-keys} keys are tracked.
+     */
+    private AtomicLong bucket(ConcurrentHashMap<Integer, AtomicLong> buckets, int key, long now,
+                              LongAdder untracked) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                untracked.increment();
+                return null;
+            }
+            bucket = buckets.computeIfAbsent(key, id -> new AtomicLong(now));
+        }
+        return bucket;
+    }
+
+    private static void check(AtomicLong bucket, Limit limit, long now, LongAdder rejections, String error) {
+        long ahead = Math.max(bucket.get(), now) - now;
+        if (ahead > limit.tolerance) {
+            reject(ahead, limit, rejections, error);
+        }
+    }
+
+    private static void acquire(AtomicLong bucket, Limit limit, long now, LongAdder rejections, String error) {
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now);
+            long ahead = next - now;
+            if (ahead > limit.tolerance) {
+                reject(ahead, limit, rejections, error);
+            }
+            if (bucket.compareAndSet(arrival, next + limit.interval)) {
+                return;
+            }
+        }
+    }
+
+    private static void reject(long ahead, Limit limit, LongAdder rejections, String error) {
+        rejections.increment();
+        throw new TooManyRequestsException(error, TimeUnit.NANOSECONDS.toMillis(ahead - limit.tolerance) + 1);
+    }
+
+    static class Limit {
+        final long interval;
+        final long tolerance;
+
+        Limit(double rate, int burst) {
+            this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            this.tolerance = interval * (burst - 1);
+        }
+    }
+}
@@ -1,124 +1,457 @@
 package com.thoughtworks.rslist.service;
 
 import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.RsEventDelta;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.fraud.VoteFraudDetector;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.outbox.Outbox;
+import com.thoughtworks.rslist.ranking.HotnessRanking;
+import com.thoughtworks.rslist.ranking.KeywordRankings;
+import com.thoughtworks.rslist.ranking.RankingBackend;
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.ranking.TrendingCounters;
+import com.thoughtworks.rslist.ranking.TrendingWindow;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
-import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.search.SearchIndex;
+import com.thoughtworks.rslist.tracing.Tracer;
+import com.thoughtworks.rslist.votelog.VoteLog;
+import com.thoughtworks.rslist.votelog.VoteLogProjector;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class RsService {
     final RsEventRepository rsEventRepository;
-    final UserRepository userRepository;
     final VoteRepository voteRepository;
     final TradeRepository tradeRepository;
+    final VoteBalanceStore voteBalanceStore;
+    final HotnessRanking hotnessRanking;
+    final TrendingCounters trendingCounters;
+    final RsEventColumns rsEventColumns;
+    final RankRebuildService rankRebuildService;
+    final VoteLog voteLog;
+    final RankingBackend rankingBackend;
+    final KeywordRankings keywordRankings;
+    final InvalidationBus invalidationBus;
+    final Outbox outbox;
+    final SearchIndex searchIndex;
+    final VoteFraudDetector voteFraudDetector;
+    final Tracer tracer;
+    final TransactionTemplate transactionTemplate;
 
     public RsService(RsEventRepository rsEventRepository,
-                     UserRepository userRepository,
                      VoteRepository voteRepository,
-                     TradeRepository tradeRepository) {
+                     TradeRepository tradeRepository,
+                     VoteBalanceStore voteBalanceStore,
+                     HotnessRanking hotnessRanking,
+                     TrendingCounters trendingCounters,
+                     RsEventColumns rsEventColumns,
+                     RankRebuildService rankRebuildService,
+                     VoteLog voteLog,
+                     RankingBackend rankingBackend,
+                     KeywordRankings keywordRankings,
+                     InvalidationBus invalidationBus,
+                     Outbox outbox,
+                     SearchIndex searchIndex,
+                     VoteFraudDetector voteFraudDetector,
+                     Tracer tracer,
+                     PlatformTransactionManager transactionManager) {
         this.rsEventRepository = rsEventRepository;
-        this.userRepository = userRepository;
         this.voteRepository = voteRepository;
         this.tradeRepository = tradeRepository;
+        this.voteBalanceStore = voteBalanceStore;
+        this.hotnessRanking = hotnessRanking;
+        this.trendingCounters = trendingCounters;
+        this.rsEventColumns = rsEventColumns;
+        this.rankRebuildService = rankRebuildService;
+        this.voteLog = voteLog;
+        this.rankingBackend = rankingBackend;
+        this.keywordRankings = keywordRankings;
+        this.invalidationBus = invalidationBus;
+        this.outbox = outbox;
+        this.searchIndex = searchIndex;
+        this.voteFraudDetector = voteFraudDetector;
+        this.tracer = tracer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    public List<RsEvent> getResponseRsEvents(List<RsEvent> rsEvents, Integer start, Integer end) {
-        rsEvents.sort(Comparator.comparing(RsEvent::getRank));
-        if (start == null || end == null) {
-            return rsEvents;
+    /**
+     * Events ordered by rank, as kept by the {@link RankingBackend}, or only the events of
+     * {@code keyword} ranked within it by {@link KeywordRankings}. Only the rows of the requested
+     * page are read from the database.
+     */
+    public List<RsEvent> getRankedRsEvents(Integer start, Integer end, String keyword) {
+        int limit = end == null ? Integer.MAX_VALUE : end;
+        int[] ids = keyword == null ? rankingBackend.top(limit) : keywordRankings.top(keyword, limit);
+        int from = 0;
+        if (start != null && end != null) {
+            if (start < 1 || start > end || end > ids.length) {
+                throw new RequestNotValidException("invalid index");
+            }
+            from = start - 1;
         }
-        return rsEvents.subList(start - 1, end);
+        int[] positions = new int[ids.length - from];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = from + i;
+        }
+        return toRankedRsEvents(ids, positions, positions.length);
+    }
+
+    /**
+     * Version of the ranked list as served by this node; see {@link RsEventColumns#version()}.
+     */
+    public long getRankingVersion() {
+        return rsEventColumns.version();
+    }
+
+    /**
+     * Entries of the ranked list, up to rank {@code end}, whose votes or rank changed after
+     * {@code sinceVersion} according to {@link RsEventColumns}, or the whole list when the version
+     * is not covered any more.
+     */
+    public RsEventDelta getRsEventDelta(long sinceVersion, Integer end) {
+        RsEventColumns.Changes changes = rsEventColumns.changesSince(sinceVersion);
+        if (changes == null) {
+            long version = rsEventColumns.version();
+            return RsEventDelta.builder()
+                    .version(version)
+                    .full(true)
+                    .rsEvents(getRankedRsEvents(null, end, null))
+                    .removed(Collections.emptyList())
+                    .build();
+        }
+        int[] ids = rankingBackend.top(end == null ? Integer.MAX_VALUE : end);
+        int[] changed = changes.getChanged();
+        int[] positions = new int[Math.min(ids.length, changed.length)];
+        int count = 0;
+        for (int i = 0; i < ids.length && count < positions.length; i++) {
+            if (Arrays.binarySearch(changed, ids[i]) >= 0) {
+                positions[count++] = i;
+            }
+        }
+        return RsEventDelta.builder()
+                .version(changes.getVersion())
+                .rsEvents(toRankedRsEvents(ids, positions, count))
+                .removed(Arrays.stream(changes.getRemoved()).boxed().collect(Collectors.toList()))
+                .build();
+    }
+
+    private List<RsEvent> toRankedRsEvents(int[] ids, int[] positions, int count) {
+        List<Integer> pageIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pageIds.add(ids[positions[i]]);
+        }
+        Map<Integer, RsEventDto> rsEventDtos = new HashMap<>();
+        rsEventRepository.findAllById(pageIds).forEach(rsEventDto -> rsEventDtos.put(rsEventDto.getId(), rsEventDto));
+        List<RsEvent> rsEvents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            RsEventDto rsEventDto = rsEventDtos.get(pageIds.get(i));
+            if (rsEventDto != null) {
+                rsEvents.add(RsEvent.builder()
+                        .eventName(rsEventDto.getEventName())
+                        .keyword(rsEventDto.getKeyword())
+                        .userId(rsEventDto.getId())
+                        .voteNum(rsEventDto.getVoteNum())
+                        .rank(positions[i] + 1)
+                        .build());
+            }
+        }
+        return rsEvents;
+    }
+
+    /**
+     * Events whose keyword or name match {@code query} in the {@link SearchIndex}, best rank first,
+     * each carrying its current rank.
+     */
+    public List<RsEvent> searchRsEvents(String query, int limit) {
+        int[] ids = searchIndex.search(query, limit);
+        List<Integer> matchIds = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            matchIds.add(id);
+        }
+        Map<Integer, RsEventDto> rsEventDtos = new HashMap<>();
+        rsEventRepository.findAllById(matchIds).forEach(rsEventDto -> rsEventDtos.put(rsEventDto.getId(), rsEventDto));
+        List<RsEvent> rsEvents = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            RsEventDto rsEventDto = rsEventDtos.get(id);
+            if (rsEventDto != null) {
+                rsEvents.add(RsEvent.builder()
+                        .eventName(rsEventDto.getEventName())
+                        .keyword(rsEventDto.getKeyword())
+                        .userId(rsEventDto.getId())
+                        .voteNum(rsEventDto.getVoteNum())
+                        .rank(rsEventColumns.rank(id))
+                        .build());
+            }
+        }
+        return rsEvents;
     }
 
+    /**
+     * Events ordered by time-decayed hotness instead of cumulative votes, up to rank {@code end}.
+     * Purchased events keep the rank they bought, exactly as in the vote ranking. The order comes
+     * from {@link RsEventColumns} and the {@link HotnessRanking}; only the rows of the requested
+     * page are read from the database.
+     */
+    public List<RsEvent> getHotRsEvents(Integer start, Integer end) {
+        int limit = end == null ? Integer.MAX_VALUE : end;
+        List<int[]> purchased = new ArrayList<>();
+        int[][] unpurchased = new int[1][];
+        int[] unpurchasedCount = new int[1];
+        rsEventColumns.export((size, ids, voteNums, ranks, amounts) -> {
+            unpurchased[0] = new int[size];
+            for (int slot = 0; slot < size; slot++) {
+                if (amounts[slot] > 0) {
+                    purchased.add(new int[]{ranks[slot], ids[slot]});
+                } else {
+                    unpurchased[0][unpurchasedCount[0]++] = ids[slot];
+                }
+            }
+        });
+        List<Integer> order = new ArrayList<>();
+        for (int id : hotnessRanking.top(unpurchased[0], unpurchasedCount[0], limit)) {
+            order.add(id);
+        }
+        purchased.sort(Comparator.comparingInt(rankAndId -> rankAndId[0]));
+        for (int[] rankAndId : purchased) {
+            order.add(Math.max(0, Math.min(rankAndId[0] - 1, order.size())), rankAndId[1]);
+        }
+        if (order.size() > limit) {
+            order = order.subList(0, limit);
+        }
+        int from = 0;
+        if (start != null && end != null) {
+            if (start < 1 || start > end || end > order.size()) {
+                throw new RequestNotValidException("invalid index");
+            }
+            from = start - 1;
+        }
+        List<Integer> pageIds = order.subList(from, order.size());
+        Map<Integer, RsEventDto> rsEventDtos = new HashMap<>();
+        rsEventRepository.findAllById(pageIds).forEach(rsEventDto -> rsEventDtos.put(rsEventDto.getId(), rsEventDto));
+        List<RsEvent> hotRsEvents = new ArrayList<>(pageIds.size());
+        for (int i = 0; i < pageIds.size(); i++) {
+            RsEventDto rsEventDto = rsEventDtos.get(pageIds.get(i));
+            if (rsEventDto != null) {
+                hotRsEvents.add(toRsEvent(rsEventDto, rsEventDto.getVoteNum(), from + i + 1));
+            }
+        }
+        return hotRsEvents;
+    }
+
+    /**
+     * The {@code limit} events with most votes inside {@code window}, served from the in-memory
+     * trending counters; {@code voteNum} of each entry is its vote count within the window.
+     */
+    public List<RsEvent> getTrendingRsEvents(TrendingWindow window, int limit) {
+        List<TrendingCounters.TrendingEntry> top = trendingCounters.top(window, limit);
+        Map<Integer, RsEventDto> rsEventDtos = new HashMap<>();
+        rsEventRepository.findAllById(top.stream()
+                .map(TrendingCounters.TrendingEntry::getRsEventId)
+                .collect(Collectors.toList()))
+                .forEach(rsEventDto -> rsEventDtos.put(rsEventDto.getId(), rsEventDto));
+        List<RsEvent> trendingRsEvents = new ArrayList<>(top.size());
+        for (TrendingCounters.TrendingEntry entry : top) {
+            RsEventDto rsEventDto = rsEventDtos.get(entry.getRsEventId());
+            if (rsEventDto != null) {
+                trendingRsEvents.add(toRsEvent(rsEventDto, entry.getCount(), trendingRsEvents.size() + 1));
+            }
+        }
+        return trendingRsEvents;
+    }
+
+    /**
+     * Records a vote and spends the user's votes on it. The votes are added to
+     * {@code rs_event.vote_num} in place, in the transaction that records the vote, and to the
+     * columns, so concurrent votes on one event never lose each other's count. A vote the
+     * {@link VoteFraudDetector} quarantines is recorded and spent all the same but counts towards
+     * no ranking. Only votes the user can pay for are screened, so a rejected vote never feeds the
+     * detector.
+     *
+     * <p>The vote moves only its own event, in the {@link RankingBackend} and its keyword partition
+     * of {@link KeywordRankings}, which is what the ranked lists are served from. The ranks stored
+     * in {@code rs_event.rank} follow within {@code rs.ranking.rerank-interval} through
+     * {@link #updateRanks()}.
+     */
     public void vote(Vote vote, int rsEventId) {
+        if (voteLog.isEnabled()) {
+            voteThroughLog(vote, rsEventId);
+            return;
+        }
         Optional<RsEventDto> rsEventDto = rsEventRepository.findById(rsEventId);
-        Optional<UserDto> userDto = userRepository.findById(vote.getUserId());
-        if (!rsEventDto.isPresent()
-                || !userDto.isPresent()
-                || vote.getVoteNum() > userDto.get().getVoteNum()) {
+        if (!rsEventDto.isPresent()) {
             throw new RuntimeException();
         }
-        VoteDto voteDto = VoteDto.builder()
-                .localDateTime(vote.getTime())
-                .num(vote.getVoteNum())
-                .rsEvent(rsEventDto.get())
-                .user(userDto.get())
-                .build();
-        voteRepository.save(voteDto);
-        UserDto user = userDto.get();
-        user.setVoteNum(user.getVoteNum() - vote.getVoteNum());
-        userRepository.save(user);
-        RsEventDto rsEvent = rsEventDto.get();
-        rsEvent.setVoteNum(rsEvent.getVoteNum() + vote.getVoteNum());
-        rsEventRepository.save(rsEvent);
-        List<RsEventDto> rsEventDtoList = rsEventRepository.findAll();
-        updateRsEventRank(rsEventDtoList);
+        boolean[] quarantinedVote = new boolean[1];
+        boolean debited;
+        try (Tracer.Span ignored = tracer.span("vote.debit")) {
+            debited = voteBalanceStore.debit(vote.getUserId(), vote.getVoteNum(), () -> {
+                boolean quarantined;
+                try (Tracer.Span fraud = tracer.span("vote.fraud")) {
+                    quarantined = voteFraudDetector.screen(vote.getUserId(), rsEventId, vote.getVoteNum());
+                }
+                quarantinedVote[0] = quarantined;
+                VoteDto voteDto = VoteDto.builder()
+                        .localDateTime(vote.getTime())
+                        .num(vote.getVoteNum())
+                        .rsEvent(rsEventDto.get())
+                        .user(UserDto.builder().id(vote.getUserId()).build())
+                        .quarantined(quarantined)
+                        .build();
+                return transactionTemplate.execute(status -> {
+                    VoteDto saved = voteRepository.save(voteDto);
+                    if (!quarantined) {
+                        rankRebuildService.writeVotes(rsEventId, vote.getVoteNum());
+                    }
+                    outbox.recordVotes(Collections.singletonList(saved));
+                    return saved.getId();
+                });
+            });
+        }
+        if (!debited) {
+            throw new RuntimeException();
+        }
+        if (quarantinedVote[0]) {
+            rsEventColumns.touch(Collections.singletonList(rsEventId));
+            return;
+        }
+        try (Tracer.Span ignored = tracer.span("vote.rankings")) {
+            hotnessRanking.record(rsEventId, vote.getVoteNum(), vote.getTime());
+            trendingCounters.record(rsEventId, vote.getVoteNum(), vote.getTime());
+            rsEventColumns.addVotes(rsEventId, vote.getVoteNum());
+            rankingBackend.addVotes(rsEventId, vote.getVoteNum());
+            keywordRankings.addVotes(rsEventId, vote.getVoteNum());
+        }
+        invalidationBus.publish(ChangeEvent.Type.RS_EVENT, rsEventId);
     }
 
+    /**
+     * Vote path with the vote log enabled: the log append is the only durable write, and the
+     * {@code vote} row and {@code rs_event.vote_num} follow through {@link VoteLogProjector}.
+     * Suspicious votes are only flagged here, the log having no room for the quarantine mark.
+     */
+    private void voteThroughLog(Vote vote, int rsEventId) {
+        if (!rsEventColumns.contains(rsEventId)) {
+            throw new RuntimeException();
+        }
+        boolean debited;
+        try (Tracer.Span ignored = tracer.span("vote.debit")) {
+            debited = voteBalanceStore.debit(vote.getUserId(), vote.getVoteNum(),
+                    () -> voteLog.append(vote.getUserId(), rsEventId, vote.getVoteNum(), vote.getTime()));
+        }
+        if (!debited) {
+            throw new RuntimeException();
+        }
+        try (Tracer.Span ignored = tracer.span("vote.fraud")) {
+            voteFraudDetector.screen(vote.getUserId(), rsEventId, vote.getVoteNum());
+        }
+        try (Tracer.Span ignored = tracer.span("vote.rankings")) {
+            hotnessRanking.record(rsEventId, vote.getVoteNum(), vote.getTime());
+            trendingCounters.record(rsEventId, vote.getVoteNum(), vote.getTime());
+            rsEventColumns.addVotes(rsEventId, vote.getVoteNum());
+            rankingBackend.addVotes(rsEventId, vote.getVoteNum());
+            keywordRankings.addVotes(rsEventId, vote.getVoteNum());
+        }
+    }
+
+    /**
+     * Buys rank {@code trade.rank} for event {@code id}. The {@link RankingBackend} decides: it knows
+     * how many events there are and what each purchased slot was bought for, and of two purchases
+     * of the same rank racing on different nodes it accepts only one. The event that loses the slot
+     * is deleted.
+     *
+     * <p>Only {@code rank} and {@code amount} are written: the purchase goes out as one update and
+     * the other events are re-ranked from the in-memory columns. Loaded entities are never saved
+     * back, so votes added to {@code rs_event.vote_num} meanwhile, by another vote or by the
+     * {@link VoteLogProjector}, are not overwritten.
+     */
     public boolean buy(Trade trade, int id) {
-        Optional<RsEventDto> optionalRsEventDto = rsEventRepository.findById(id);
-        if (!optionalRsEventDto.isPresent()) {
+        Optional<RsEventDto> optionalRsEventDto;
+        try (Tracer.Span ignored = tracer.span("buy.load")) {
+            optionalRsEventDto = rsEventRepository.findById(id);
+        }
+        if (!optionalRsEventDto.isPresent() || trade.getRank() <= 0) {
             return false;
         }
         RsEventDto newRsEventDto = optionalRsEventDto.get();
-        List<RsEventDto> rsEventDtoList = rsEventRepository.findAll();
-        if (rsEventDtoList.size() < trade.getRank() || trade.getRank() <= 0) {
+        int displaced = rankingBackend.buy(id, trade.getRank(), trade.getAmount());
+        if (displaced == RankingBackend.REJECTED) {
             return false;
         }
-        rsEventDtoList.sort(Comparator.comparing(RsEventDto::getRank));
-        RsEventDto oldRsEventDto = rsEventDtoList.get(trade.getRank() - 1);
-        if (trade.getAmount() <= oldRsEventDto.getAmount()) {
-            return false;
+        List<Integer> changed = new ArrayList<>(2);
+        changed.add(id);
+        if (displaced > 0) {
+            changed.add(displaced);
+            rsEventRepository.deleteById(displaced);
+            hotnessRanking.remove(Collections.singletonList(displaced));
+            trendingCounters.remove(Collections.singletonList(displaced));
         }
-        if (oldRsEventDto.getAmount() > 0) {
-            rsEventRepository.deleteById(oldRsEventDto.getId());
-            rsEventDtoList.remove(oldRsEventDto);
+        try (Tracer.Span ignored = tracer.span("buy.rerank")) {
+            rankRebuildService.writePurchase(id, trade.getRank(), trade.getAmount());
+            rsEventColumns.purchase(id, trade.getRank(), trade.getAmount());
+            updateRanks();
         }
-        rsEventDtoList.remove(newRsEventDto);
-        newRsEventDto.setAmount(trade.getAmount());
-        newRsEventDto.setRank(trade.getRank());
-        rsEventDtoList.add(trade.getRank() - 1, newRsEventDto);
-        updateRsEventRank(rsEventDtoList);
-        tradeRepository.save(TradeDto.builder()
+        TradeDto tradeDto = TradeDto.builder()
                 .amount(trade.getAmount())
                 .rank(trade.getRank())
                 .rsEventDto(newRsEventDto)
-                .build());
+                .build();
+        try (Tracer.Span ignored = tracer.span("buy.trade")) {
+            transactionTemplate.execute(status -> {
+                outbox.recordTrade(tradeRepository.save(tradeDto));
+                return null;
+            });
+        }
+        keywordRankings.refresh(id, newRsEventDto.getKeyword(), newRsEventDto.getVoteNum(), trade.getRank(),
+                trade.getAmount());
+        invalidationBus.publish(ChangeEvent.Type.RS_EVENT, changed);
         return true;
     }
 
-    private void updateRsEventRank(List<RsEventDto> rsEventDtoList) {
-        List<RsEventDto> purchasedRsEvents = rsEventDtoList.stream()
-                .filter(rsEventDto -> rsEventDto.getAmount() > 0)
-                .sorted(Comparator.comparing(RsEventDto::getRank))
-                .collect(Collectors.toList());
-
-        List<RsEventDto> rsEvents = rsEventDtoList.stream()
-                .filter(rsEventDto -> rsEventDto.getAmount() <= 0)
-                .sorted(Comparator.comparing(RsEventDto::getVoteNum).reversed())
-                .collect(Collectors.toList());
-        for (RsEventDto purchasedRsEvent : purchasedRsEvents) {
-            rsEvents.add(purchasedRsEvent.getRank() - 1, purchasedRsEvent);
-        }
-        rsEvents.forEach(rsEventDto -> {
-            rsEventDto.setRank(rsEvents.indexOf(rsEventDto) + 1);
-            rsEventRepository.save(rsEventDto);
-        });
+    /**
+     * Re-ranks every event from the in-memory columns and writes back only the ranks that moved.
+     * Purchases run it at once; the ranks votes move are written every
+     * {@code rs.ranking.rerank-interval} milliseconds, in one batch however many votes came in.
+     *
+     * <p>The ranks are written after the columns are unlocked, in one transaction so the batch
+     * lands as a whole.
+     */
+    @Scheduled(fixedDelayString = "${rs.ranking.rerank-interval:1000}")
+    public void updateRanks() {
+        transactionTemplate.execute(status -> rsEventColumns.rerank(rankRebuildService::write));
+    }
+
+    private RsEvent toRsEvent(RsEventDto rsEventDto, int voteNum, int rank) {
+        return RsEvent.builder()
+                .eventName(rsEventDto.getEventName())
+                .keyword(rsEventDto.getKeyword())
+                .userId(rsEventDto.getUser() == null ? 0 : rsEventDto.getUser().getId())
+                .voteNum(voteNum)
+                .rank(rank)
+                .build();
     }
 }
@@ -0,0 +1,168 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.DeletionJob;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.ranking.HotnessRanking;
+import com.thoughtworks.rslist.ranking.KeywordRankings;
+import com.thoughtworks.rslist.ranking.RankingBackend;
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.ranking.TrendingCounters;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.search.SearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Deletes a user together with its hot-search events, their trades and every vote touching them.
+ *
+ * <p>Instead of letting {@code CascadeType.REMOVE} load and delete each entity, events are
+ * removed in chunks of set-based deletes, each chunk in its own short transaction so the vote
+ * path is never blocked behind one long-running delete. Ranks are recomputed once at the end.
+ */
+@Service
+public class UserDeletionService {
+    private static final int MAX_RETAINED_JOBS = 1000;
+
+    final UserRepository userRepository;
+    final RsEventRepository rsEventRepository;
+    final VoteRepository voteRepository;
+    final TradeRepository tradeRepository;
+    final RankRebuildService rankRebuildService;
+    final VoteBalanceStore voteBalanceStore;
+    final HotnessRanking hotnessRanking;
+    final TrendingCounters trendingCounters;
+    final RsEventColumns rsEventColumns;
+    final RankingBackend rankingBackend;
+    final KeywordRankings keywordRankings;
+    final SearchIndex searchIndex;
+    final InvalidationBus invalidationBus;
+    final TransactionTemplate transactionTemplate;
+    final int chunkSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-deletion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, DeletionJob> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<String, DeletionJob>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, DeletionJob> eldest) {
+                    return size() > MAX_RETAINED_JOBS;
+                }
+            });
+
+    public UserDeletionService(UserRepository userRepository,
+                               RsEventRepository rsEventRepository,
+                               VoteRepository voteRepository,
+                               TradeRepository tradeRepository,
+                               RankRebuildService rankRebuildService,
+                               VoteBalanceStore voteBalanceStore,
+                               HotnessRanking hotnessRanking,
+                               TrendingCounters trendingCounters,
+                               RsEventColumns rsEventColumns,
+                               RankingBackend rankingBackend,
+                               KeywordRankings keywordRankings,
+                               SearchIndex searchIndex,
+                               InvalidationBus invalidationBus,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${rs.user-deletion.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.rsEventRepository = rsEventRepository;
+        this.voteRepository = voteRepository;
+        this.tradeRepository = tradeRepository;
+        this.rankRebuildService = rankRebuildService;
+        this.voteBalanceStore = voteBalanceStore;
+        this.hotnessRanking = hotnessRanking;
+        this.trendingCounters = trendingCounters;
+        this.rsEventColumns = rsEventColumns;
+        this.rankingBackend = rankingBackend;
+        this.keywordRankings = keywordRankings;
+        this.searchIndex = searchIndex;
+        this.invalidationBus = invalidationBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public DeletionJob delete(int userId) {
+        DeletionJob job = newJob(userId);
+        run(job);
+        return job;
+    }
+
+    public DeletionJob submit(int userId) {
+        DeletionJob job = newJob(userId);
+        executor.execute(() -> run(job));
+        return job;
+    }
+
+    public Optional<DeletionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private DeletionJob newJob(int userId) {
+        DeletionJob job = new DeletionJob(UUID.randomUUID().toString(), userId);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private void run(DeletionJob job) {
+        job.setStatus(DeletionJob.Status.RUNNING);
+        try {
+            List<Integer> rsEventIds;
+            while (!(rsEventIds = rsEventRepository.findIdsByUserId(job.getUserId(), PageRequest.of(0, chunkSize)))
+                    .isEmpty()) {
+                List<Integer> chunk = rsEventIds;
+                transactionTemplate.execute(status -> {
+                    job.setDeletedTrades(job.getDeletedTrades() + tradeRepository.deleteAllByRsEventIdIn(chunk));
+                    job.setDeletedVotes(job.getDeletedVotes() + voteRepository.deleteAllByRsEventIdIn(chunk));
+                    job.setDeletedRsEvents(job.getDeletedRsEvents() + rsEventRepository.deleteAllByIdIn(chunk));
+                    return null;
+                });
+                hotnessRanking.remove(chunk);
+                trendingCounters.remove(chunk);
+                rsEventColumns.remove(chunk);
+                rankingBackend.remove(chunk);
+                keywordRankings.remove(chunk);
+                searchIndex.remove(chunk);
+                invalidationBus.publish(ChangeEvent.Type.RS_EVENT, chunk);
+            }
+            transactionTemplate.execute(status -> {
+                job.setDeletedVotes(job.getDeletedVotes() + voteRepository.deleteAllByUserId(job.getUserId()));
+                job.setUserDeleted(userRepository.deleteUserById(job.getUserId()) > 0);
+                return null;
+            });
+            rsEventColumns.touch(Collections.emptyList());
+            voteBalanceStore.evict(job.getUserId());
+            invalidationBus.publish(ChangeEvent.Type.USER, job.getUserId());
+            if (job.getDeletedRsEvents() > 0) {
+                rankRebuildService.rebuild();
+            }
+            job.setStatus(DeletionJob.Status.DONE);
+        } catch (RuntimeException e) {
+            job.setError(e.getMessage());
+            job.setStatus(DeletionJob.Status.FAILED);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
+import com.thoughtworks.rslist.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * In-memory vote balances with write-behind persistence.
+ *
+ * <p>Balances are loaded lazily and kept in an LRU map. A vote debits the cached balance under
+ * a per-user lock and marks it dirty; {@link #flush()} periodically writes all dirty balances to
+ * the {@code user} table in one JDBC batch. Alongside the balance each user row stores the id of
+ * the last vote already reflected in it ({@code vote_watermark}), so after a crash
+ * {@link #reconcile()} only has to subtract votes recorded after that watermark. With the vote log
+ * enabled the watermark is a log position instead, matched against {@code vote.log_seq}. A cached
+ * balance does not know the stored watermark, so a flush only ever raises it.
+ *
+ * <p>Set-based writes to {@code vote_num} that bypass the store (see {@link #replenish}) run under
+ * a seqlock-style generation counter so a balance loaded concurrently is never credited twice.
+ *
+ * <p>Every flush announces the users it wrote on the {@link InvalidationBus}, and other nodes drop
+ * their cached balance for them through {@link #invalidate(Collection)}. Only clean balances are
+ * dropped: a node's own unflushed debits win, so a user's votes should keep landing on one node.
+ */
+@Component
+public class VoteBalanceStore {
+    private static final Logger log = LoggerFactory.getLogger(VoteBalanceStore.class);
+    private static final String FLUSH_SQL =
+            "update user set vote_num = ?, vote_watermark = greatest(vote_watermark, ?) where id = ?";
+    private static final String RECONCILE_SQL = "update user set "
+            + "vote_num = vote_num - (select coalesce(sum(v.num), 0) from vote v "
+            + "where v.user_id = user.id and v.%1$s > user.vote_watermark), "
+            + "vote_watermark = (select max(v.%1$s) from vote v "
+            + "where v.user_id = user.id) "
+            + "where exists (select 1 from vote v where v.user_id = user.id and v.%1$s > user.vote_watermark)";
+
+    final UserRepository userRepository;
+    final JdbcTemplate jdbcTemplate;
+    final InvalidationBus invalidationBus;
+    final SecondLevelCache secondLevelCache;
+    final int capacity;
+    final String watermarkColumn;
+    private final LinkedHashMap<Integer, Balance> balances;
+    private final Map<Integer, Balance> evictedDirty = new HashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicLong generation = new AtomicLong();
+
+    public VoteBalanceStore(UserRepository userRepository,
+                            JdbcTemplate jdbcTemplate,
+                            InvalidationBus invalidationBus,
+                            SecondLevelCache secondLevelCache,
+                            @Value("${rs.vote-balance.capacity:100000}") int capacity,
+                            @Value("${rs.vote-log.enabled:false}") boolean voteLogEnabled) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.invalidationBus = invalidationBus;
+        this.secondLevelCache = secondLevelCache;
+        this.capacity = capacity;
+        this.watermarkColumn = voteLogEnabled ? "log_seq" : "id";
+        this.balances = new LinkedHashMap<Integer, Balance>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Balance> eldest) {
+                if (size() <= VoteBalanceStore.this.capacity) {
+                    return false;
+                }
+                if (eldest.getValue().dirty) {
+                    evictedDirty.put(eldest.getKey(), eldest.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Debits {@code num} votes from the user's balance if it is sufficient. {@code recordVote} runs
+     * under the user's lock before the debit becomes visible and must persist the vote and return
+     * its id, or its log position with the vote log enabled; if it throws, the balance is left
+     * untouched.
+     *
+     * @return false when the user does not exist or has fewer than {@code num} votes left
+     */
+    public boolean debit(int userId, int num, IntSupplier recordVote) {
+        while (true) {
+            Optional<Balance> cached = get(userId);
+            if (!cached.isPresent()) {
+                return false;
+            }
+            Balance balance = cached.get();
+            synchronized (balance) {
+                if (balance.detached) {
+                    continue;
+                }
+                if (balance.removed || num > balance.voteNum) {
+                    return false;
+                }
+                int voteId = recordVote.getAsInt();
+                balance.voteNum -= num;
+                balance.watermark = Math.max(balance.watermark, voteId);
+                balance.changes++;
+                balance.dirty = true;
+                return true;
+            }
+        }
+    }
+
+    public Optional<Integer> getBalance(int userId) {
+        return get(userId).map(balance -> {
+            synchronized (balance) {
+                return balance.voteNum;
+            }
+        });
+    }
+
+    public void evict(int userId) {
+        Balance balance;
+        synchronized (balances) {
+            balance = balances.remove(userId);
+            evictedDirty.remove(userId);
+        }
+        if (balance != null) {
+            synchronized (balance) {
+                balance.removed = true;
+                balance.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Drops the cached balances of users changed on another node, so they are read again from the
+     * {@code user} table. Balances with unflushed debits are kept.
+     */
+    public void invalidate(Collection<Integer> userIds) {
+        synchronized (balances) {
+            generation.addAndGet(2);
+            for (Integer userId : userIds) {
+                Balance balance = balances.get(userId);
+                if (balance != null && detachIfClean(balance)) {
+                    balances.remove(userId);
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (balances) {
+            generation.addAndGet(2);
+            balances.values().removeIf(VoteBalanceStore::detachIfClean);
+        }
+    }
+
+    private static boolean detachIfClean(Balance balance) {
+        synchronized (balance) {
+            if (balance.dirty) {
+                return false;
+            }
+            balance.detached = true;
+            return true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rs.vote-balance.flush-interval:1000}")
+    public void flush() {
+        writeLock.lock();
+        try {
+            doFlush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Credits {@code amount} votes, capped at {@code cap}, to users with ids in
+     * {@code (fromUserId, toUserId]}. {@code update} performs the same credit on the {@code user}
+     * table; cached balances are credited in memory right after it so they stay authoritative.
+     */
+    public int replenish(int fromUserId, int toUserId, int amount, int cap, IntSupplier update) {
+        writeLock.lock();
+        generation.incrementAndGet();
+        int updated;
+        try {
+            updated = update.getAsInt();
+            synchronized (balances) {
+                balances.values().forEach(balance -> credit(balance, fromUserId, toUserId, amount, cap));
+                evictedDirty.values().forEach(balance -> credit(balance, fromUserId, toUserId, amount, cap));
+            }
+        } finally {
+            generation.incrementAndGet();
+            writeLock.unlock();
+        }
+        secondLevelCache.evictAllUsers();
+        invalidationBus.publish(ChangeEvent.Type.RESYNC, Collections.emptyList());
+        return updated;
+    }
+
+    private void credit(Balance balance, int fromUserId, int toUserId, int amount, int cap) {
+        if (balance.userId <= fromUserId || balance.userId > toUserId) {
+            return;
+        }
+        synchronized (balance) {
+            if (!balance.removed && balance.voteNum < cap) {
+                balance.voteNum = Math.min(balance.voteNum + amount, cap);
+                balance.changes++;
+                balance.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the dirty balances in one batch. A balance stays dirty until the batch has committed,
+     * so neither {@link #invalidate} nor eviction can drop it while the table still holds the old
+     * value; it is marked clean only if no debit or credit changed it in the meantime.
+     */
+    private void doFlush() {
+        List<Balance> candidates;
+        synchronized (balances) {
+            candidates = new ArrayList<>(balances.size() + evictedDirty.size());
+            for (Balance balance : balances.values()) {
+                if (balance.dirty) {
+                    candidates.add(balance);
+                }
+            }
+            candidates.addAll(evictedDirty.values());
+        }
+        List<Object[]> rows = new ArrayList<>(candidates.size());
+        List<Balance> flushed = new ArrayList<>(candidates.size());
+        List<Long> flushedChanges = new ArrayList<>(candidates.size());
+        for (Balance balance : candidates) {
+            synchronized (balance) {
+                if (balance.dirty) {
+                    rows.add(new Object[]{balance.voteNum, balance.watermark, balance.userId});
+                    flushed.add(balance);
+                    flushedChanges.add(balance.changes);
+                }
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, rows);
+            for (int i = 0; i < flushed.size(); i++) {
+                Balance balance = flushed.get(i);
+                synchronized (balance) {
+                    if (balance.changes == flushedChanges.get(i)) {
+                        balance.dirty = false;
+                    }
+                }
+            }
+            synchronized (balances) {
+                evictedDirty.values().removeIf(balance -> !balance.dirty);
+            }
+            List<Integer> userIds = new ArrayList<>(flushed.size());
+            flushed.forEach(balance -> userIds.add(balance.userId));
+            secondLevelCache.evictUsers(userIds);
+            invalidationBus.publish(ChangeEvent.Type.USER, userIds);
+        } catch (DataAccessException e) {
+            log.warn("failed to flush {} vote balances, will retry", rows.size(), e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        int reconciled = jdbcTemplate.update(String.format(RECONCILE_SQL, watermarkColumn));
+        if (reconciled > 0) {
+            secondLevelCache.evictAllUsers();
+            log.info("reconciled vote balances of {} users from the vote table", reconciled);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private Optional<Balance> get(int userId) {
+        synchronized (balances) {
+            Balance balance = balances.get(userId);
+            if (balance == null) {
+                balance = evictedDirty.remove(userId);
+                if (balance != null) {
+                    balances.put(userId, balance);
+                }
+            }
+            if (balance != null) {
+                return Optional.of(balance);
+            }
+        }
+        while (true) {
+            long loadedAt = generation.get();
+            if ((loadedAt & 1) == 1) {
+                Thread.yield();
+                continue;
+            }
+            Optional<Integer> voteNum = userRepository.findVoteNumById(userId);
+            if (!voteNum.isPresent()) {
+                return Optional.empty();
+            }
+            Balance loaded = new Balance(userId, voteNum.get());
+            synchronized (balances) {
+                if (generation.get() != loadedAt) {
+                    continue;
+                }
+                Balance existing = balances.putIfAbsent(userId, loaded);
+                return Optional.of(existing == null ? loaded : existing);
+            }
+        }
+    }
+
+    private static class Balance {
+        final int userId;
+        int voteNum;
+        int watermark;
+        long changes;
+        volatile boolean dirty;
+        boolean removed;
+        boolean detached;
+
+        Balance(int userId, int voteNum) {
+            this.userId = userId;
+            this.voteNum = voteNum;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ReplenishCheckpointDto;
+import com.thoughtworks.rslist.repository.ReplenishCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Periodically grants every user {@code amount} votes, never raising a balance above {@code cap}.
+ *
+ * <p>Users are walked in id order in chunks of {@code chunk-size}; each chunk is one set-based
+ * {@code update} in its own autocommit statement, so row locks are held only for the duration of
+ * a chunk and concurrent votes are never blocked for long. Progress is checkpointed after every
+ * chunk in {@code replenish_checkpoint}, and an interrupted run is resumed instead of restarted.
+ */
+@Service
+public class VoteReplenishmentService {
+    private static final Logger log = LoggerFactory.getLogger(VoteReplenishmentService.class);
+    private static final String CHUNK_END_SQL =
+            "select max(id) from (select id from user where id > ? order by id limit ?) chunk";
+    private static final String REPLENISH_SQL =
+            "update user set vote_num = least(vote_num + ?, ?) where id > ? and id <= ? and vote_num < ?";
+
+    final ReplenishCheckpointRepository checkpointRepository;
+    final VoteBalanceStore voteBalanceStore;
+    final JdbcTemplate jdbcTemplate;
+    final boolean enabled;
+    final int amount;
+    final int cap;
+    final int chunkSize;
+
+    public VoteReplenishmentService(ReplenishCheckpointRepository checkpointRepository,
+                                    VoteBalanceStore voteBalanceStore,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${rs.replenish.enabled:false}") boolean enabled,
+                                    @Value("${rs.replenish.amount:10}") int amount,
+                                    @Value("${rs.replenish.cap:10}") int cap,
+                                    @Value("${rs.replenish.chunk-size:10000}") int chunkSize) {
+        this.checkpointRepository = checkpointRepository;
+        this.voteBalanceStore = voteBalanceStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.amount = amount;
+        this.cap = cap;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${rs.replenish.cron:0 0 0 * * *}")
+    public void scheduledReplenish() {
+        if (enabled) {
+            replenish();
+        }
+    }
+
+    public synchronized ReplenishCheckpointDto replenish() {
+        ReplenishCheckpointDto checkpoint = checkpointRepository.findFirstByFinishedAtIsNullOrderByIdDesc()
+                .orElseGet(this::startRun);
+        long startedAt = System.currentTimeMillis();
+        while (checkpoint.getLastUserId() < checkpoint.getMaxUserId()) {
+            Integer chunkEnd = jdbcTemplate.queryForObject(CHUNK_END_SQL, Integer.class,
+                    checkpoint.getLastUserId(), chunkSize);
+            if (chunkEnd == null) {
+                break;
+            }
+            int from = checkpoint.getLastUserId();
+            int to = Math.min(chunkEnd, checkpoint.getMaxUserId());
+            int runAmount = checkpoint.getAmount();
+            int runCap = checkpoint.getCap();
+            int updated = voteBalanceStore.replenish(from, to, runAmount, runCap,
+                    () -> jdbcTemplate.update(REPLENISH_SQL, runAmount, runCap, from, to, runCap));
+            checkpoint.setLastUserId(to);
+            checkpoint.setReplenishedUsers(checkpoint.getReplenishedUsers() + updated);
+            checkpoint = checkpointRepository.save(checkpoint);
+        }
+        checkpoint.setFinishedAt(LocalDateTime.now());
+        checkpoint = checkpointRepository.save(checkpoint);
+        log.info("replenished votes of {} users in {} ms", checkpoint.getReplenishedUsers(),
+                System.currentTimeMillis() - startedAt);
+        return checkpoint;
+    }
+
+    private ReplenishCheckpointDto startRun() {
+        Integer maxUserId = jdbcTemplate.queryForObject("select max(id) from user", Integer.class);
+        return checkpointRepository.save(ReplenishCheckpointDto.builder()
+                .amount(amount)
+                .cap(cap)
+                .lastUserId(0)
+                .maxUserId(maxUserId == null ? 0 : maxUserId)
+                .startedAt(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,46 @@
+package com.thoughtworks.rslist.tracing;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens a span around every call to a Spring Data repository, named by the repository interface
+ * and method, e.g. {@code RsEventRepository.findById}. The repositories are already proxies, so the
+ * span is one more piece of advice on the proxy, placed first to include the transaction and
+ * exception translation around the query.
+ */
+@Component
+public class RepositoryTracing implements BeanPostProcessor {
+    private final Tracer tracer;
+
+    public RepositoryTracing(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (tracer.enabled && bean instanceof Repository && bean instanceof Advised
+                && !((Advised) bean).isFrozen()) {
+            Advised advised = (Advised) bean;
+            String repository = repositoryName(advised);
+            advised.addAdvice(0, (MethodInterceptor) invocation -> {
+                try (Tracer.Span ignored = tracer.span(repository + "." + invocation.getMethod().getName())) {
+                    return invocation.proceed();
+                }
+            });
+        }
+        return bean;
+    }
+
+    private static String repositoryName(Advised advised) {
+        for (Class<?> type : advised.getProxiedInterfaces()) {
+            if (Repository.class.isAssignableFrom(type) && type != Repository.class) {
+                return type.getSimpleName();
+            }
+        }
+        return "Repository";
+    }
+}
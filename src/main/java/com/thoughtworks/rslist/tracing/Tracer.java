@@ -0,0 +1,222 @@
+package com.thoughtworks.rslist.tracing;
+
+import com.thoughtworks.rslist.domain.RequestTrace;
+import com.thoughtworks.rslist.domain.TraceSpan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Request-scoped timing of named spans: repository calls, through {@link RepositoryTracing}, and
+ * service phases, through {@link #span}. {@link TracingFilter} opens a trace per request on the
+ * request's thread; a span opened on a thread without a trace, such as a scheduled job, costs
+ * nothing and records nothing.
+ *
+ * <p>Spans are aggregated by their path from the request down, e.g.
+ * {@code buy.rerank > RsEventRepository.save}, with a count, total and maximum, so a loop of ten
+ * thousand saves is one line of the breakdown. A trace keeps at most {@value #MAX_PATHS} paths;
+ * later ones are folded into {@value #OTHER_PATH}.
+ *
+ * <p>Requests slower than {@code rs.tracing.slow-threshold} are logged with their breakdown. The
+ * {@code rs.tracing.slowest-size} slowest requests of the current and the previous
+ * {@code rs.tracing.window} are kept for {@code GET /rs/traces/slowest}. Tracing is switched off
+ * altogether with {@code rs.tracing.enabled=false}.
+ */
+@Component
+public class Tracer {
+    static final int MAX_PATHS = 64;
+    static final String OTHER_PATH = "(other)";
+    private static final Logger log = LoggerFactory.getLogger(Tracer.class);
+    private static final Span NOOP = () -> {
+    };
+
+    final boolean enabled;
+    final long slowThresholdNanos;
+    final int slowestSize;
+    final long windowNanos;
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private final Object lock = new Object();
+    private PriorityQueue<RequestTrace> slowest;
+    private List<RequestTrace> previousSlowest = new ArrayList<>();
+    private long windowEnd;
+    private volatile long admitNanos;
+
+    public Tracer(@Value("${rs.tracing.enabled:true}") boolean enabled,
+                  @Value("${rs.tracing.slow-threshold:PT0.5S}") Duration slowThreshold,
+                  @Value("${rs.tracing.slowest-size:20}") int slowestSize,
+                  @Value("${rs.tracing.window:PT5M}") Duration window) {
+        this.enabled = enabled;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.slowestSize = slowestSize;
+        this.windowNanos = window.toNanos();
+        this.slowest = new PriorityQueue<>(Comparator.comparingDouble(RequestTrace::getDurationMillis));
+        this.windowEnd = System.nanoTime() + windowNanos;
+    }
+
+    /**
+     * Opens a span named {@code name} under the innermost open span of the current request; close
+     * it, with try-with-resources, when the phase ends.
+     */
+    public Span span(String name) {
+        Trace trace = current.get();
+        if (trace == null) {
+            return NOOP;
+        }
+        trace.push(name);
+        return trace;
+    }
+
+    /**
+     * The slowest recent requests, slowest first.
+     */
+    public List<RequestTrace> slowest(int limit) {
+        List<RequestTrace> traces;
+        synchronized (lock) {
+            rotate(System.nanoTime());
+            traces = new ArrayList<>(slowest);
+            traces.addAll(previousSlowest);
+        }
+        return traces.stream()
+                .sorted(Comparator.comparingDouble(RequestTrace::getDurationMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts the trace of a request on the calling thread, or returns null when tracing is off or a
+     * trace is already open.
+     */
+    Trace start() {
+        if (!enabled || current.get() != null) {
+            return null;
+        }
+        Trace trace = new Trace();
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Ends {@code trace}, logging it when slow and keeping it when among the slowest.
+     */
+    void finish(Trace trace, String name, int status) {
+        current.remove();
+        long end = System.nanoTime();
+        long duration = end - trace.startNanos;
+        if (duration >= slowThresholdNanos) {
+            log.warn("slow request {} answered {} in {} ms: {}", name, status, millis(duration), trace.breakdown());
+        }
+        if (duration < admitNanos && end < windowEnd) {
+            return;
+        }
+        RequestTrace requestTrace = RequestTrace.builder()
+                .name(name)
+                .status(status)
+                .startedAt(trace.startedAt)
+                .durationMillis(millis(duration))
+                .spans(trace.spans())
+                .build();
+        synchronized (lock) {
+            rotate(end);
+            slowest.add(requestTrace);
+            if (slowest.size() > slowestSize) {
+                slowest.poll();
+            }
+            admitNanos = slowest.size() < slowestSize ? 0 : (long) (slowest.peek().getDurationMillis() * 1e6);
+        }
+    }
+
+    private void rotate(long now) {
+        if (now < windowEnd) {
+            return;
+        }
+        previousSlowest = now - windowEnd < windowNanos ? new ArrayList<>(slowest) : new ArrayList<>();
+        slowest.clear();
+        admitNanos = 0;
+        windowEnd = now + windowNanos;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * An open span; closing it records its time.
+     */
+    @FunctionalInterface
+    public interface Span extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Open spans of one request as a stack of paths, and the time recorded per path. The trace is
+     * its own {@link Span}: closing it closes the innermost open span, which is the one the caller
+     * opened as long as spans are closed in order.
+     */
+    static final class Trace implements Span {
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final long startNanos = System.nanoTime();
+        private final Map<String, long[]> totals = new LinkedHashMap<>();
+        private String[] paths = new String[8];
+        private long[] starts = new long[8];
+        private int depth;
+
+        void push(String name) {
+            if (depth == paths.length) {
+                paths = Arrays.copyOf(paths, depth << 1);
+                starts = Arrays.copyOf(starts, depth << 1);
+            }
+            paths[depth] = depth == 0 ? name : paths[depth - 1] + " > " + name;
+            starts[depth++] = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (depth == 0) {
+                return;
+            }
+            long elapsed = System.nanoTime() - starts[--depth];
+            String path = paths[depth];
+            long[] total = totals.get(path);
+            if (total == null) {
+                if (totals.size() >= MAX_PATHS) {
+                    path = OTHER_PATH;
+                }
+                total = totals.computeIfAbsent(path, p -> new long[3]);
+            }
+            total[0]++;
+            total[1] += elapsed;
+            total[2] = Math.max(total[2], elapsed);
+        }
+
+        List<TraceSpan> spans() {
+            List<TraceSpan> spans = new ArrayList<>(totals.size());
+            totals.forEach((path, total) -> spans.add(TraceSpan.builder()
+                    .path(path)
+                    .count(total[0])
+                    .totalMillis(millis(total[1]))
+                    .maxMillis(millis(total[2]))
+                    .build()));
+            return spans;
+        }
+
+        String breakdown() {
+            return totals.entrySet().stream()
+                    .map(entry -> String.format("%s x%d %.1f ms", entry.getKey(), entry.getValue()[0],
+                            millis(entry.getValue()[1])))
+                    .collect(Collectors.joining(", "));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.thoughtworks.rslist.tracing;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Traces every request from the outermost filter, so the time spent in the other filters, such as
+ * compression, is part of it. A trace is named by the method and the matched mapping, e.g.
+ * {@code POST /rs/vote/{rsEventId}}, so the slowest requests group by endpoint rather than by id.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingFilter extends OncePerRequestFilter {
+    private final Tracer tracer;
+
+    public TracingFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Tracer.Trace trace = tracer.start();
+        if (trace == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            tracer.finish(trace, request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()),
+                    status);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.thoughtworks.rslist.votelog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only vote log kept in fixed-size, memory-mapped segment files.
+ *
+ * <p>Every vote is a 24-byte record: a marker, {@code userId}, {@code rsEventId}, {@code num} and
+ * the vote time in epoch millis. The marker is written last, so a record torn by a crash is
+ * recognised and becomes the end of the log when it is reopened. Records are addressed by their
+ * position, counted from 1. Segment {@code n} holds positions {@code n * segmentRecords + 1}
+ * onwards and is named after its first position.
+ *
+ * <p>A record reaches the page cache as soon as {@link #append} returns, so it survives a process
+ * crash. It survives a power loss only with {@code rs.vote-log.force} set, which syncs the segment
+ * on every append. Disabled unless {@code rs.vote-log.enabled} is set.
+ */
+@Component
+public class VoteLog {
+    static final int RECORD_BYTES = 24;
+    private static final int MARKER = 0x564F5445;
+
+    final boolean enabled;
+    final Path dir;
+    final int segmentRecords;
+    final boolean force;
+    final Clock clock;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private long head;
+
+    @Autowired
+    public VoteLog(@Value("${rs.vote-log.enabled:false}") boolean enabled,
+                   @Value("${rs.vote-log.dir:vote-log}") String dir,
+                   @Value("${rs.vote-log.segment-records:1048576}") int segmentRecords,
+                   @Value("${rs.vote-log.force:false}") boolean force) {
+        this(enabled, Paths.get(dir), segmentRecords, force, Clock.systemDefaultZone());
+    }
+
+    VoteLog(boolean enabled, Path dir, int segmentRecords, boolean force, Clock clock) {
+        this.enabled = enabled;
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+        this.force = force;
+        this.clock = clock;
+        if (enabled) {
+            open();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends one vote.
+     *
+     * @return the position of the new record
+     */
+    public synchronized int append(int userId, int rsEventId, int num, LocalDateTime time) {
+        long millis = time == null ? clock.millis() : time.atZone(clock.getZone()).toInstant().toEpochMilli();
+        long position = head + 1;
+        if (position > Integer.MAX_VALUE) {
+            throw new IllegalStateException("vote log is full");
+        }
+        MappedByteBuffer segment = segment(position, true);
+        int offset = offset(position);
+        segment.putInt(offset + 4, userId);
+        segment.putInt(offset + 8, rsEventId);
+        segment.putInt(offset + 12, num);
+        segment.putLong(offset + 16, millis);
+        segment.putInt(offset, MARKER);
+        if (force) {
+            segment.force();
+        }
+        head = position;
+        return (int) position;
+    }
+
+    public synchronized long head() {
+        return head;
+    }
+
+    /**
+     * Reads up to {@code max} records after position {@code from}, in order.
+     *
+     * @return the number of records read
+     */
+    public int read(long from, int max, RecordConsumer consumer) {
+        long to;
+        synchronized (this) {
+            to = Math.min(head, from + max);
+        }
+        for (long position = from + 1; position <= to; position++) {
+            MappedByteBuffer segment;
+            synchronized (this) {
+                segment = segment(position, false);
+            }
+            int offset = offset(position);
+            consumer.accept((int) position, segment.getInt(offset + 4), segment.getInt(offset + 8),
+                    segment.getInt(offset + 12), segment.getLong(offset + 16));
+        }
+        return (int) Math.max(0, to - from);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        segments.values().forEach(MappedByteBuffer::force);
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".seg"))
+                        .forEach(file -> segments.put(firstPosition(file), map(file)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        Map.Entry<Long, MappedByteBuffer> last = segments.lastEntry();
+        long position = last.getKey();
+        while (position < last.getKey() + segmentRecords
+                && last.getValue().getInt(offset(position)) == MARKER) {
+            position++;
+        }
+        head = position - 1;
+    }
+
+    private MappedByteBuffer segment(long position, boolean create) {
+        long first = (position - 1) / segmentRecords * segmentRecords + 1;
+        MappedByteBuffer segment = segments.get(first);
+        if (segment == null) {
+            if (!create) {
+                throw new IllegalStateException("vote log segment missing for position " + position);
+            }
+            segment = map(dir.resolve(String.format("%020d.seg", first)));
+            segments.put(first, segment);
+        }
+        return segment;
+    }
+
+    private MappedByteBuffer map(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int offset(long position) {
+        return (int) ((position - 1) % segmentRecords) * RECORD_BYTES;
+    }
+
+    private static long firstPosition(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - ".seg".length()));
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(int position, int userId, int rsEventId, int num, long epochMillis);
+    }
+}
@@ -0,0 +1,220 @@
+package com.thoughtworks.rslist.votelog;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.dto.VoteLogCheckpointDto;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.outbox.Outbox;
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
+import com.thoughtworks.rslist.repository.VoteLogCheckpointRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Materialises {@link VoteLog} records into {@code vote} rows and {@code rs_event.vote_num}.
+ *
+ * <p>Each batch is applied in one transaction together with the projected position, so a batch is
+ * projected exactly once even if the process dies halfway. Records whose user or event has been
+ * deleted in the meantime are skipped. Balances in {@code user.vote_num} stay with the
+ * write-behind {@code VoteBalanceStore}; the {@code log_seq} of each projected vote lets it
+ * reconcile balances against the log after a crash.
+ *
+ * <p>At startup the log is projected up to its head before the other warm-up listeners run. With
+ * {@code rs.vote-log.replay} set, every vote that came from the log is dropped first and the log
+ * is projected again from the start, which rebuilds {@code vote} and {@code rs_event.vote_num}.
+ */
+@Component
+public class VoteLogProjector {
+    private static final Logger log = LoggerFactory.getLogger(VoteLogProjector.class);
+
+    final VoteLog voteLog;
+    final InvalidationBus invalidationBus;
+    final Outbox outbox;
+    final RsEventColumns rsEventColumns;
+    final VoteRepository voteRepository;
+    final VoteLogCheckpointRepository checkpointRepository;
+    final NamedParameterJdbcTemplate jdbcTemplate;
+    final SecondLevelCache secondLevelCache;
+    final TransactionTemplate transactionTemplate;
+    final int batchSize;
+    final boolean replay;
+    private volatile long projected;
+    private volatile boolean started;
+
+    public VoteLogProjector(VoteLog voteLog,
+                            InvalidationBus invalidationBus,
+                            Outbox outbox,
+                            RsEventColumns rsEventColumns,
+                            VoteRepository voteRepository,
+                            VoteLogCheckpointRepository checkpointRepository,
+                            NamedParameterJdbcTemplate jdbcTemplate,
+                            SecondLevelCache secondLevelCache,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${rs.vote-log.projection-batch:1000}") int batchSize,
+                            @Value("${rs.vote-log.replay:false}") boolean replay) {
+        this.voteLog = voteLog;
+        this.invalidationBus = invalidationBus;
+        this.outbox = outbox;
+        this.rsEventColumns = rsEventColumns;
+        this.voteRepository = voteRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.secondLevelCache = secondLevelCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.replay = replay;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        if (!voteLog.isEnabled()) {
+            return;
+        }
+        if (replay) {
+            replay();
+            return;
+        }
+        synchronized (this) {
+            projected = checkpointRepository.findById(VoteLogCheckpointDto.ID)
+                    .map(VoteLogCheckpointDto::getPosition)
+                    .orElse(0L);
+            started = true;
+        }
+        project();
+    }
+
+    /**
+     * Projects every record appended so far.
+     *
+     * @return the number of records projected
+     */
+    @Scheduled(fixedDelayString = "${rs.vote-log.projection-interval:200}")
+    public synchronized int project() {
+        if (!started) {
+            return 0;
+        }
+        int total = 0;
+        int read;
+        do {
+            List<Record> records = new ArrayList<>(Math.min(batchSize, 1024));
+            read = voteLog.read(projected, batchSize, (position, userId, rsEventId, num, epochMillis) ->
+                    records.add(new Record(position, userId, rsEventId, num, epochMillis)));
+            if (read > 0) {
+                apply(records);
+                projected = records.get(records.size() - 1).position;
+                total += read;
+            }
+        } while (read == batchSize);
+        return total;
+    }
+
+    public long projected() {
+        return projected;
+    }
+
+    public synchronized void replay() {
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.getJdbcTemplate().update("delete from vote where log_seq is not null");
+            checkpointRepository.save(new VoteLogCheckpointDto(VoteLogCheckpointDto.ID, 0));
+            return null;
+        });
+        projected = 0;
+        started = true;
+        int replayed = project();
+        jdbcTemplate.getJdbcTemplate().update("update rs_event set vote_num = "
+                + "(select coalesce(sum(v.num), 0) from vote v where v.rs_event_id = rs_event.id and v.quarantined = false)");
+        secondLevelCache.evictAllRsEvents();
+        log.info("replayed {} votes from the vote log", replayed);
+    }
+
+    private void apply(List<Record> records) {
+        Set<Integer> rsEventIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        records.forEach(record -> {
+            rsEventIds.add(record.rsEventId);
+            userIds.add(record.userId);
+        });
+        Set<Integer> changed = transactionTemplate.execute(status -> {
+            Set<Integer> existingRsEvents = existing("select id from rs_event where id in (:ids)", rsEventIds);
+            Set<Integer> existingUsers = existing("select id from user where id in (:ids)", userIds);
+            List<VoteDto> votes = new ArrayList<>(records.size());
+            Map<Integer, Integer> rsEventVotes = new LinkedHashMap<>();
+            for (Record record : records) {
+                if (!existingRsEvents.contains(record.rsEventId) || !existingUsers.contains(record.userId)) {
+                    continue;
+                }
+                votes.add(VoteDto.builder()
+                        .num(record.num)
+                        .localDateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.epochMillis),
+                                ZoneId.systemDefault()))
+                        .user(UserDto.builder().id(record.userId).build())
+                        .rsEvent(RsEventDto.builder().id(record.rsEventId).build())
+                        .logSeq(record.position)
+                        .build());
+                rsEventVotes.merge(record.rsEventId, record.num, Integer::sum);
+            }
+            voteRepository.saveAll(votes);
+            outbox.recordVotes(votes);
+            List<Object[]> updates = new ArrayList<>(rsEventVotes.size());
+            rsEventVotes.forEach((rsEventId, num) -> updates.add(new Object[]{num, rsEventId}));
+            JdbcTemplate jdbc = jdbcTemplate.getJdbcTemplate();
+            jdbc.batchUpdate("update rs_event set vote_num = vote_num + ? where id = ?", updates);
+            secondLevelCache.evictRsEvents(new ArrayList<>(rsEventVotes.keySet()));
+            checkpointRepository.save(new VoteLogCheckpointDto(VoteLogCheckpointDto.ID,
+                    records.get(records.size() - 1).position));
+            if (votes.size() < records.size()) {
+                log.debug("skipped {} logged votes of deleted users or events", records.size() - votes.size());
+            }
+            return rsEventVotes.keySet();
+        });
+        rsEventColumns.touch(changed);
+        invalidationBus.publish(ChangeEvent.Type.RS_EVENT, changed);
+    }
+
+    private Set<Integer> existing(String sql, Set<Integer> ids) {
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Collections.singletonMap("ids", ids), Integer.class));
+    }
+
+    private static class Record {
+        final int position;
+        final int userId;
+        final int rsEventId;
+        final int num;
+        final long epochMillis;
+
+        Record(int position, int userId, int rsEventId, int num, long epochMillis) {
+            this.position = position;
+            this.userId = userId;
+            this.rsEventId = rsEventId;
+            this.num = num;
+            this.epochMillis = epochMillis;
+        }
+    }
+}
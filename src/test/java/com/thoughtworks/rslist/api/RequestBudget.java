@@ -0,0 +1,54 @@
+package com.thoughtworks.rslist.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a MockMvc request against a budget of SQL statements, counted by {@link StatementCounter},
+ * and of bytes allocated on the test thread while it ran.
+ *
+ * <p>Statement budgets are exact: a request must run exactly the number of statements it needs, so a
+ * stray {@code findAll} or a lazy load per row fails the test however small the fixture, and a
+ * statement saved shows up as a budget to lower. Allocation depends on what ran earlier in the JVM
+ * (class loading, the JIT, caches that fill on first use), so it is logged for every request and
+ * budgets sit about half above the most a cold run was measured to allocate: enough to catch a
+ * request that starts copying whole tables, not one that warmed up differently. Requests whose
+ * first call builds caches are best sent once before the measured call.
+ */
+class RequestBudget {
+    private static final Logger log = LoggerFactory.getLogger(RequestBudget.class);
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final MockMvc mockMvc;
+
+    RequestBudget(MockMvc mockMvc) {
+        this.mockMvc = mockMvc;
+    }
+
+    ResultActions perform(RequestBuilder request, int statements, long allocatedBytes) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long statementsBefore = StatementCounter.count();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        ResultActions result = mockMvc.perform(request);
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        long executed = StatementCounter.count() - statementsBefore;
+        String target = result.andReturn().getRequest().getMethod() + " "
+                + result.andReturn().getRequest().getRequestURI();
+        log.info("{} ran {} statements (budget {}) and allocated {} bytes (budget {})",
+                target, executed, statements, bytes, allocatedBytes);
+        assertEquals(statements, executed, () -> String.format("%s ran %d statements, budget %d",
+                target, executed, statements));
+        assertTrue(bytes <= allocatedBytes,
+                () -> String.format("%s allocated %d bytes, budget %d", target, bytes, allocatedBytes));
+        return result;
+    }
+}
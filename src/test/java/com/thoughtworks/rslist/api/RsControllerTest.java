@@ -1,34 +1,54 @@
 package com.thoughtworks.rslist.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.thoughtworks.rslist.domain.RsEvent;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.IdempotencyCache;
+import com.thoughtworks.rslist.service.RsService;
+import com.thoughtworks.rslist.service.VoteBalanceStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -45,6 +65,12 @@ class RsControllerTest {
     VoteRepository voteRepository;
     @Autowired
     TradeRepository tradeRepository;
+    @Autowired
+    VoteBalanceStore voteBalanceStore;
+    @Autowired
+    ApplicationEventPublisher publisher;
+    @Autowired
+    RsService rsService;
     private UserDto userDto;
 
     @BeforeEach
@@ -53,6 +79,7 @@ class RsControllerTest {
         voteRepository.deleteAll();
         rsEventRepository.deleteAll();
         userRepository.deleteAll();
+        publisher.publishEvent(new ChangeEvent(ChangeEvent.Type.RESYNC, new int[0]));
         userDto =
                 UserDto.builder()
                         .voteNum(10)
@@ -98,6 +125,134 @@ class RsControllerTest {
         mockMvc.perform(get("/rs/2")).andExpect(jsonPath("$.keyword", is("无分类")));
     }
 
+    @Test
+    public void shouldGetRsEventListOfOneKeyword() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto first = rsEventRepository.save(RsEventDto.builder().keyword("sports").eventName("first").user(save).build());
+        rsEventRepository.save(RsEventDto.builder().keyword("tech").eventName("second").user(save).build());
+        RsEventDto third = rsEventRepository.save(RsEventDto.builder().keyword("sports").eventName("third").user(save).build());
+        mockMvc.perform(post("/rs/vote/{id}", third.getId())
+                .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", save.getId(), LocalDateTime.now()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rs/list").param("keyword", "sports"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventName", is("third")))
+                .andExpect(jsonPath("$[0].rank", is(1)))
+                .andExpect(jsonPath("$[1].eventName", is(first.getEventName())));
+        mockMvc.perform(get("/rs/list").param("keyword", "sports").param("start", "2").param("end", "2"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("first")));
+        mockMvc.perform(get("/rs/list").param("keyword", "sports").param("mode", "hot"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldGetOnlyChangedEntriesSinceVersion() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto first = rsEventRepository.save(RsEventDto.builder().keyword("k").eventName("first").user(save).build());
+        RsEventDto second = rsEventRepository.save(RsEventDto.builder().keyword("k").eventName("second").user(save).build());
+        RsEventDto third = rsEventRepository.save(RsEventDto.builder().keyword("k").eventName("third").user(save).build());
+        mockMvc.perform(post("/rs/vote/{id}", first.getId())
+                .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(), LocalDateTime.now()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        String version = mockMvc.perform(get("/rs/list"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(RsController.LIST_VERSION_HEADER);
+
+        mockMvc.perform(post("/rs/vote/{id}", second.getId())
+                .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", save.getId(), LocalDateTime.now()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rs/list").param("sinceVersion", version))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.full", is(false)))
+                .andExpect(jsonPath("$.rsEvents", hasSize(2)))
+                .andExpect(jsonPath("$.rsEvents[0].eventName", is("second")))
+                .andExpect(jsonPath("$.rsEvents[0].rank", is(1)))
+                .andExpect(jsonPath("$.rsEvents[1].eventName", is("first")))
+                .andExpect(jsonPath("$.rsEvents[1].rank", is(2)));
+        rsEventRepository.deleteById(third.getId());
+        mockMvc.perform(get("/rs/list").param("sinceVersion", version).param("end", "1"))
+                .andExpect(jsonPath("$.rsEvents", hasSize(1)))
+                .andExpect(jsonPath("$.removed", contains(third.getId())));
+        mockMvc.perform(get("/rs/list").param("sinceVersion", "0"))
+                .andExpect(jsonPath("$.full", is(true)))
+                .andExpect(jsonPath("$.rsEvents", hasSize(2)));
+        mockMvc.perform(get("/rs/list").param("sinceVersion", version).param("keyword", "k"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldGetRsEventListAsSmile() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        rsEventRepository.save(RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+
+        byte[] body = mockMvc.perform(get("/rs/list").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        RsEvent[] rsEvents = new ObjectMapper(new SmileFactory()).readValue(body, RsEvent[].class);
+        assertEquals(1, rsEvents.length);
+        assertEquals("第一条事件", rsEvents[0].getEventName());
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedUntilRankingChanges() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(RsEventDto.builder().keyword("k").eventName("first").user(save).build());
+
+        MockHttpServletResponse response = mockMvc.perform(get("/rs/list"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=0, must-revalidate"))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse();
+        String etag = response.getHeader("ETag");
+        assertTrue(etag.matches("\"\\d+\""));
+
+        mockMvc.perform(get("/rs/list").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/rs/1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/rs/list").header("If-None-Match", etag).accept("application/x-jackson-smile"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/rs/list").header("If-Modified-Since", response.getHeader("Last-Modified")))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId())
+                .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(), LocalDateTime.now()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rs/list").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$[0].voteNum", is(1)));
+    }
+
+    @Test
+    public void shouldSearchRsEventsByKeywordAndName() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        rsEventRepository.save(RsEventDto.builder().keyword("体育").eventName("世界杯决赛").user(save).build());
+        rsEventRepository.save(RsEventDto.builder().keyword("sports").eventName("World Cup final").user(save).build());
+        rsEventRepository.save(RsEventDto.builder().keyword("tech").eventName("New phone").user(save).build());
+
+        mockMvc.perform(get("/rs/search").param("q", "world cu"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("World Cup final")));
+        mockMvc.perform(get("/rs/search").param("q", "世界杯"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].keyword", is("体育")));
+        mockMvc.perform(get("/rs/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void shouldGetErrorWhenIndexInvalid() throws Exception {
         mockMvc
@@ -170,6 +325,44 @@ class RsControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void shouldAddRsEventsInBulkAndReportMissingUsers() throws Exception {
+        UserDto save = userRepository.save(userDto);
+
+        String jsonValue = String.format("[{\"eventName\":\"猪肉涨价了\",\"keyword\":\"经济\",\"userId\":%d},"
+                        + "{\"eventName\":\"股市崩了\",\"keyword\":\"经济\",\"userId\":%d},"
+                        + "{\"keyword\":\"经济\",\"userId\":%d}]",
+                save.getId(), save.getId() + 100, save.getId());
+        mockMvc.perform(post("/rs/events").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.errors", hasSize(2)))
+                .andExpect(jsonPath("$.errors[0].index", is(1)))
+                .andExpect(jsonPath("$.errors[0].error", is("user not exist")))
+                .andExpect(jsonPath("$.errors[1].index", is(2)))
+                .andExpect(jsonPath("$.errors[1].error", is("eventName must not be null")));
+        List<RsEventDto> all = rsEventRepository.findAll();
+        assertEquals(1, all.size());
+        assertEquals("猪肉涨价了", all.get(0).getEventName());
+        assertEquals(save.getId(), all.get(0).getUser().getId());
+    }
+
+    @Test
+    public void shouldAddRsEventsFromNdjsonStream() throws Exception {
+        UserDto save = userRepository.save(userDto);
+
+        String ndjson = String.format("{\"eventName\":\"猪肉涨价了\",\"keyword\":\"经济\",\"userId\":%d}\n"
+                        + "{\"eventName\":\"股市崩了\",\"keyword\":\"经济\",\"userId\":%d}\n",
+                save.getId(), save.getId());
+        mockMvc.perform(post("/rs/events").content(ndjson).contentType("application/x-ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(2)))
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.errors", hasSize(0)));
+        assertEquals(2, rsEventRepository.findAll().size());
+    }
+
     @Test
     public void shouldVoteSuccess() throws Exception {
         UserDto save = userRepository.save(userDto);
@@ -187,6 +380,7 @@ class RsControllerTest {
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
 
+        voteBalanceStore.flush();
         UserDto userDto = userRepository.findById(save.getId()).get();
         RsEventDto newRsEvent = rsEventRepository.findById(rsEventDto.getId()).get();
         assertEquals(userDto.getVoteNum(), 9);
@@ -196,6 +390,103 @@ class RsControllerTest {
         assertEquals(voteDtos.get(0).getNum(), 1);
     }
 
+    @Test
+    void shouldRerankAfterVote() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto firstRsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).rank(1).build());
+        RsEventDto secondRsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("无分类").eventName("第二条事件").user(save).rank(2).build());
+
+        String jsonValue =
+                String.format(
+                        "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":3}",
+                        save.getId(), LocalDateTime.now().toString());
+        mockMvc.perform(
+                post("/rs/vote/{id}", secondRsEventDto.getId())
+                        .content(jsonValue)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/rs/list"))
+                .andExpect(jsonPath("$[0].eventName", is("第二条事件")))
+                .andExpect(jsonPath("$[0].rank", is(1)));
+
+        rsService.updateRanks();
+        assertEquals(1, rsEventRepository.findById(secondRsEventDto.getId()).get().getRank());
+        assertEquals(2, rsEventRepository.findById(firstRsEventDto.getId()).get().getRank());
+    }
+
+    @Test
+    void shouldReplayVoteRetriedWithSameIdempotencyKey() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+        String jsonValue =
+                String.format(
+                        "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}",
+                        save.getId(), LocalDateTime.now().toString());
+
+        for (int i = 0; i < 15; i++) {
+            mockMvc.perform(
+                    post("/rs/vote/{id}", rsEventDto.getId())
+                            .header(IdempotencyCache.HEADER, "retry-1")
+                            .content(jsonValue)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(i == 0
+                            ? header().doesNotExist(IdempotencyCache.REPLAYED_HEADER)
+                            : header().string(IdempotencyCache.REPLAYED_HEADER, "true"));
+        }
+
+        voteBalanceStore.flush();
+        assertEquals(1, voteRepository.findAll().size());
+        assertEquals(9, userRepository.findById(save.getId()).get().getVoteNum());
+    }
+
+    @Test
+    void shouldRejectIdempotencyKeyReusedForDifferentVote() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+        String time = LocalDateTime.now().toString();
+
+        mockMvc.perform(
+                post("/rs/vote/{id}", rsEventDto.getId())
+                        .header(IdempotencyCache.HEADER, "retry-2")
+                        .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(), time))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                post("/rs/vote/{id}", rsEventDto.getId())
+                        .header(IdempotencyCache.HEADER, "retry-2")
+                        .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", save.getId(), time))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("idempotency key reused with a different request")));
+    }
+
+    @Test
+    void shouldRejectIdempotencyKeyReusedForTradeWithSameHashCode() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+        Trade first = Trade.builder().amount(1).rank(0).build();
+        Trade second = Trade.builder().amount(0).rank(59).build();
+        assertEquals(first.hashCode(), second.hashCode());
+
+        mockMvc.perform(post("/rs/buy/{id}", rsEventDto.getId())
+                .header(IdempotencyCache.HEADER, "retry-3")
+                .content(new ObjectMapper().writeValueAsString(first))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/rs/buy/{id}", rsEventDto.getId())
+                .header(IdempotencyCache.HEADER, "retry-3")
+                .content(new ObjectMapper().writeValueAsString(second))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("idempotency key reused with a different request")));
+    }
+
     @Test
     void shouldBuyRsEventRank() throws Exception {
         UserDto save = userRepository.save(userDto);
@@ -461,4 +752,284 @@ class RsControllerTest {
                 .andExpect(jsonPath("$[2].eventName", is("第一条事件")));
 
     }
+
+    @Test
+    public void shouldGetRsEventListByHotnessWithPurchasedRankPinned() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto oldRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("旧事件").user(save).rank(1).build());
+        RsEventDto newRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("新事件").user(save).rank(2).build());
+        RsEventDto purchasedRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("购买事件").user(save).rank(3).build());
+
+        String oldVote = String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":5}",
+                save.getId(), LocalDateTime.now().minusDays(2).toString());
+        mockMvc.perform(post("/rs/vote/{id}", oldRsEventDto.getId())
+                .content(oldVote).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        String newVote = String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}",
+                save.getId(), LocalDateTime.now().toString());
+        mockMvc.perform(post("/rs/vote/{id}", newRsEventDto.getId())
+                .content(newVote).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        String trade = new ObjectMapper().writeValueAsString(Trade.builder().amount(100).rank(1).build());
+        mockMvc.perform(post("/rs/buy/{id}", purchasedRsEventDto.getId())
+                .content(trade).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rs/list"))
+                .andExpect(jsonPath("$[0].eventName", is("购买事件")))
+                .andExpect(jsonPath("$[1].eventName", is("旧事件")))
+                .andExpect(jsonPath("$[2].eventName", is("新事件")));
+        mockMvc.perform(get("/rs/list").param("mode", "hot"))
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].eventName", is("购买事件")))
+                .andExpect(jsonPath("$[1].eventName", is("新事件")))
+                .andExpect(jsonPath("$[1].rank", is(2)))
+                .andExpect(jsonPath("$[2].eventName", is("旧事件")));
+        mockMvc.perform(get("/rs/list").param("mode", "hot").param("start", "2").param("end", "2"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("新事件")));
+    }
+
+    @Test
+    public void shouldRejectInvalidIndexOfHotAndTrendingLists() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        for (String eventName : new String[]{"第一条事件", "第二条事件"}) {
+            rsEventRepository.save(RsEventDto.builder().keyword("无分类").eventName(eventName).user(save).build());
+        }
+
+        for (String[] range : new String[][]{{"0", "1"}, {"2", "1"}, {"1", "3"}}) {
+            mockMvc.perform(get("/rs/list").param("mode", "hot").param("start", range[0]).param("end", range[1]))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error", is("invalid index")));
+        }
+        for (String[] range : new String[][]{{"0", "1"}, {"2", "1"}}) {
+            mockMvc.perform(get("/rs/list").param("window", "1h").param("start", range[0]).param("end", range[1]))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error", is("invalid index")));
+        }
+        mockMvc.perform(get("/rs/list").param("mode", "hot").param("end", "1"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("第一条事件")));
+    }
+
+    @Test
+    public void shouldRejectUnknownRankingMode() throws Exception {
+        mockMvc.perform(get("/rs/list").param("mode", "random"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid mode")));
+    }
+
+    @Test
+    public void shouldGetTrendingRsEventsWithinWindow() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto yesterdayRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("昨天的事件").user(save).rank(1).build());
+        RsEventDto recentRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("刚发生的事件").user(save).rank(2).build());
+
+        String earlierVote = String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":5}",
+                save.getId(), LocalDateTime.now().minusHours(3).toString());
+        mockMvc.perform(post("/rs/vote/{id}", yesterdayRsEventDto.getId())
+                .content(earlierVote).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        String recentVote = String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}",
+                save.getId(), LocalDateTime.now().toString());
+        mockMvc.perform(post("/rs/vote/{id}", recentRsEventDto.getId())
+                .content(recentVote).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rs/list").param("window", "1h"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("刚发生的事件")))
+                .andExpect(jsonPath("$[0].voteNum", is(2)))
+                .andExpect(jsonPath("$[0].rank", is(1)));
+        mockMvc.perform(get("/rs/list").param("window", "24h"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventName", is("昨天的事件")))
+                .andExpect(jsonPath("$[0].voteNum", is(5)))
+                .andExpect(jsonPath("$[1].eventName", is("刚发生的事件")));
+        mockMvc.perform(get("/rs/list").param("window", "7d"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid window")));
+    }
+
+    @Test
+    public void shouldRankVotesRecordedByAnotherNodeOnceTheirEventIsRefreshed() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto quietRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("冷门事件").user(save).rank(1).build());
+        RsEventDto votedRsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("别处投票的事件").user(save).rank(2).build());
+        voteRepository.save(VoteDto.builder().num(3).localDateTime(LocalDateTime.now())
+                .rsEvent(votedRsEventDto).user(save).build());
+
+        mockMvc.perform(get("/rs/list").param("window", "1h"))
+                .andExpect(jsonPath("$", hasSize(0)));
+        publisher.publishEvent(new ChangeEvent(ChangeEvent.Type.RS_EVENT, new int[]{votedRsEventDto.getId()}));
+
+        mockMvc.perform(get("/rs/list").param("window", "1h"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("别处投票的事件")));
+        mockMvc.perform(get("/rs/list").param("mode", "hot"))
+                .andExpect(jsonPath("$[0].eventName", is("别处投票的事件")))
+                .andExpect(jsonPath("$[1].eventName", is(quietRsEventDto.getEventName())));
+    }
+
+    @Test
+    public void shouldListSlowestRequestsWithTheirSpans() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("第一条事件").user(save).rank(1).build());
+        mockMvc.perform(post("/rs/buy/{id}", rsEventDto.getId()).content("{\"amount\":10,\"rank\":1}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rs/traces/slowest").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].durationMillis").isNumber())
+                .andExpect(jsonPath("$[*].spans[*].path", hasItem(containsString("Repository."))));
+        mockMvc.perform(get("/rs/traces/slowest").param("limit", "1"))
+                .andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/rs/traces/slowest").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid limit")));
+    }
+
+    @Test
+    public void shouldServeLookupsFromSecondLevelCacheAndSeeRankChanges() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto first = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("第一条事件").user(save).rank(1).build());
+        RsEventDto second = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("第二条事件").user(save).rank(2).build());
+        assertEquals(first.getId(), rsEventRepository.findByRank(1).getId());
+
+        long before = StatementCounter.count();
+        assertEquals(2, rsEventRepository.findById(second.getId()).get().getRank());
+        assertEquals("idolice", userRepository.findById(save.getId()).get().getUserName());
+        assertEquals(first.getId(), rsEventRepository.findByRank(1).getId());
+        assertEquals(0, StatementCounter.count() - before);
+
+        mockMvc.perform(post("/rs/vote/{id}", second.getId())
+                .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", save.getId(),
+                        LocalDateTime.now()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        rsService.updateRanks();
+
+        RsEventDto voted = rsEventRepository.findById(second.getId()).get();
+        assertEquals(2, voted.getVoteNum());
+        assertEquals(1, voted.getRank());
+        assertEquals(2, rsEventRepository.findById(first.getId()).get().getRank());
+        assertEquals(second.getId(), rsEventRepository.findByRank(1).getId());
+        mockMvc.perform(get("/rs/cache-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled", is(true)))
+                .andExpect(jsonPath("$.regions[?(@.region == 'rsEvent')].hits", contains(greaterThan(0))))
+                .andExpect(jsonPath("$.regions[?(@.region == 'user')].hits", contains(greaterThan(0))));
+    }
+
+    @Test
+    public void shouldCountEveryConcurrentVoteOnOneEvent() throws Exception {
+        UserDto owner = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("keyword").eventName("contested").user(owner).build());
+        List<Callable<Integer>> votes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            UserDto voter = userRepository.save(UserDto.builder().userName("voter" + i).gender("male").age(20)
+                    .email("v@b.com").phone("18888888888").voteNum(10).build());
+            votes.add(() -> mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId())
+                    .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", voter.getId(),
+                            LocalDateTime.now()))
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andReturn().getResponse().getStatus());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(votes.size());
+        try {
+            for (Future<Integer> status : executor.invokeAll(votes)) {
+                assertEquals(200, status.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(8, rsEventRepository.findById(rsEventDto.getId()).get().getVoteNum());
+        mockMvc.perform(get("/rs/list"))
+                .andExpect(jsonPath("$[0].eventName", is("contested")))
+                .andExpect(jsonPath("$[0].voteNum", is(8)));
+    }
+
+    @Test
+    public void shouldEvictCachedRsEventsWhenTheirUserIsDeleted() {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .keyword("无分类").eventName("第一条事件").user(save).rank(1).build());
+        assertTrue(rsEventRepository.findById(rsEventDto.getId()).isPresent());
+
+        userRepository.deleteById(save.getId());
+
+        assertFalse(userRepository.findById(save.getId()).isPresent());
+        assertFalse(rsEventRepository.findById(rsEventDto.getId()).isPresent());
+    }
+
+    @Test
+    public void shouldServeEveryEndpointWithinItsBudget() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto[] rsEventDtos = new RsEventDto[5];
+        for (int i = 0; i < rsEventDtos.length; i++) {
+            UserDto owner = userRepository.save(UserDto.builder().userName("owner" + i).gender("male").age(20)
+                    .email("owner@b.com").phone("18888888888").build());
+            rsEventDtos[i] = rsEventRepository.save(RsEventDto.builder()
+                    .keyword("k").eventName("event " + i).user(owner).rank(i + 1).build());
+        }
+        RequestBudget budget = new RequestBudget(mockMvc);
+        String vote = String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(),
+                LocalDateTime.now());
+        String event = String.format("{\"eventName\":\"new event\",\"keyword\":\"k\",\"userId\":%d}",
+                save.getId());
+
+        mockMvc.perform(get("/rs/list"));
+        String version = budget.perform(get("/rs/list"), 1, 256 * 1024)
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andReturn().getResponse().getHeader(RsController.LIST_VERSION_HEADER);
+        mockMvc.perform(get("/rs/list").param("sinceVersion", version));
+        budget.perform(get("/rs/list").param("sinceVersion", version), 0, 128 * 1024)
+                .andExpect(jsonPath("$.rsEvents", hasSize(0)));
+        mockMvc.perform(get("/rs/list").param("mode", "hot"));
+        budget.perform(get("/rs/list").param("mode", "hot"), 1, 256 * 1024)
+                .andExpect(jsonPath("$", hasSize(5)));
+        mockMvc.perform(get("/rs/search").param("q", "event"));
+        budget.perform(get("/rs/search").param("q", "event"), 1, 256 * 1024)
+                .andExpect(jsonPath("$", hasSize(5)));
+        mockMvc.perform(get("/rs/1"));
+        budget.perform(get("/rs/5"), 1, 192 * 1024)
+                .andExpect(jsonPath("$.eventName", is("event 4")));
+        mockMvc.perform(get("/rs/rate-limit"));
+        budget.perform(get("/rs/rate-limit"), 0, 128 * 1024)
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/rs/fraud"));
+        budget.perform(get("/rs/fraud"), 0, 128 * 1024)
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/rs/event").content(event).contentType(MediaType.APPLICATION_JSON));
+        budget.perform(post("/rs/event").content(event).contentType(MediaType.APPLICATION_JSON), 2, 192 * 1024)
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/rs/events").content("[" + event + "]").contentType(MediaType.APPLICATION_JSON));
+        budget.perform(post("/rs/events").content("[" + event + "]").contentType(MediaType.APPLICATION_JSON),
+                4, 256 * 1024)
+                .andExpect(jsonPath("$.imported", is(1)));
+        mockMvc.perform(post("/rs/vote/{id}", rsEventDtos[0].getId()).content(vote)
+                .contentType(MediaType.APPLICATION_JSON));
+        budget.perform(post("/rs/vote/{id}", rsEventDtos[1].getId()).content(vote)
+                .contentType(MediaType.APPLICATION_JSON), 3, 256 * 1024)
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/rs/buy/{id}", rsEventDtos[2].getId()).content("{\"amount\":10,\"rank\":1}")
+                .contentType(MediaType.APPLICATION_JSON));
+        budget.perform(post("/rs/buy/{id}", rsEventDtos[3].getId()).content("{\"amount\":20,\"rank\":1}")
+                .contentType(MediaType.APPLICATION_JSON), 8, 1024 * 1024)
+                .andExpect(status().isOk());
+    }
 }
@@ -3,22 +3,36 @@ package com.thoughtworks.rslist.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thoughtworks.rslist.domain.User;
 import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -28,12 +42,18 @@ class UserControllerTest {
   ObjectMapper objectMapper;
   @Autowired UserRepository userRepository;
   @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired TradeRepository tradeRepository;
+  @Autowired ApplicationEventPublisher publisher;
 
   @BeforeEach
   void setUp() {
     objectMapper = new ObjectMapper();
+    tradeRepository.deleteAll();
+    voteRepository.deleteAll();
     rsEventRepository.deleteAll();
     userRepository.deleteAll();
+    publisher.publishEvent(new ChangeEvent(ChangeEvent.Type.RESYNC, new int[0]));
   }
 
   @Test
@@ -103,6 +123,42 @@ class UserControllerTest {
         .andExpect(status().isBadRequest());
   }
 
+  @Test
+  public void shouldRegisterUsersInBulkAndReportInvalidRows() throws Exception {
+    List<User> users =
+        Arrays.asList(
+            new User("idolice", "female", 19, "a@b.com", "18888888888"),
+            new User("idolice", "female", 17, "a@b.com", "18888888888"),
+            new User("xiaoli", "male", 20, "c@d.com", "18888888889"));
+    String request = objectMapper.writeValueAsString(users);
+    mockMvc
+        .perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(request))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.total", is(3)))
+        .andExpect(jsonPath("$.imported", is(2)))
+        .andExpect(jsonPath("$.errors", hasSize(1)))
+        .andExpect(jsonPath("$.errors[0].index", is(1)))
+        .andExpect(jsonPath("$.errors[0].error", is("age must be greater than or equal to 18")));
+    assertEquals(userRepository.findAll().size(), 2);
+  }
+
+  @Test
+  public void shouldRegisterUsersFromNdjsonStream() throws Exception {
+    String request =
+        objectMapper.writeValueAsString(new User("idolice", "female", 19, "a@b.com", "18888888888"))
+            + "\n{not json}\n"
+            + objectMapper.writeValueAsString(new User("xiaoli", "male", 20, "c@d.com", "18888888889"))
+            + "\n";
+    mockMvc
+        .perform(post("/users").contentType("application/x-ndjson").content(request))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.total", is(3)))
+        .andExpect(jsonPath("$.imported", is(2)))
+        .andExpect(jsonPath("$.errors[0].index", is(1)))
+        .andExpect(jsonPath("$.errors[0].error", is("invalid json")));
+    assertEquals(userRepository.findAll().size(), 2);
+  }
+
   @Test
   public void shouldDeleteUser() throws Exception {
     UserDto userDto =
@@ -123,5 +179,114 @@ class UserControllerTest {
 
     assertEquals(userRepository.findAll().size(), 0);
     assertEquals(rsEventRepository.findAll().size(), 0);
+
+    mockMvc.perform(delete("/user/{id}", save.getId())).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void shouldDeleteUserWithEventsVotesAndTradesInBackground() throws Exception {
+    UserDto owner =
+        userRepository.save(
+            UserDto.builder()
+                .voteNum(10)
+                .phone("18888888888")
+                .gender("female")
+                .email("a@b.com")
+                .age(19)
+                .userName("idolice")
+                .build());
+    UserDto voter =
+        userRepository.save(
+            UserDto.builder()
+                .voteNum(10)
+                .phone("18888888889")
+                .gender("male")
+                .email("c@d.com")
+                .age(20)
+                .userName("xiaoli")
+                .build());
+    RsEventDto ownerEvent =
+        rsEventRepository.save(
+            RsEventDto.builder().keyword("keyword").eventName("owner event").user(owner).rank(1).build());
+    rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("another owner event").user(owner).rank(2).build());
+    RsEventDto voterEvent =
+        rsEventRepository.save(
+            RsEventDto.builder().keyword("keyword").eventName("voter event").user(voter).rank(3).build());
+    voteRepository.save(
+        VoteDto.builder().user(voter).rsEvent(ownerEvent).num(1).localDateTime(LocalDateTime.now()).build());
+    voteRepository.save(
+        VoteDto.builder().user(owner).rsEvent(voterEvent).num(2).localDateTime(LocalDateTime.now()).build());
+    tradeRepository.save(TradeDto.builder().amount(100).rank(1).rsEventDto(ownerEvent).build());
+
+    MvcResult result =
+        mockMvc
+            .perform(delete("/user/{id}", owner.getId()).param("async", "true"))
+            .andExpect(status().isAccepted())
+            .andExpect(header().exists("Location"))
+            .andReturn();
+    String location = result.getResponse().getHeader("Location");
+    String status = "PENDING";
+    for (int i = 0; i < 100 && !status.equals("DONE") && !status.equals("FAILED"); i++) {
+      Thread.sleep(50);
+      status =
+          objectMapper
+              .readTree(mockMvc.perform(get(location)).andReturn().getResponse().getContentAsString())
+              .get("status")
+              .asText();
+    }
+
+    mockMvc
+        .perform(get(location))
+        .andExpect(jsonPath("$.status", is("DONE")))
+        .andExpect(jsonPath("$.deletedRsEvents", is(2)))
+        .andExpect(jsonPath("$.deletedVotes", is(2)))
+        .andExpect(jsonPath("$.deletedTrades", is(1)));
+    assertEquals(userRepository.findAll().size(), 1);
+    List<RsEventDto> remaining = rsEventRepository.findAll();
+    assertEquals(remaining.size(), 1);
+    assertEquals(remaining.get(0).getRank(), 1);
+    assertEquals(voteRepository.findAll().size(), 0);
+    assertEquals(tradeRepository.findAll().size(), 0);
+  }
+
+  @Test
+  public void shouldReturnNotFoundForUnknownDeletionJob() throws Exception {
+    mockMvc.perform(get("/user/deletion/{jobId}", "unknown")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void shouldServeEveryEndpointWithinItsBudget() throws Exception {
+    RequestBudget budget = new RequestBudget(mockMvc);
+    String first = objectMapper.writeValueAsString(new User("idolice", "female", 19, "a@b.com", "18888888888"));
+    String second = objectMapper.writeValueAsString(new User("xiaoli", "male", 20, "c@d.com", "18888888889"));
+
+    mockMvc.perform(post("/user").contentType(MediaType.APPLICATION_JSON).content(first));
+    budget
+        .perform(post("/user").contentType(MediaType.APPLICATION_JSON).content(second), 2, 192 * 1024)
+        .andExpect(status().isOk());
+    mockMvc.perform(post("/users").contentType(MediaType.APPLICATION_JSON).content("[" + first + "]"));
+    budget
+        .perform(
+            post("/users").contentType(MediaType.APPLICATION_JSON).content("[" + first + "," + second + "]"),
+            3, 192 * 1024)
+        .andExpect(jsonPath("$.imported", is(2)));
+    mockMvc.perform(post("/users").contentType("application/x-ndjson").content(first + "\n"));
+    budget
+        .perform(post("/users").contentType("application/x-ndjson").content(first + "\n" + second + "\n"),
+            3, 256 * 1024)
+        .andExpect(jsonPath("$.imported", is(2)));
+
+    List<UserDto> users = userRepository.findAll();
+    for (UserDto user : users) {
+      rsEventRepository.save(
+          RsEventDto.builder().keyword("keyword").eventName("eventName").user(user).build());
+    }
+    mockMvc.perform(delete("/user/{id}", users.get(0).getId()));
+    budget.perform(delete("/user/{id}", users.get(1).getId()), 8, 320 * 1024).andExpect(status().isOk());
+    mockMvc.perform(get("/user/deletion/{jobId}", "unknown"));
+    budget
+        .perform(get("/user/deletion/{jobId}", "unknown"), 0, 128 * 1024)
+        .andExpect(status().isNotFound());
   }
 }
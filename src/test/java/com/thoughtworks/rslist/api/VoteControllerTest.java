@@ -3,6 +3,7 @@ package com.thoughtworks.rslist.api;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
@@ -31,6 +33,8 @@ class VoteControllerTest {
     RsEventRepository rsEventRepository;
     @Autowired
     VoteRepository voteRepository;
+    @Autowired
+    ApplicationEventPublisher publisher;
     UserDto userDto;
     RsEventDto rsEventDto;
 
@@ -52,6 +56,7 @@ class VoteControllerTest {
         voteRepository.deleteAll();
         rsEventRepository.deleteAll();
         userRepository.deleteAll();
+        publisher.publishEvent(new ChangeEvent(ChangeEvent.Type.RESYNC, new int[0]));
       }
 
     @Test
@@ -107,4 +112,19 @@ class VoteControllerTest {
 
 
     }
+
+    @Test
+    public void shouldGetVoteRecordWithinItsBudget() throws Exception {
+      for (int i = 0; i < 6; i++) {
+        voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto).localDateTime(LocalDateTime.now())
+                .num(i + 1).build());
+      }
+      RequestBudget budget = new RequestBudget(mockMvc);
+
+      mockMvc.perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1"));
+      budget.perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1"), 1, 320 * 1024)
+              .andExpect(jsonPath("$", hasSize(5)));
+    }
 }
@@ -0,0 +1,23 @@
+package com.thoughtworks.rslist.fraud;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+    @Test
+    void shouldNeverUnderestimateAndStayCloseForHeavyKeys() {
+        CountMinSketch sketch = new CountMinSketch(1000, 4);
+        for (long key = 0; key < 10_000; key++) {
+            sketch.add(key, 1);
+        }
+        assertEquals(5001, sketch.add(42, 5000), 10_000 * Math.E / 1024);
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(sketch.estimate(key) >= (key == 42 ? 5001 : 1));
+        }
+
+        sketch.clear();
+        assertEquals(0, sketch.estimate(42));
+    }
+}
@@ -0,0 +1,36 @@
+package com.thoughtworks.rslist.fraud;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HyperLogLogTest {
+    @Test
+    void shouldEstimateDistinctKeysAndTheirUnion() {
+        HyperLogLog first = new HyperLogLog(10);
+        HyperLogLog second = new HyperLogLog(10);
+        for (long key = 0; key < 100_000; key++) {
+            first.add(key % 50_000);
+            second.add(key % 20_000 + 40_000);
+        }
+
+        assertEquals(50_000, first.estimate(), 50_000 * 0.1);
+        assertEquals(20_000, second.estimate(), 20_000 * 0.1);
+        assertEquals(60_000, first.estimate(second), 60_000 * 0.1);
+    }
+
+    @Test
+    void shouldCountSmallSetsAlmostExactly() {
+        HyperLogLog voters = new HyperLogLog(10);
+        for (int i = 0; i < 3; i++) {
+            for (long userId = 1; userId <= 40; userId++) {
+                voters.add(userId);
+            }
+        }
+
+        assertEquals(40, voters.estimate(), 2);
+
+        voters.clear();
+        assertEquals(0, voters.estimate());
+    }
+}
@@ -0,0 +1,107 @@
+package com.thoughtworks.rslist.fraud;
+
+import com.thoughtworks.rslist.domain.FraudStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoteFraudDetectorTest {
+    AtomicLong now = new AtomicLong(1_000_000_000L);
+    VoteFraudDetector voteFraudDetector;
+
+    @BeforeEach
+    void setUp() {
+        voteFraudDetector = detector(false);
+    }
+
+    @Test
+    void shouldFlagUserVotingInBurst() {
+        for (int rsEventId = 1; rsEventId <= 4; rsEventId++) {
+            assertTrue(voteFraudDetector.inspect(1, rsEventId, 5).isEmpty());
+        }
+
+        assertEquals(EnumSet.of(VoteFraudDetector.Anomaly.USER_BURST), voteFraudDetector.inspect(1, 5, 1));
+        assertTrue(voteFraudDetector.inspect(2, 5, 1).isEmpty());
+    }
+
+    @Test
+    void shouldFlagUserVotingForSameEventAgainAndAgain() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(voteFraudDetector.inspect(1, 1, 1).isEmpty());
+        }
+
+        assertEquals(EnumSet.of(VoteFraudDetector.Anomaly.REPEATED_PAIR), voteFraudDetector.inspect(1, 1, 1));
+        assertTrue(voteFraudDetector.inspect(1, 2, 1).isEmpty());
+    }
+
+    @Test
+    void shouldFlagEventWhoseVotesComeFromFewVoters() {
+        for (int userId = 1; userId <= 30; userId++) {
+            assertTrue(voteFraudDetector.inspect(userId, 1, 1).isEmpty());
+        }
+        for (int userId = 1; userId <= 10; userId++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(voteFraudDetector.inspect(userId, 2, 1).isEmpty());
+            }
+        }
+
+        assertTrue(voteFraudDetector.inspect(1, 2, 1).contains(VoteFraudDetector.Anomaly.CONCENTRATED_EVENT));
+        assertTrue(voteFraudDetector.inspect(31, 1, 1).isEmpty());
+    }
+
+    @Test
+    void shouldForgetVotesOlderThanTwoWindows() {
+        for (int i = 0; i < 5; i++) {
+            voteFraudDetector.inspect(1, 1, 1);
+        }
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertFalse(voteFraudDetector.inspect(1, 1, 1).isEmpty());
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertTrue(voteFraudDetector.inspect(1, 1, 1).isEmpty());
+    }
+
+    @Test
+    void shouldQuarantineOnlyWhenEnabled() {
+        for (int i = 0; i < 5; i++) {
+            assertFalse(voteFraudDetector.screen(1, 1, 1));
+        }
+        assertFalse(voteFraudDetector.screen(1, 1, 1));
+
+        VoteFraudDetector quarantining = detector(true);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(quarantining.screen(1, 1, 1));
+        }
+        assertTrue(quarantining.screen(1, 1, 1));
+
+        FraudStats stats = quarantining.getStats();
+        assertEquals(6, stats.getScreened());
+        assertEquals(1, stats.getFlagged());
+        assertEquals(1, stats.getQuarantined());
+        assertEquals(1, stats.getRepeatedPairs());
+        assertEquals(1, stats.getTrackedEvents());
+        assertEquals(0, voteFraudDetector.getStats().getQuarantined());
+    }
+
+    @Test
+    void shouldTrackOnlyMostRecentlyVotedEvents() {
+        for (int rsEventId = 1; rsEventId <= 5; rsEventId++) {
+            voteFraudDetector.inspect(rsEventId, rsEventId, 1);
+        }
+
+        assertEquals(3, voteFraudDetector.getStats().getTrackedEvents());
+    }
+
+    private VoteFraudDetector detector(boolean quarantine) {
+        return new VoteFraudDetector(true, quarantine, Duration.ofMinutes(1),
+                new VoteFraudDetector.Thresholds(20, 5, 30, 3), 3, 1024, 4, 10, now::get);
+    }
+}
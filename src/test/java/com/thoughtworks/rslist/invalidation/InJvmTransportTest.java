@@ -0,0 +1,46 @@
+package com.thoughtworks.rslist.invalidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InJvmTransportTest {
+    @Test
+    void shouldDeliverOnlyWithinTheChannel() {
+        List<byte[]> first = new ArrayList<>();
+        List<byte[]> second = new ArrayList<>();
+        List<byte[]> other = new ArrayList<>();
+        InJvmTransport sender = new InJvmTransport("nodes");
+        InJvmTransport receiver = new InJvmTransport("nodes");
+        InJvmTransport outsider = new InJvmTransport("other-nodes");
+        sender.start(first::add);
+        receiver.start(second::add);
+        outsider.start(other::add);
+
+        sender.send(new byte[]{1});
+        receiver.close();
+        sender.send(new byte[]{2});
+
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertTrue(other.isEmpty());
+    }
+
+    @Test
+    void shouldKeepContextsWithoutChannelApart() {
+        List<byte[]> first = new ArrayList<>();
+        List<byte[]> second = new ArrayList<>();
+        InJvmTransport sender = new InJvmTransport("");
+        new InJvmTransport("").start(second::add);
+        sender.start(first::add);
+
+        sender.send(new byte[]{1});
+
+        assertEquals(1, first.size());
+        assertTrue(second.isEmpty());
+    }
+}
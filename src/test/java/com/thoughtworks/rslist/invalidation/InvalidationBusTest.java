@@ -0,0 +1,119 @@
+package com.thoughtworks.rslist.invalidation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvalidationBusTest {
+    Network network;
+    List<Object> received;
+    InvalidationBus sender;
+    InvalidationBus receiver;
+
+    @BeforeEach
+    void setUp() {
+        network = new Network();
+        received = new ArrayList<>();
+        sender = new InvalidationBus(network.join(), event -> { });
+        receiver = new InvalidationBus(network.join(), received::add);
+        sender.start();
+        receiver.start();
+    }
+
+    @Test
+    void shouldDeliverToOtherNodesOnly() {
+        List<Object> own = new ArrayList<>();
+        InvalidationBus node = new InvalidationBus(network.join(), own::add);
+        node.start();
+
+        node.publish(ChangeEvent.Type.USER, 7);
+
+        assertTrue(own.isEmpty());
+        assertEquals(1, received.size());
+        ChangeEvent event = (ChangeEvent) received.get(0);
+        assertEquals(ChangeEvent.Type.USER, event.getType());
+        assertArrayEquals(new int[]{7}, event.getIds());
+    }
+
+    @Test
+    void shouldDropDuplicatesAndResyncOnGap() {
+        sender.publish(ChangeEvent.Type.RS_EVENT, 1);
+        network.replay(0);
+        network.drop = true;
+        sender.publish(ChangeEvent.Type.RS_EVENT, 2);
+        network.drop = false;
+        sender.publish(ChangeEvent.Type.RS_EVENT, 3);
+
+        assertEquals(Arrays.asList(ChangeEvent.Type.RS_EVENT, ChangeEvent.Type.RESYNC, ChangeEvent.Type.RS_EVENT),
+                received.stream().map(event -> ((ChangeEvent) event).getType()).collect(Collectors.toList()));
+        assertArrayEquals(new int[]{3}, ((ChangeEvent) received.get(2)).getIds());
+    }
+
+    @Test
+    void shouldSplitLargeChangesAndSkipEmptyOnes() {
+        List<Integer> ids = IntStream.rangeClosed(1, InvalidationBus.MAX_IDS + 1).boxed().collect(Collectors.toList());
+
+        sender.publish(ChangeEvent.Type.RS_EVENT, ids);
+        sender.publish(ChangeEvent.Type.USER, new ArrayList<>());
+        sender.publish(ChangeEvent.Type.RESYNC, new ArrayList<>());
+
+        assertEquals(3, received.size());
+        assertEquals(InvalidationBus.MAX_IDS, ((ChangeEvent) received.get(0)).getIds().length);
+        assertArrayEquals(new int[]{InvalidationBus.MAX_IDS + 1}, ((ChangeEvent) received.get(1)).getIds());
+        assertEquals(ChangeEvent.Type.RESYNC, ((ChangeEvent) received.get(2)).getType());
+    }
+
+    @Test
+    void shouldIgnoreMalformedMessages() {
+        network.deliver(new byte[]{1, 2, 3});
+        network.deliver(ByteBuffer.allocate(22).put((byte) 1).putLong(42).putLong(1).put((byte) 0).putInt(5).array());
+
+        assertTrue(received.isEmpty());
+    }
+
+    static class Network {
+        final List<Consumer<byte[]>> receivers = new ArrayList<>();
+        final List<byte[]> sent = new ArrayList<>();
+        boolean drop;
+
+        InvalidationTransport join() {
+            return new InvalidationTransport() {
+                @Override
+                public void send(byte[] message) {
+                    sent.add(message.clone());
+                    if (!drop) {
+                        deliver(message);
+                    }
+                }
+
+                @Override
+                public void start(Consumer<byte[]> receiver) {
+                    receivers.add(receiver);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        void replay(int index) {
+            deliver(sent.get(index));
+        }
+
+        void deliver(byte[] message) {
+            receivers.forEach(receiver -> receiver.accept(message.clone()));
+        }
+    }
+}
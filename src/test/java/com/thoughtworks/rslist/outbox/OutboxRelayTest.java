@@ -0,0 +1,112 @@
+package com.thoughtworks.rslist.outbox;
+
+import com.thoughtworks.rslist.dto.OutboxEventDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.OutboxEventRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "rs.outbox.enabled=true",
+        "rs.outbox.sink=memory",
+        "rs.outbox.batch-size=2",
+        "rs.outbox.relay-interval=3600000"})
+@AutoConfigureMockMvc
+class OutboxRelayTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+    @Autowired
+    OutboxRelay outboxRelay;
+    @SpyBean
+    MemoryOutboxSink memoryOutboxSink;
+    RsEventDto rsEvent;
+    UserDto user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        reset(memoryOutboxSink);
+        outboxEventRepository.deleteAll();
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+        memoryOutboxSink.clear();
+        user = userRepository.save(UserDto.builder().userName("idolice").gender("female").age(19)
+                .email("a@b.com").phone("18888888888").voteNum(10).build());
+        rsEvent = rsEventRepository.save(RsEventDto.builder().eventName("event").keyword("keyword")
+                .user(user).build());
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/rs/vote/{id}", rsEvent.getId())
+                    .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}",
+                            user.getId(), LocalDateTime.now()))
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/rs/buy/{id}", rsEvent.getId())
+                .content("{\"amount\":100,\"rank\":1}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldRelayVotesAndTradesInOrder() {
+        assertEquals(3, outboxEventRepository.count());
+
+        assertEquals(3, outboxRelay.relay());
+
+        List<OutboxEventDto> events = memoryOutboxSink.getEvents();
+        assertEquals(Arrays.asList(Outbox.VOTE, Outbox.VOTE, Outbox.TRADE),
+                events.stream().map(OutboxEventDto::getType).collect(Collectors.toList()));
+        assertTrue(events.get(0).getId() < events.get(1).getId());
+        assertTrue(events.get(2).getPayload().contains("\"amount\":100"));
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(0, outboxRelay.relay());
+    }
+
+    @Test
+    void shouldKeepEventsWhenSinkFails() throws IOException {
+        doThrow(new IllegalStateException("sink down")).when(memoryOutboxSink).deliver(any());
+
+        assertEquals(0, outboxRelay.relay());
+        assertEquals(3, outboxEventRepository.count());
+
+        reset(memoryOutboxSink);
+        assertEquals(3, outboxRelay.relay());
+        assertEquals(3, memoryOutboxSink.getEvents().size());
+    }
+}
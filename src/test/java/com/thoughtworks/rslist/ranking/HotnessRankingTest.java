@@ -0,0 +1,78 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotnessRankingTest {
+    HotnessRanking hotnessRanking;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.of(2026, 10, 19, 12, 0);
+        Clock clock = Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        hotnessRanking = new HotnessRanking(null, Duration.ofHours(1), clock);
+    }
+
+    @Test
+    void shouldHalveVoteWeightEveryHalfLife() {
+        hotnessRanking.record(1, 8, now.minusHours(2));
+        hotnessRanking.record(2, 4, now);
+
+        assertEquals(2, hotnessRanking.score(1), 1e-9);
+        assertEquals(4, hotnessRanking.score(2), 1e-9);
+    }
+
+    @Test
+    void shouldSelectHottestEventsThenUnvotedOnesById() {
+        hotnessRanking.record(4, 1, now);
+        hotnessRanking.record(2, 8, now.minusHours(2));
+        hotnessRanking.record(3, 4, now);
+
+        assertArrayEquals(new int[]{3, 2, 4, 1, 5}, hotnessRanking.top(new int[]{1, 2, 3, 4, 5, 6}, 5, 10));
+        assertArrayEquals(new int[]{3, 2}, hotnessRanking.top(new int[]{1, 2, 3, 4, 5}, 5, 2));
+    }
+
+    @Test
+    void shouldAccumulateVotesInLogSpace() {
+        hotnessRanking.record(1, 3, now);
+        hotnessRanking.record(1, 2, now.minusHours(1));
+        hotnessRanking.record(1, 5, now.minusHours(3));
+
+        assertEquals(3 + 1 + 0.625, hotnessRanking.score(1), 1e-9);
+    }
+
+    @Test
+    void shouldRankRecentVotesAboveOlderLargerTotals() {
+        hotnessRanking.record(1, 100, now.minusDays(1));
+        hotnessRanking.record(2, 1, now.minusMinutes(5));
+
+        assertTrue(hotnessRanking.logScore(2) > hotnessRanking.logScore(1));
+    }
+
+    @Test
+    void shouldTreatFutureVotesAsCastNow() {
+        hotnessRanking.record(1, 1, now.plusDays(1));
+
+        assertEquals(1, hotnessRanking.score(1), 1e-9);
+    }
+
+    @Test
+    void shouldForgetRemovedEvents() {
+        hotnessRanking.record(1, 1, now);
+        hotnessRanking.remove(Collections.singletonList(1));
+
+        assertEquals(Double.NEGATIVE_INFINITY, hotnessRanking.logScore(1));
+        assertEquals(0, hotnessRanking.score(1));
+    }
+}
@@ -0,0 +1,51 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class KeywordRankingsTest {
+    KeywordRankings keywordRankings;
+
+    @BeforeEach
+    void setUp() {
+        keywordRankings = new KeywordRankings(null);
+        keywordRankings.add(1, "sports", 5, 0, 0);
+        keywordRankings.add(2, "tech", 9, 0, 0);
+        keywordRankings.add(3, "sports", 2, 0, 0);
+        keywordRankings.add(4, "sports", 7, 0, 0);
+    }
+
+    @Test
+    void shouldRankEachKeywordOnItsOwn() {
+        keywordRankings.addVotes(3, 10);
+
+        assertArrayEquals(new int[]{3, 4, 1}, keywordRankings.top("sports", 10));
+        assertArrayEquals(new int[]{3, 4}, keywordRankings.top("sports", 2));
+        assertArrayEquals(new int[]{2}, keywordRankings.top("tech", 10));
+        assertArrayEquals(new int[0], keywordRankings.top("music", 10));
+    }
+
+    @Test
+    void shouldPinPurchasedEventAndFollowRemovals() {
+        keywordRankings.refresh(1, "sports", 5, 1, 100);
+        assertArrayEquals(new int[]{1, 4, 3}, keywordRankings.top("sports", 10));
+
+        keywordRankings.refresh(3, "sports", 2, 1, 200);
+        assertArrayEquals(new int[]{3, 4}, keywordRankings.top("sports", 10));
+
+        keywordRankings.remove(Collections.singletonList(3));
+        assertArrayEquals(new int[]{4}, keywordRankings.top("sports", 10));
+    }
+
+    @Test
+    void shouldMoveEventWhenKeywordChanges() {
+        keywordRankings.refresh(4, "tech", 7, 0, 0);
+
+        assertArrayEquals(new int[]{1, 3}, keywordRankings.top("sports", 10));
+        assertArrayEquals(new int[]{2, 4}, keywordRankings.top("tech", 10));
+    }
+}
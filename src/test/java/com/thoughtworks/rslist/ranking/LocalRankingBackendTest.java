@@ -0,0 +1,8 @@
+package com.thoughtworks.rslist.ranking;
+
+class LocalRankingBackendTest extends RankingBackendTest {
+    @Override
+    RankingBackend create() {
+        return new LocalRankingBackend(null);
+    }
+}
@@ -0,0 +1,444 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Redis stand-in for tests: serves RESP on a loopback port and implements the commands
+ * {@link RedisRankingBackend} sends, one command at a time like the real server.
+ *
+ * <p>Scripts run on LuaJ with {@code KEYS}, {@code ARGV} and {@code redis.call} bound the way Redis
+ * binds them, replies converted by the Redis rules (nil becomes {@code false}, a Lua number is
+ * truncated to an integer, a table is read up to its first nil). {@code EVALSHA} answers
+ * {@code NOSCRIPT} until the script has been sent once with {@code EVAL}, as a freshly started Redis
+ * does.
+ */
+class LocalRedisServer implements AutoCloseable {
+    private static final Object OK = new Object();
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Object> data = new HashMap<>();
+    private final Map<String, Long> expiresAt = new HashMap<>();
+    private final Map<String, LuaValue> scripts = new HashMap<>();
+    private final Globals lua = JsePlatform.standardGlobals();
+
+    LocalRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "local-redis");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                Object[] command = new Object[args.narg()];
+                for (int i = 0; i < command.length; i++) {
+                    command[i] = args.arg(i + 1).tojstring();
+                }
+                Object reply = LocalRedisServer.this.call(command);
+                if (reply instanceof Exception) {
+                    throw new LuaError(((Exception) reply).getMessage());
+                }
+                return toLua(reply);
+            }
+        });
+        lua.set("redis", redis);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * Runs one command; scripts call back in here the way Lua uses {@code redis.call}.
+     */
+    synchronized Object call(Object... command) {
+        String name = String.valueOf(command[0]).toUpperCase();
+        List<String> args = new ArrayList<>(command.length - 1);
+        for (int i = 1; i < command.length; i++) {
+            args.add(String.valueOf(command[i]));
+        }
+        long now = System.currentTimeMillis();
+        expiresAt.entrySet().removeIf(expiry -> expiry.getValue() <= now && data.remove(expiry.getKey()) != null);
+        switch (name) {
+            case "SET": {
+                boolean nx = false;
+                Long px = null;
+                for (int i = 2; i < args.size(); i++) {
+                    if ("NX".equalsIgnoreCase(args.get(i))) {
+                        nx = true;
+                    } else if ("PX".equalsIgnoreCase(args.get(i))) {
+                        px = Long.parseLong(args.get(++i));
+                    }
+                }
+                if (nx && data.containsKey(args.get(0))) {
+                    return null;
+                }
+                data.put(args.get(0), args.get(1));
+                expiresAt.remove(args.get(0));
+                if (px != null) {
+                    expiresAt.put(args.get(0), now + px);
+                }
+                return OK;
+            }
+            case "GET":
+                return (String) data.get(args.get(0));
+            case "EXISTS":
+                return data.containsKey(args.get(0)) ? 1L : 0L;
+            case "PEXPIRE":
+                if (!data.containsKey(args.get(0))) {
+                    return 0L;
+                }
+                expiresAt.put(args.get(0), now + Long.parseLong(args.get(1)));
+                return 1L;
+            case "DEL": {
+                long removed = 0;
+                for (String key : args) {
+                    expiresAt.remove(key);
+                    removed += data.remove(key) == null ? 0 : 1;
+                }
+                return removed;
+            }
+            case "ZADD":
+                return zadd(args);
+            case "ZREM": {
+                ZSet zset = zset(args.get(0));
+                long removed = 0;
+                for (String member : args.subList(1, args.size())) {
+                    removed += zset.remove(member) ? 1 : 0;
+                }
+                return removed;
+            }
+            case "ZSCORE": {
+                Double score = zset(args.get(0)).scores.get(args.get(1));
+                return score == null ? null : format(score);
+            }
+            case "ZCARD":
+                return (long) zset(args.get(0)).scores.size();
+            case "ZREVRANGE": {
+                ZSet zset = zset(args.get(0));
+                int size = zset.scores.size();
+                int start = index(Integer.parseInt(args.get(1)), size);
+                int stop = Math.min(index(Integer.parseInt(args.get(2)), size), size - 1);
+                List<Object> members = new ArrayList<>();
+                Iterator<String> iterator = zset.ordered.descendingIterator();
+                for (int i = 0; i <= stop && iterator.hasNext(); i++) {
+                    String member = iterator.next();
+                    if (i >= start) {
+                        members.add(member);
+                    }
+                }
+                return members;
+            }
+            case "HSET": {
+                Object previous = hash(args.get(0)).put(args.get(1), args.get(2));
+                return previous == null ? 1L : 0L;
+            }
+            case "HGET":
+                return hash(args.get(0)).get(args.get(1));
+            case "HEXISTS":
+                return hash(args.get(0)).containsKey(args.get(1)) ? 1L : 0L;
+            case "HDEL": {
+                Map<String, String> hash = hash(args.get(0));
+                long removed = 0;
+                for (String field : args.subList(1, args.size())) {
+                    removed += hash.remove(field) == null ? 0 : 1;
+                }
+                return removed;
+            }
+            case "HLEN":
+                return (long) hash(args.get(0)).size();
+            case "HGETALL": {
+                List<Object> pairs = new ArrayList<>();
+                hash(args.get(0)).forEach((field, value) -> {
+                    pairs.add(field);
+                    pairs.add(value);
+                });
+                return pairs;
+            }
+            case "EVAL": {
+                LuaValue script = lua.load(args.get(0), "script");
+                scripts.put(sha1(args.get(0)), script);
+                return eval(script, args);
+            }
+            case "EVALSHA": {
+                LuaValue script = scripts.get(args.get(0));
+                if (script == null) {
+                    return new IllegalStateException("NOSCRIPT No matching script. Please use EVAL.");
+                }
+                return eval(script, args);
+            }
+            default:
+                return new IllegalStateException("ERR unknown command '" + name + "'");
+        }
+    }
+
+    private Object eval(LuaValue script, List<String> args) {
+        int keyCount = Integer.parseInt(args.get(1));
+        lua.set("KEYS", toLua(args.subList(2, 2 + keyCount)));
+        lua.set("ARGV", toLua(args.subList(2 + keyCount, args.size())));
+        try {
+            return fromLua(script.call());
+        } catch (LuaError e) {
+            return new IllegalStateException("ERR Error running script: " + e.getMessage());
+        }
+    }
+
+    private static LuaValue toLua(Object reply) {
+        if (reply == null) {
+            return LuaValue.FALSE;
+        }
+        if (reply == OK) {
+            LuaTable status = new LuaTable();
+            status.set("ok", "OK");
+            return status;
+        }
+        if (reply instanceof Long) {
+            return LuaValue.valueOf((Long) reply);
+        }
+        if (reply instanceof List) {
+            LuaTable table = new LuaTable();
+            int i = 1;
+            for (Object item : (List<?>) reply) {
+                table.set(i++, toLua(item));
+            }
+            return table;
+        }
+        return LuaValue.valueOf(reply.toString());
+    }
+
+    private static Object fromLua(LuaValue value) {
+        switch (value.type()) {
+            case LuaValue.TNUMBER:
+                return (long) value.todouble();
+            case LuaValue.TSTRING:
+                return value.tojstring();
+            case LuaValue.TBOOLEAN:
+                return value.toboolean() ? 1L : null;
+            case LuaValue.TTABLE: {
+                if (value.get("err").isstring()) {
+                    return new IllegalStateException(value.get("err").tojstring());
+                }
+                if (value.get("ok").isstring()) {
+                    return OK;
+                }
+                List<Object> items = new ArrayList<>();
+                for (int i = 1; !value.get(i).isnil(); i++) {
+                    items.add(fromLua(value.get(i)));
+                }
+                return items;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private Object zadd(List<String> args) {
+        ZSet zset = zset(args.get(0));
+        boolean nx = false;
+        boolean xx = false;
+        boolean incr = false;
+        int i = 1;
+        for (; ; i++) {
+            String flag = args.get(i).toUpperCase();
+            if ("NX".equals(flag)) {
+                nx = true;
+            } else if ("XX".equals(flag)) {
+                xx = true;
+            } else if ("INCR".equals(flag)) {
+                incr = true;
+            } else {
+                break;
+            }
+        }
+        long added = 0;
+        Double last = null;
+        for (; i < args.size(); i += 2) {
+            double score = Double.parseDouble(args.get(i));
+            String member = args.get(i + 1);
+            Double current = zset.scores.get(member);
+            if (current == null ? xx : nx) {
+                last = null;
+                continue;
+            }
+            last = incr && current != null ? current + score : score;
+            zset.remove(member);
+            zset.put(member, last);
+            added += current == null ? 1 : 0;
+        }
+        if (incr) {
+            return last == null ? null : format(last);
+        }
+        return added;
+    }
+
+    private ZSet zset(String key) {
+        return (ZSet) data.computeIfAbsent(key, k -> new ZSet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key) {
+        return (Map<String, String>) data.computeIfAbsent(key, k -> new LinkedHashMap<String, String>());
+    }
+
+    private static int index(int index, int size) {
+        return index < 0 ? Math.max(0, size + index) : index;
+    }
+
+    private static String format(double score) {
+        return score == Math.rint(score) ? Long.toString((long) score) : Double.toString(score);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread connection = new Thread(() -> serve(socket), "local-redis-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket ignored = socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            while (true) {
+                Object[] command = readCommand(in);
+                Object reply;
+                try {
+                    reply = call(command);
+                } catch (RuntimeException e) {
+                    reply = new IllegalStateException("ERR " + e);
+                }
+                write(out, reply);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private static Object[] readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        Object[] command = new Object[Integer.parseInt(header.substring(1))];
+        for (int i = 0; i < command.length; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            readLine(in);
+            command[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            line.write(b);
+        }
+        in.read();
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(OutputStream out, Object reply) throws IOException {
+        if (reply == OK) {
+            out.write("+OK\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Exception) {
+            out.write(('-' + ((Exception) reply).getMessage() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long || reply instanceof Integer) {
+            out.write((":" + reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof List) {
+            List<?> items = (List<?>) reply;
+            out.write(("*" + items.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object item : items) {
+                write(out, item);
+            }
+        } else {
+            byte[] bytes = reply.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static String sha1(String script) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class ZSet {
+        final Map<String, Double> scores = new HashMap<>();
+        final TreeSet<String> ordered = new TreeSet<>(
+                Comparator.comparing((String member) -> scores.get(member)).thenComparing(member -> member));
+
+        void put(String member, double score) {
+            scores.put(member, score);
+            ordered.add(member);
+        }
+
+        boolean remove(String member) {
+            if (!scores.containsKey(member)) {
+                return false;
+            }
+            ordered.remove(member);
+            scores.remove(member);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RankSelectorTest {
+
+    @Test
+    void shouldSortPositionsByKeyKeepingOriginalOrderForTies() {
+        int[] keys = {3, -1, 3, 0, -1};
+
+        assertArrayEquals(new int[]{1, 4, 3, 0, 2}, RankSelector.sort(keys, keys.length));
+    }
+
+    @Test
+    void shouldSelectSmallestKeysInOrder() {
+        int[] keys = {5, 1, 4, 1, 3, 9, 2, 6};
+
+        assertArrayEquals(new int[]{1, 3, 6}, RankSelector.smallest(keys, keys.length, 3));
+    }
+
+    @Test
+    void shouldHandleEdgeSizes() {
+        int[] keys = {2, 1};
+
+        assertArrayEquals(new int[0], RankSelector.smallest(keys, keys.length, 0));
+        assertArrayEquals(new int[]{1, 0}, RankSelector.smallest(keys, keys.length, 10));
+        assertArrayEquals(new int[0], RankSelector.sort(new int[0], 0));
+    }
+
+    @Test
+    void shouldMatchStableSortOnRandomInput() {
+        Random random = new Random(42);
+        int[] keys = random.ints(10_000, -50, 50).toArray();
+        int[] expected = IntStream.range(0, keys.length).boxed()
+                .sorted(Comparator.comparingInt(position -> keys[position]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        assertArrayEquals(expected, RankSelector.sort(keys, keys.length));
+        assertArrayEquals(Arrays.copyOf(expected, 10), RankSelector.smallest(keys, keys.length, 10));
+        assertArrayEquals(Arrays.copyOf(expected, 700), RankSelector.smallest(keys, keys.length, 700));
+    }
+}
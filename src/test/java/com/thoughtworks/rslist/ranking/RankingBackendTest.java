@@ -0,0 +1,105 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Behaviour every {@link RankingBackend} must share; subclasses supply the implementation.
+ */
+abstract class RankingBackendTest {
+    RankingBackend rankingBackend;
+
+    abstract RankingBackend create() throws Exception;
+
+    @BeforeEach
+    void setUpBackend() throws Exception {
+        rankingBackend = create();
+    }
+
+    @Test
+    void shouldRankByVotesThenIdWithPurchasedSlotsPinned() {
+        rankingBackend.add(3, 5, 0, 0);
+        rankingBackend.add(1, 2, 0, 0);
+        rankingBackend.add(2, 5, 0, 0);
+        rankingBackend.add(4, 0, 2, 100);
+        rankingBackend.addVotes(1, 4);
+
+        assertArrayEquals(new int[]{1, 4, 2, 3}, rankingBackend.top(Integer.MAX_VALUE));
+        assertArrayEquals(new int[]{1, 4}, rankingBackend.top(2));
+    }
+
+    @Test
+    void shouldNotOverwriteKnownEventOrCountVotesOfPurchasedOnes() {
+        rankingBackend.add(1, 3, 0, 0);
+        rankingBackend.add(2, 1, 0, 0);
+        rankingBackend.add(1, 0, 0, 0);
+        assertEquals(0, rankingBackend.buy(2, 2, 50));
+
+        rankingBackend.addVotes(2, 10);
+        rankingBackend.addVotes(99, 10);
+
+        assertArrayEquals(new int[]{1, 2}, rankingBackend.top(10));
+    }
+
+    @Test
+    void shouldBuyOnlyWithHigherAmountWithinRange() {
+        rankingBackend.add(1, 3, 0, 0);
+        rankingBackend.add(2, 2, 0, 0);
+        rankingBackend.add(3, 1, 0, 0);
+
+        assertEquals(RankingBackend.REJECTED, rankingBackend.buy(3, 4, 100));
+        assertEquals(RankingBackend.REJECTED, rankingBackend.buy(3, 0, 100));
+        assertEquals(RankingBackend.REJECTED, rankingBackend.buy(99, 1, 100));
+        assertEquals(RankingBackend.REJECTED, rankingBackend.buy(3, 1, 0));
+        assertEquals(0, rankingBackend.buy(3, 1, 100));
+        assertEquals(RankingBackend.REJECTED, rankingBackend.buy(2, 1, 100));
+        assertArrayEquals(new int[]{3, 1, 2}, rankingBackend.top(10));
+
+        assertEquals(3, rankingBackend.buy(2, 1, 101));
+        assertArrayEquals(new int[]{2, 1}, rankingBackend.top(10));
+    }
+
+    @Test
+    void shouldMovePurchasedEventToNewSlot() {
+        rankingBackend.add(1, 3, 0, 0);
+        rankingBackend.add(2, 2, 0, 0);
+        rankingBackend.add(3, 1, 0, 0);
+
+        assertEquals(0, rankingBackend.buy(3, 1, 100));
+        assertEquals(0, rankingBackend.buy(3, 2, 100));
+
+        assertArrayEquals(new int[]{1, 3, 2}, rankingBackend.top(10));
+    }
+
+    @Test
+    void shouldFreeSlotWhenEventRemoved() {
+        rankingBackend.add(1, 3, 0, 0);
+        rankingBackend.add(2, 2, 0, 0);
+        rankingBackend.add(3, 1, 0, 0);
+        rankingBackend.buy(3, 1, 100);
+
+        rankingBackend.remove(Arrays.asList(3, 2));
+        rankingBackend.remove(Collections.emptyList());
+
+        assertArrayEquals(new int[]{1}, rankingBackend.top(10));
+        assertEquals(0, rankingBackend.buy(1, 1, 1));
+    }
+
+    @Test
+    void shouldKeepSlotsBeyondLastVotedEvent() {
+        rankingBackend.add(1, 3, 0, 0);
+        rankingBackend.add(2, 2, 0, 0);
+        rankingBackend.add(3, 1, 0, 0);
+        rankingBackend.buy(3, 3, 100);
+
+        rankingBackend.remove(Collections.singletonList(2));
+
+        assertArrayEquals(new int[]{1, 3}, rankingBackend.top(10));
+    }
+}
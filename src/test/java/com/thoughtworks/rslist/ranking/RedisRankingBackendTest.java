@@ -0,0 +1,105 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the backend and its Lua scripts against {@link LocalRedisServer}. Set
+ * {@code -Drs.test.redis=host:port} to run them against a Redis server instead; the test keys are
+ * deleted before each test.
+ */
+class RedisRankingBackendTest extends RankingBackendTest {
+    private static final String PREFIX = "rs:ranking:test:";
+    private static final long LOAD_LOCK_MILLIS = 300;
+
+    LocalRedisServer server;
+    RespClient client;
+    JdbcTemplate jdbcTemplate;
+    List<Long> loadedWhileFilling = new ArrayList<>();
+
+    @Override
+    RankingBackend create() throws Exception {
+        String target = System.getProperty("rs.test.redis");
+        if (target == null) {
+            server = new LocalRedisServer();
+            client = new RespClient("localhost", server.port(), 2000, 2);
+        } else {
+            String[] hostAndPort = target.split(":");
+            client = new RespClient(hostAndPort[0], Integer.parseInt(hostAndPort[1]), 2000, 2);
+        }
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:redis-ranking;DB_CLOSE_DELAY=-1")) {
+            @Override
+            public void query(String sql, RowCallbackHandler rowCallbackHandler) {
+                super.query(sql, (RowCallbackHandler) resultSet -> {
+                    loadedWhileFilling.add((Long) client.call("EXISTS", PREFIX + "loaded"));
+                    rowCallbackHandler.processRow(resultSet);
+                });
+            }
+        };
+        jdbcTemplate.execute("create table rs_event (id int primary key, vote_num int, rank int, amount int)");
+        jdbcTemplate.update("insert into rs_event values (1, 5, 0, 0), (2, 7, 0, 0), (3, 0, 1, 100)");
+        RedisRankingBackend rankingBackend = new RedisRankingBackend(client, jdbcTemplate, PREFIX, LOAD_LOCK_MILLIS);
+        client.call("DEL", rankingBackend.votesKey, rankingBackend.slotsKey, rankingBackend.purchasesKey,
+                rankingBackend.loadedKey, rankingBackend.loadingKey);
+        return rankingBackend;
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        jdbcTemplate.execute("drop table rs_event");
+        client.close();
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void shouldMarkLoadedOnlyOnceTheStoreIsFull() {
+        rankingBackend.load();
+
+        assertEquals(Arrays.asList(0L, 0L, 0L), loadedWhileFilling);
+        assertEquals(1L, client.call("EXISTS", PREFIX + "loaded"));
+        assertNull(client.call("GET", PREFIX + "loading"));
+        assertArrayEquals(new int[]{3, 2, 1}, rankingBackend.top(10));
+    }
+
+    @Test
+    void shouldReloadFromScratchWhenTheLoaderDiedHoldingTheLock() {
+        client.call("ZADD", PREFIX + "votes", 99, "0000000000");
+        client.call("SET", PREFIX + "loading", "dead-node", "PX", LOAD_LOCK_MILLIS);
+
+        rankingBackend.load();
+
+        assertEquals(3, loadedWhileFilling.size());
+        assertArrayEquals(new int[]{3, 2, 1}, rankingBackend.top(10));
+    }
+
+    @Test
+    void shouldWaitForAnotherNodeToFinishLoading() throws Exception {
+        client.call("SET", PREFIX + "loading", "other-node", "PX", 10_000);
+        Thread loader = new Thread(rankingBackend::load);
+        loader.start();
+
+        Thread.sleep(LOAD_LOCK_MILLIS);
+        assertTrue(loader.isAlive());
+        client.call("SET", PREFIX + "loaded", "1");
+        client.call("DEL", PREFIX + "loading");
+        loader.join(2000);
+
+        assertFalse(loader.isAlive());
+        assertTrue(loadedWhileFilling.isEmpty());
+    }
+}
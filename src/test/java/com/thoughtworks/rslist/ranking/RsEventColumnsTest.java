@@ -0,0 +1,186 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RsEventColumnsTest {
+    RsEventColumns rsEventColumns;
+    Map<Integer, Integer> written;
+
+    @BeforeEach
+    void setUp() {
+        rsEventColumns = new RsEventColumns(null);
+        written = new HashMap<>();
+    }
+
+    @Test
+    void shouldRankByVotesThenId() {
+        rsEventColumns.put(3, 5, 0, 0);
+        rsEventColumns.put(1, 2, 0, 0);
+        rsEventColumns.put(2, 5, 0, 0);
+
+        assertEquals(3, rsEventColumns.rerank(this::record));
+
+        assertEquals(1, rsEventColumns.rank(2));
+        assertEquals(2, rsEventColumns.rank(3));
+        assertEquals(3, rsEventColumns.rank(1));
+        assertEquals(3, written.size());
+    }
+
+    @Test
+    void shouldKeepPurchasedRanks() {
+        rsEventColumns.put(1, 10, 0, 0);
+        rsEventColumns.put(2, 8, 0, 0);
+        rsEventColumns.put(3, 0, 1, 100);
+        rsEventColumns.put(4, 1, 7, 50);
+
+        rsEventColumns.rerank(this::record);
+
+        assertEquals(1, rsEventColumns.rank(3));
+        assertEquals(2, rsEventColumns.rank(1));
+        assertEquals(3, rsEventColumns.rank(2));
+        assertEquals(4, rsEventColumns.rank(4));
+    }
+
+    @Test
+    void shouldWriteOnlyChangedRanks() {
+        rsEventColumns.put(1, 3, 1, 0);
+        rsEventColumns.put(2, 2, 2, 0);
+        rsEventColumns.put(3, 1, 3, 0);
+        rsEventColumns.put(3, 4, 3, 0);
+
+        assertEquals(3, rsEventColumns.rerank(this::record));
+        written.clear();
+        rsEventColumns.put(1, 5, 2, 0);
+
+        assertEquals(2, rsEventColumns.rerank(this::record));
+        assertEquals(2, written.size());
+        assertEquals(1, written.get(1));
+        assertEquals(2, written.get(3));
+    }
+
+    @Test
+    void shouldRewriteRanksAfterWriterFails() {
+        rsEventColumns.put(1, 1, 2, 0);
+        rsEventColumns.put(2, 2, 1, 0);
+        rsEventColumns.put(3, 3, 3, 0);
+
+        assertThrows(IllegalStateException.class, () -> rsEventColumns.rerank((ids, ranks, count) -> {
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(3, rsEventColumns.rank(1));
+        assertEquals(1, rsEventColumns.rank(3));
+        assertEquals(3, rsEventColumns.rerank(this::record));
+        assertEquals(3, written.get(1));
+        assertEquals(1, written.get(3));
+        written.clear();
+        assertEquals(0, rsEventColumns.rerank(this::record));
+    }
+
+    @Test
+    void shouldWriteWithoutHoldingTheLockAndRewriteRanksChangedMeanwhile() {
+        rsEventColumns.put(1, 1, 0, 0);
+        rsEventColumns.put(2, 2, 0, 0);
+        rsEventColumns.put(3, 3, 0, 0);
+
+        assertEquals(3, rsEventColumns.rerank((ids, ranks, count) -> {
+            rsEventColumns.addVotes(1, 5);
+            rsEventColumns.purchase(2, 1, 100);
+        }));
+
+        assertEquals(3, rsEventColumns.rerank(this::record));
+        assertEquals(1, written.get(2));
+        assertEquals(2, written.get(1));
+        assertEquals(3, written.get(3));
+    }
+
+    @Test
+    void shouldRebuildToSameRanksAsRerank() {
+        RsEventColumns sequential = new RsEventColumns(null);
+        Random random = new Random(7);
+        for (int id = 1; id <= 20_000; id++) {
+            int voteNum = random.nextInt(100);
+            int amount = id % 1000 == 0 ? id : 0;
+            int rank = amount > 0 ? id / 1000 : 0;
+            rsEventColumns.put(id, voteNum, rank, amount);
+            sequential.put(id, voteNum, rank, amount);
+        }
+
+        rsEventColumns.rebuild(this::record);
+        sequential.rerank((ids, ranks, count) -> {
+        });
+
+        for (int id = 1; id <= 20_000; id++) {
+            assertEquals(sequential.rank(id), rsEventColumns.rank(id));
+        }
+    }
+
+    @Test
+    void shouldRemoveEventsAndGrowPastInitialCapacity() {
+        for (int id = 5000; id > 0; id--) {
+            rsEventColumns.put(id, id, 0, 0);
+        }
+        rsEventColumns.remove(Arrays.asList(1, 2500, 5000, 9999));
+
+        assertEquals(4997, rsEventColumns.size());
+        rsEventColumns.rerank(this::record);
+        assertEquals(1, rsEventColumns.rank(4999));
+        assertEquals(4997, rsEventColumns.rank(2));
+        assertEquals(0, rsEventColumns.rank(2500));
+    }
+
+    @Test
+    void shouldReportChangesSinceVersion() {
+        rsEventColumns.put(1, 3, 1, 0);
+        rsEventColumns.put(2, 2, 2, 0);
+        rsEventColumns.put(3, 1, 3, 0);
+        long version = rsEventColumns.version();
+
+        rsEventColumns.put(2, 2, 2, 0);
+        rsEventColumns.addVotes(3, 5);
+        rsEventColumns.rerank(this::record);
+        rsEventColumns.remove(Arrays.asList(1, 4));
+
+        RsEventColumns.Changes changes = rsEventColumns.changesSince(version);
+        assertArrayEquals(new int[]{2, 3}, changes.getChanged());
+        assertArrayEquals(new int[]{1}, changes.getRemoved());
+        assertEquals(rsEventColumns.version(), changes.getVersion());
+        assertEquals(0, rsEventColumns.changesSince(changes.getVersion()).getChanged().length);
+        assertNull(rsEventColumns.changesSince(0));
+        assertNull(rsEventColumns.changesSince(changes.getVersion() + 1));
+    }
+
+    @Test
+    void shouldReportEventsAVoteOvertakesWithoutReranking() {
+        rsEventColumns.put(1, 5, 1, 0);
+        rsEventColumns.put(2, 3, 2, 0);
+        rsEventColumns.put(3, 3, 3, 0);
+        rsEventColumns.put(4, 9, 4, 100);
+        rsEventColumns.put(5, 1, 5, 0);
+        rsEventColumns.put(6, 0, 6, 0);
+        long version = rsEventColumns.version();
+
+        rsEventColumns.addVotes(5, 4);
+
+        assertArrayEquals(new int[]{2, 3, 5}, rsEventColumns.changesSince(version).getChanged());
+        assertEquals(5, rsEventColumns.rank(5));
+        assertEquals(0, written.size());
+    }
+
+    private void record(int[] ids, int[] ranks, int count) {
+        for (int i = 0; i < count; i++) {
+            written.put(ids[i], ranks[i]);
+        }
+    }
+}
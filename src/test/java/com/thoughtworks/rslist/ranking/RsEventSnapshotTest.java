@@ -0,0 +1,78 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class RsEventSnapshotTest {
+    @Mock
+    JdbcTemplate jdbcTemplate;
+    @TempDir
+    Path dir;
+    RsEventColumns rsEventColumns;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        rsEventColumns = new RsEventColumns(jdbcTemplate);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(10_050L);
+    }
+
+    @Test
+    void shouldRestoreColumnsAndCatchUpFromWatermark() throws Exception {
+        for (int id = 1; id <= 3000; id++) {
+            rsEventColumns.put(id, id % 7, id, id % 1000 == 0 ? 10 : 0);
+        }
+        RsEventSnapshot snapshot = new RsEventSnapshot(rsEventColumns, jdbcTemplate,
+                dir.resolve("ranking.bin").toString(), 50);
+        snapshot.write();
+
+        RsEventColumns restored = new RsEventColumns(jdbcTemplate);
+        when(jdbcTemplate.queryForObject("select count(*) from rs_event", Integer.class)).thenReturn(3000);
+
+        assertTrue(new RsEventSnapshot(restored, jdbcTemplate, dir.resolve("ranking.bin").toString(), 50)
+                .restore());
+        assertEquals(3000, restored.size());
+        assertEquals(1234, restored.rank(1234));
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(10_000L), eq(10_000L), eq(10_000L));
+    }
+
+    @Test
+    void shouldRejectSnapshotWhenRowCountDiffers() throws Exception {
+        rsEventColumns.put(1, 1, 1, 0);
+        RsEventSnapshot snapshot = new RsEventSnapshot(rsEventColumns, jdbcTemplate,
+                dir.resolve("ranking.bin").toString(), 50);
+        snapshot.write();
+        when(jdbcTemplate.queryForObject("select count(*) from rs_event", Integer.class)).thenReturn(0);
+
+        assertFalse(snapshot.restore());
+    }
+
+    @Test
+    void shouldFallBackToFullLoadWhenSnapshotIsCorrupt() throws Exception {
+        Path file = dir.resolve("ranking.bin");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        RsEventSnapshot snapshot = new RsEventSnapshot(rsEventColumns, jdbcTemplate, file.toString(), 50);
+
+        snapshot.warmUp();
+
+        verify(jdbcTemplate).query(eq("select id, vote_num, rank, amount from rs_event order by id"),
+                any(RowCallbackHandler.class));
+    }
+}
@@ -0,0 +1,128 @@
+package com.thoughtworks.rslist.ranking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrendingCountersTest {
+    MutableClock clock;
+    TrendingCounters trendingCounters;
+    LocalDateTime start;
+
+    @BeforeEach
+    void setUp() {
+        start = LocalDateTime.of(2026, 10, 19, 12, 0);
+        clock = new MutableClock(start.toInstant(ZoneOffset.UTC));
+        trendingCounters = new TrendingCounters(null, clock);
+    }
+
+    @Test
+    void shouldCountVotesInsideEachWindow() {
+        trendingCounters.record(1, 3, start.minusMinutes(30));
+        trendingCounters.record(1, 4, start.minusHours(5));
+        trendingCounters.record(1, 9, start.minusHours(30));
+
+        assertEquals(3, trendingCounters.count(1, TrendingWindow.ONE_HOUR));
+        assertEquals(7, trendingCounters.count(1, TrendingWindow.ONE_DAY));
+    }
+
+    @Test
+    void shouldSlideWindowsAsTimePasses() {
+        trendingCounters.record(1, 3, start);
+
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(3, trendingCounters.count(1, TrendingWindow.ONE_HOUR));
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(0, trendingCounters.count(1, TrendingWindow.ONE_HOUR));
+        assertEquals(3, trendingCounters.count(1, TrendingWindow.ONE_DAY));
+        clock.advance(Duration.ofHours(24));
+        assertEquals(0, trendingCounters.count(1, TrendingWindow.ONE_DAY));
+    }
+
+    @Test
+    void shouldNotLetAnOlderVoteResetTheCurrentBuckets() {
+        clock.advance(Duration.ofMinutes(30));
+        trendingCounters.record(1, 3, start.plusMinutes(30));
+
+        trendingCounters.record(1, 2, start.plusMinutes(30).minusMinutes(60));
+        trendingCounters.record(1, 4, start.plusMinutes(35).minusHours(24));
+
+        assertEquals(3, trendingCounters.count(1, TrendingWindow.ONE_HOUR));
+        assertEquals(5, trendingCounters.count(1, TrendingWindow.ONE_DAY));
+    }
+
+    @Test
+    void shouldReuseStaleBucketsForNewVotes() {
+        trendingCounters.record(1, 3, start);
+        clock.advance(Duration.ofHours(1));
+        trendingCounters.record(1, 2, start.plusHours(1));
+
+        assertEquals(2, trendingCounters.count(1, TrendingWindow.ONE_HOUR));
+        assertEquals(5, trendingCounters.count(1, TrendingWindow.ONE_DAY));
+    }
+
+    @Test
+    void shouldSelectTopEventsMostVotedFirst() {
+        trendingCounters.record(1, 1, start);
+        trendingCounters.record(2, 5, start);
+        trendingCounters.record(3, 3, start);
+        trendingCounters.record(4, 3, start);
+
+        List<TrendingCounters.TrendingEntry> top = trendingCounters.top(TrendingWindow.ONE_HOUR, 3);
+
+        assertEquals(3, top.size());
+        assertEquals(2, top.get(0).getRsEventId());
+        assertEquals(3, top.get(1).getRsEventId());
+        assertEquals(4, top.get(2).getRsEventId());
+        assertEquals(3, top.get(2).getCount());
+    }
+
+    @Test
+    void shouldEvictEventsWithoutVotesInLastDay() {
+        trendingCounters.record(1, 1, start);
+        clock.advance(Duration.ofHours(23));
+        trendingCounters.record(2, 1, start.plusHours(23));
+        clock.advance(Duration.ofHours(2));
+
+        trendingCounters.evictIdle();
+
+        assertEquals(1, trendingCounters.top(TrendingWindow.ONE_DAY, 10).size());
+        assertEquals(0, trendingCounters.count(1, TrendingWindow.ONE_DAY));
+    }
+
+    static class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
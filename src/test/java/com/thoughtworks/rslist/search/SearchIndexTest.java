@@ -0,0 +1,65 @@
+package com.thoughtworks.rslist.search;
+
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchIndexTest {
+    RsEventColumns rsEventColumns;
+    SearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        rsEventColumns = new RsEventColumns(null);
+        searchIndex = new SearchIndex(null, rsEventColumns);
+        index(1, "sports", "World Cup final tonight", 3);
+        index(2, "sports", "Cup noodles world record", 1);
+        index(3, "tech", "New phone launch", 2);
+        index(4, "体育", "世界杯决赛今晚开始", 4);
+    }
+
+    @Test
+    void shouldMatchAllTermsOrderedByRank() {
+        assertArrayEquals(new int[]{2, 1}, searchIndex.search("World CUP", 10));
+        assertArrayEquals(new int[]{1}, searchIndex.search("sports final", 10));
+        assertArrayEquals(new int[0], searchIndex.search("tech cup", 10));
+        assertArrayEquals(new int[]{2}, searchIndex.search("cup", 1));
+    }
+
+    @Test
+    void shouldMatchLastWordAsPrefix() {
+        assertArrayEquals(new int[]{2, 1}, searchIndex.search("wor", 10));
+        assertArrayEquals(new int[]{3}, searchIndex.search("phone lau", 10));
+        assertArrayEquals(new int[0], searchIndex.search("lau phone", 10));
+    }
+
+    @Test
+    void shouldMatchCjkCharactersAndPairs() {
+        assertArrayEquals(new int[]{4}, searchIndex.search("世界杯", 10));
+        assertArrayEquals(new int[]{4}, searchIndex.search("杯", 10));
+        assertArrayEquals(new int[0], searchIndex.search("杯世", 10));
+    }
+
+    @Test
+    void shouldFollowAddsAndRemoves() {
+        searchIndex.remove(Arrays.asList(1, 2));
+        index(5, "sports", "Cup winners parade", 0);
+
+        assertArrayEquals(new int[]{5}, searchIndex.search("cup", 10));
+        assertEquals(3, searchIndex.size());
+
+        searchIndex.remove(Collections.singletonList(5));
+        assertArrayEquals(new int[0], searchIndex.search("cup", 10));
+    }
+
+    private void index(int id, String keyword, String eventName, int rank) {
+        rsEventColumns.put(id, 0, rank, 0);
+        searchIndex.add(id, keyword, eventName);
+    }
+}
@@ -0,0 +1,109 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class RankRebuildServiceTest {
+    static final int EVENTS = 9;
+
+    HikariDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    RsEventColumns rsEventColumns;
+    RankRebuildService rankRebuildService;
+    @Mock
+    SecondLevelCache secondLevelCache;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:rank-rebuild;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setConnectionTimeout(1000);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table rs_event (id int primary key, rank int)");
+        rsEventColumns = new RsEventColumns(jdbcTemplate);
+        for (int id = 1; id <= EVENTS; id++) {
+            jdbcTemplate.update("insert into rs_event values (?, 0)", id);
+            rsEventColumns.put(id, id, 0, 0);
+        }
+        rankRebuildService = new RankRebuildService(rsEventColumns, jdbcTemplate, secondLevelCache, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rankRebuildService.shutdown();
+        jdbcTemplate.execute("drop table rs_event");
+        dataSource.close();
+    }
+
+    @Test
+    void shouldWriteRanksInParallelBatches() {
+        assertEquals(EVENTS, rankRebuildService.rebuild());
+
+        for (int id = 1; id <= EVENTS; id++) {
+            assertEquals(EVENTS + 1 - id, (int) jdbcTemplate.queryForObject(
+                    "select rank from rs_event where id = ?", Integer.class, id));
+        }
+    }
+
+    @Test
+    void shouldNotStarveVotersHoldingEveryConnection() throws Exception {
+        ExecutorService voters = Executors.newFixedThreadPool(2);
+        CountDownLatch connected = new CountDownLatch(2);
+        try {
+            List<Future<?>> votes = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                int rsEventId = i + 1;
+                votes.add(voters.submit(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        connected.countDown();
+                        connected.await();
+                        JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                        for (int vote = 0; vote < 20; vote++) {
+                            rsEventColumns.addVotes(rsEventId, EVENTS);
+                            rsEventColumns.rerank((ids, ranks, count) -> {
+                                for (int j = 0; j < count; j++) {
+                                    jdbc.update("update rs_event set rank = ? where id = ?", ranks[j], ids[j]);
+                                }
+                            });
+                        }
+                    }
+                    return null;
+                }));
+            }
+            connected.await();
+
+            rankRebuildService.rebuild();
+
+            for (Future<?> vote : votes) {
+                vote.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            voters.shutdown();
+        }
+        for (int id = 1; id <= EVENTS; id++) {
+            assertEquals(rsEventColumns.rank(id), (int) jdbcTemplate.queryForObject(
+                    "select rank from rs_event where id = ?", Integer.class, id));
+        }
+    }
+}
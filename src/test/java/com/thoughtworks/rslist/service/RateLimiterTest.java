@@ -0,0 +1,90 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.exception.TooManyRequestsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+    AtomicLong now = new AtomicLong(1_000_000_000L);
+    RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new RateLimiter(true, new RateLimiter.Limit(1, 3), new RateLimiter.Limit(10, 5), 2, now::get);
+    }
+
+    @Test
+    void shouldAllowBurstThenRefillAtRate() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquireVote(1, 100);
+        }
+        TooManyRequestsException exception =
+                assertThrows(TooManyRequestsException.class, () -> rateLimiter.acquireVote(1, 100));
+        assertEquals(1000, exception.getRetryAfterMillis(), 1);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        rateLimiter.acquireVote(1, 100);
+
+        assertEquals(1, rateLimiter.getStats().getUserRejections());
+    }
+
+    @Test
+    void shouldLimitEventAcrossUsers() {
+        for (int userId = 1; userId <= 2; userId++) {
+            rateLimiter.acquireVote(userId, 100);
+            rateLimiter.acquireVote(userId, 100);
+        }
+        rateLimiter.acquireBuy(100);
+
+        assertThrows(TooManyRequestsException.class, () -> rateLimiter.acquireBuy(100));
+        assertEquals(1, rateLimiter.getStats().getRsEventRejections());
+    }
+
+    @Test
+    void shouldNotChargeUserForVoteTheEventBucketRejects() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquireBuy(100);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThrows(TooManyRequestsException.class, () -> rateLimiter.acquireVote(1, 100));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquireVote(1, 200);
+        }
+        assertEquals(0, rateLimiter.getStats().getUserRejections());
+        assertEquals(3, rateLimiter.getStats().getRsEventRejections());
+    }
+
+    @Test
+    void shouldStopTrackingEventsBeyondMaxKeys() {
+        rateLimiter.acquireBuy(100);
+        rateLimiter.acquireBuy(200);
+        rateLimiter.acquireVote(1, 300);
+
+        assertEquals(2, rateLimiter.getStats().getTrackedRsEvents());
+        assertEquals(1, rateLimiter.getStats().getUntrackedRsEvents());
+    }
+
+    @Test
+    void shouldEvictRefilledBucketsAndStopTrackingBeyondMaxKeys() {
+        rateLimiter.acquireVote(1, 100);
+        rateLimiter.acquireVote(2, 100);
+        rateLimiter.acquireVote(3, 100);
+
+        assertEquals(2, rateLimiter.getStats().getTrackedUsers());
+        assertEquals(1, rateLimiter.getStats().getUntrackedUsers());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        rateLimiter.evictIdle();
+
+        assertEquals(0, rateLimiter.getStats().getTrackedUsers());
+        assertEquals(0, rateLimiter.getStats().getTrackedRsEvents());
+    }
+}
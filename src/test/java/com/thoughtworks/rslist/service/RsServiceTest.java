@@ -6,22 +6,40 @@ import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.fraud.VoteFraudDetector;
+import com.thoughtworks.rslist.invalidation.ChangeEvent;
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.outbox.Outbox;
+import com.thoughtworks.rslist.search.SearchIndex;
+import com.thoughtworks.rslist.ranking.HotnessRanking;
+import com.thoughtworks.rslist.ranking.KeywordRankings;
+import com.thoughtworks.rslist.ranking.RankingBackend;
+import com.thoughtworks.rslist.ranking.RsEventColumns;
+import com.thoughtworks.rslist.ranking.TrendingCounters;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
-import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.tracing.Tracer;
+import com.thoughtworks.rslist.votelog.VoteLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -32,18 +50,46 @@ class RsServiceTest {
     @Mock
     RsEventRepository rsEventRepository;
     @Mock
-    UserRepository userRepository;
-    @Mock
     VoteRepository voteRepository;
     @Mock
     TradeRepository tradeRepository;
+    @Mock
+    VoteBalanceStore voteBalanceStore;
+    @Mock
+    HotnessRanking hotnessRanking;
+    @Mock
+    TrendingCounters trendingCounters;
+    @Mock
+    RsEventColumns rsEventColumns;
+    @Mock
+    RankRebuildService rankRebuildService;
+    @Mock
+    VoteLog voteLog;
+    @Mock
+    RankingBackend rankingBackend;
+    @Mock
+    KeywordRankings keywordRankings;
+    @Mock
+    InvalidationBus invalidationBus;
+    @Mock
+    Outbox outbox;
+    @Mock
+    SearchIndex searchIndex;
+    @Mock
+    VoteFraudDetector voteFraudDetector;
+    @Mock
+    PlatformTransactionManager transactionManager;
     LocalDateTime localDateTime;
     Vote vote;
 
     @BeforeEach
     void setUp() {
         initMocks(this);
-        rsService = new RsService(rsEventRepository, userRepository, voteRepository, tradeRepository);
+        rsService = new RsService(rsEventRepository, voteRepository, tradeRepository, voteBalanceStore, hotnessRanking,
+                trendingCounters, rsEventColumns, rankRebuildService,
+                voteLog, rankingBackend, keywordRankings, invalidationBus, outbox, searchIndex,
+                voteFraudDetector, new Tracer(true, Duration.ofMillis(500), 20, Duration.ofMinutes(5)),
+                transactionManager);
         localDateTime = LocalDateTime.now();
         vote = Vote.builder().voteNum(2).rsEventId(1).time(localDateTime).userId(1).build();
     }
@@ -72,75 +118,135 @@ class RsServiceTest {
                         .build();
 
         when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
-        when(userRepository.findById(anyInt())).thenReturn(Optional.of(userDto));
+        when(voteRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(voteBalanceStore.debit(anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            ((IntSupplier) invocation.getArgument(2)).getAsInt();
+            return true;
+        });
         // when
         rsService.vote(vote, 1);
         // then
         verify(voteRepository).save(VoteDto.builder()
                 .num(2)
                 .localDateTime(localDateTime)
-                .user(userDto)
+                .user(UserDto.builder().id(vote.getUserId()).build())
+                .rsEvent(rsEventDto)
+                .build());
+        verify(voteBalanceStore).debit(eq(vote.getUserId()), eq(2), any());
+        verify(hotnessRanking).record(1, 2, localDateTime);
+        verify(trendingCounters).record(1, 2, localDateTime);
+        verify(rankRebuildService).writeVotes(1, 2);
+        verify(rsEventColumns).addVotes(1, 2);
+        verify(rankingBackend).addVotes(1, 2);
+        verify(keywordRankings).addVotes(1, 2);
+        verify(rsEventRepository, never()).save(any());
+        verify(rsEventColumns, never()).rerank(any());
+    }
+
+    @Test
+    void shouldRecordQuarantinedVoteWithoutCountingIt() {
+        RsEventDto rsEventDto = RsEventDto.builder().id(1).voteNum(2).build();
+        when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
+        when(voteRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(voteFraudDetector.screen(1, 1, 2)).thenReturn(true);
+        when(voteBalanceStore.debit(anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            ((IntSupplier) invocation.getArgument(2)).getAsInt();
+            return true;
+        });
+
+        rsService.vote(vote, 1);
+
+        verify(voteRepository).save(VoteDto.builder()
+                .num(2)
+                .localDateTime(localDateTime)
+                .user(UserDto.builder().id(vote.getUserId()).build())
                 .rsEvent(rsEventDto)
+                .quarantined(true)
                 .build());
-        verify(userRepository).save(userDto);
-        verify(rsEventRepository).save(rsEventDto);
+        verify(voteBalanceStore).debit(eq(vote.getUserId()), eq(2), any());
+        verify(hotnessRanking, never()).record(anyInt(), anyInt(), any());
+        verify(trendingCounters, never()).record(anyInt(), anyInt(), any());
+        verify(rankRebuildService, never()).writeVotes(anyInt(), anyInt());
+        verify(rankingBackend, never()).addVotes(anyInt(), anyInt());
+        verify(rsEventColumns, never()).rerank(any());
+        verify(rsEventColumns).touch(Collections.singletonList(1));
     }
 
     @Test
     void shouldThrowExceptionWhenUserNotExist() {
+        // given
+        when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(RsEventDto.builder().id(1).build()));
+        when(voteBalanceStore.debit(anyInt(), anyInt(), any())).thenReturn(false);
+        //when&then
+        assertThrows(
+                RuntimeException.class,
+                () -> {
+                    rsService.vote(vote, 1);
+                });
+        verify(rsEventRepository, never()).save(any());
+        verify(voteFraudDetector, never()).screen(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenRsEventNotExist() {
         // given
         when(rsEventRepository.findById(anyInt())).thenReturn(Optional.empty());
-        when(userRepository.findById(anyInt())).thenReturn(Optional.empty());
         //when&then
         assertThrows(
                 RuntimeException.class,
                 () -> {
                     rsService.vote(vote, 1);
                 });
+        verify(voteBalanceStore, never()).debit(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void shouldAppendVoteToLogWhenVoteLogEnabled() {
+        when(voteLog.isEnabled()).thenReturn(true);
+        when(rsEventColumns.contains(1)).thenReturn(true);
+        when(voteLog.append(1, 1, 2, localDateTime)).thenReturn(7);
+        when(voteBalanceStore.debit(anyInt(), anyInt(), any())).thenAnswer(invocation ->
+                ((IntSupplier) invocation.getArgument(2)).getAsInt() == 7);
+
+        rsService.vote(vote, 1);
+
+        verify(voteLog).append(1, 1, 2, localDateTime);
+        verify(rsEventColumns).addVotes(1, 2);
+        verify(rsEventColumns, never()).rerank(any());
+        verify(voteRepository, never()).save(any());
+        verify(rsEventRepository, never()).findById(anyInt());
     }
 
     @Test
     void shouldBuySuccess() {
-        RsEventDto firstRsEventDto = RsEventDto.builder()
-                .rank(1)
-                .amount(0)
-                .build();
-        RsEventDto secondRsEventDto = RsEventDto.builder()
+        RsEventDto rsEventDto = RsEventDto.builder()
+                .id(1)
                 .rank(2)
                 .amount(0)
                 .build();
-        List<RsEventDto> rsEventDtoList = new ArrayList<>();
-        rsEventDtoList.add(firstRsEventDto);
-        rsEventDtoList.add(secondRsEventDto);
-
         Trade trade = Trade.builder()
                 .amount(100)
                 .rank(1)
                 .build();
-        RsEventDto newFirstRsEventDto = RsEventDto.builder()
-                .rank(trade.getRank())
-                .amount(trade.getAmount())
-                .build();
-        RsEventDto newSecondRsEventDto = RsEventDto.builder()
-                .rank(trade.getRank())
-                .amount(trade.getAmount())
-                .build();
         // given
-        when(rsEventRepository.findById(anyInt()))
-                .thenReturn(Optional.of(secondRsEventDto));
-        when(rsEventRepository.findAll()).thenReturn(rsEventDtoList);
+        when(rsEventRepository.findById(1)).thenReturn(Optional.of(rsEventDto));
+        when(rankingBackend.buy(1, 1, 100)).thenReturn(0);
 
         //when
-        rsService.buy(trade, 1);
+        assertTrue(rsService.buy(trade, 1));
 
         //then
         verify(tradeRepository).save(TradeDto.builder()
                 .amount(trade.getAmount())
                 .rank(trade.getRank())
-                .rsEventDto(newSecondRsEventDto)
+                .rsEventDto(rsEventDto)
                 .build());
-        verify(rsEventRepository).save(newSecondRsEventDto);
-        verify(rsEventRepository).save(newFirstRsEventDto);
+        verify(rankRebuildService).writePurchase(1, trade.getRank(), trade.getAmount());
+        verify(rsEventColumns).purchase(1, trade.getRank(), trade.getAmount());
+        verify(rsEventColumns).rerank(any());
+        verify(rsEventRepository, never()).deleteById(anyInt());
+        verify(rsEventRepository, never()).findAll();
+        verify(rsEventRepository, never()).save(any());
     }
 
     @Test
@@ -156,135 +262,70 @@ class RsServiceTest {
         //when
         //then
         assertFalse(rsService.buy(trade, 1));
-    }
-
-    @Test
-    void shouldReturnFalseWhenRankBiggerThanRange() {
-        RsEventDto firstRsEventDto = RsEventDto.builder()
-                .rank(1)
-                .amount(0)
-                .build();
-        RsEventDto secondRsEventDto = RsEventDto.builder()
-                .rank(2)
-                .amount(0)
-                .build();
-        List<RsEventDto> rsEventDtoList = new ArrayList<>();
-        rsEventDtoList.add(firstRsEventDto);
-        rsEventDtoList.add(secondRsEventDto);
-
-        int indexBiggerThanRange = rsEventDtoList.size() + 1;
-
-        Trade trade = Trade.builder()
-                .amount(100)
-                .rank(indexBiggerThanRange)
-                .build();
-        // given
-        when(rsEventRepository.findById(anyInt()))
-                .thenReturn(Optional.of(secondRsEventDto));
-        when(rsEventRepository.findAll()).thenReturn(rsEventDtoList);
-
-        //when
-        //then
-        assertFalse(rsService.buy(trade, 1));
+        verify(rankingBackend, never()).buy(anyInt(), anyInt(), anyInt());
     }
 
     @Test
     void shouldReturnFalseWhenRankLessThanRange() {
-        RsEventDto firstRsEventDto = RsEventDto.builder()
-                .rank(1)
-                .amount(0)
-                .build();
-        RsEventDto secondRsEventDto = RsEventDto.builder()
-                .rank(2)
-                .amount(0)
-                .build();
-        List<RsEventDto> rsEventDtoList = new ArrayList<>();
-        rsEventDtoList.add(firstRsEventDto);
-        rsEventDtoList.add(secondRsEventDto);
-
-        int indexLessThanRange = 0;
-
         Trade trade = Trade.builder()
                 .amount(100)
-                .rank(indexLessThanRange)
+                .rank(0)
                 .build();
         // given
-        when(rsEventRepository.findById(anyInt()))
-                .thenReturn(Optional.of(secondRsEventDto));
-        when(rsEventRepository.findAll()).thenReturn(rsEventDtoList);
+        when(rsEventRepository.findById(1)).thenReturn(Optional.of(RsEventDto.builder().id(1).build()));
 
         //when
         //then
         assertFalse(rsService.buy(trade, 1));
+        verify(rankingBackend, never()).buy(anyInt(), anyInt(), anyInt());
     }
 
     @Test
-    void shouldReturnFalseWhenGivenLessAmount() {
-        RsEventDto firstRsEventDto = RsEventDto.builder()
-                .rank(1)
-                .amount(100)
-                .build();
-        RsEventDto secondRsEventDto = RsEventDto.builder()
-                .rank(2)
-                .amount(0)
-                .build();
-        List<RsEventDto> rsEventDtoList = new ArrayList<>();
-        rsEventDtoList.add(firstRsEventDto);
-        rsEventDtoList.add(secondRsEventDto);
-
-        int indexLessThanRange = 0;
-
+    void shouldReturnFalseWhenRankingBackendRejectsPurchase() {
         Trade trade = Trade.builder()
                 .amount(100)
-                .rank(firstRsEventDto.getRank())
+                .rank(3)
                 .build();
         // given
-        when(rsEventRepository.findById(anyInt()))
-                .thenReturn(Optional.of(secondRsEventDto));
-        when(rsEventRepository.findAll()).thenReturn(rsEventDtoList);
+        when(rsEventRepository.findById(1)).thenReturn(Optional.of(RsEventDto.builder().id(1).build()));
+        when(rankingBackend.buy(1, 3, 100)).thenReturn(RankingBackend.REJECTED);
 
         //when
         //then
         assertFalse(rsService.buy(trade, 1));
+        verify(rankRebuildService, never()).writePurchase(anyInt(), anyInt(), anyInt());
+        verify(tradeRepository, never()).save(any());
     }
 
     @Test
     void shouldReplacePurchasedRsEventWhenBuyRank() {
-        RsEventDto firstRsEventDto = RsEventDto.builder()
-                .rank(1)
-                .amount(100)
-                .build();
-        RsEventDto secondRsEventDto = RsEventDto.builder()
+        RsEventDto rsEventDto = RsEventDto.builder()
+                .id(1)
                 .rank(2)
                 .amount(0)
                 .build();
-        List<RsEventDto> rsEventDtoList = new ArrayList<>();
-        rsEventDtoList.add(firstRsEventDto);
-        rsEventDtoList.add(secondRsEventDto);
-
         Trade trade = Trade.builder()
                 .amount(101)
-                .rank(firstRsEventDto.getRank())
+                .rank(1)
                 .build();
 
-        RsEventDto newSecondRsEventDto = RsEventDto.builder()
-                .rank(trade.getRank())
-                .amount(trade.getAmount())
-                .build();
         // given
-        when(rsEventRepository.findById(anyInt()))
-                .thenReturn(Optional.of(secondRsEventDto));
-        when(rsEventRepository.findAll()).thenReturn(rsEventDtoList);
+        when(rsEventRepository.findById(1)).thenReturn(Optional.of(rsEventDto));
+        when(rankingBackend.buy(1, 1, 101)).thenReturn(5);
 
         //when
-        rsService.buy(trade, 1);
+        assertTrue(rsService.buy(trade, 1));
         //then
-        verify(rsEventRepository).deleteById(firstRsEventDto.getId());
+        verify(rsEventRepository).deleteById(5);
+        verify(hotnessRanking).remove(Collections.singletonList(5));
+        verify(trendingCounters).remove(Collections.singletonList(5));
         verify(tradeRepository).save(TradeDto.builder()
                 .amount(trade.getAmount())
                 .rank(trade.getRank())
-                .rsEventDto(newSecondRsEventDto)
+                .rsEventDto(rsEventDto)
                 .build());
-        verify(rsEventRepository).save(newSecondRsEventDto);
+        verify(rankRebuildService).writePurchase(1, trade.getRank(), trade.getAmount());
+        verify(invalidationBus).publish(ChangeEvent.Type.RS_EVENT, Arrays.asList(1, 5));
+        verify(rsEventRepository, never()).save(any());
     }
 }
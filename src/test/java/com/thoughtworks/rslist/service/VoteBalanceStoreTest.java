@@ -0,0 +1,161 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.invalidation.InvalidationBus;
+import com.thoughtworks.rslist.repository.SecondLevelCache;
+import com.thoughtworks.rslist.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class VoteBalanceStoreTest {
+    VoteBalanceStore voteBalanceStore;
+
+    @Mock
+    UserRepository userRepository;
+    @Mock
+    JdbcTemplate jdbcTemplate;
+    @Mock
+    InvalidationBus invalidationBus;
+    @Mock
+    SecondLevelCache secondLevelCache;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        voteBalanceStore = new VoteBalanceStore(userRepository, jdbcTemplate, invalidationBus, secondLevelCache, 2,
+                false);
+        when(userRepository.findVoteNumById(anyInt())).thenReturn(Optional.of(10));
+    }
+
+    @Test
+    void shouldDebitInMemoryAndLoadBalanceOnlyOnce() {
+        assertTrue(voteBalanceStore.debit(1, 3, () -> 100));
+        assertTrue(voteBalanceStore.debit(1, 7, () -> 101));
+
+        assertEquals(Optional.of(0), voteBalanceStore.getBalance(1));
+        verify(userRepository, times(1)).findVoteNumById(1);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void shouldRejectDebitWithoutRecordingVoteWhenBalanceIsInsufficient() {
+        assertFalse(voteBalanceStore.debit(1, 11, () -> {
+            throw new AssertionError("vote must not be recorded");
+        }));
+        assertEquals(Optional.of(10), voteBalanceStore.getBalance(1));
+    }
+
+    @Test
+    void shouldRejectDebitForUnknownUser() {
+        when(userRepository.findVoteNumById(9)).thenReturn(Optional.empty());
+
+        assertFalse(voteBalanceStore.debit(9, 1, () -> 100));
+    }
+
+    @Test
+    void shouldKeepBalanceWhenRecordingVoteFails() {
+        try {
+            voteBalanceStore.debit(1, 3, () -> {
+                throw new IllegalStateException();
+            });
+        } catch (IllegalStateException ignored) {
+        }
+
+        assertEquals(Optional.of(10), voteBalanceStore.getBalance(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldFlushDirtyBalancesWithWatermarkInOneBatch() {
+        voteBalanceStore.debit(1, 3, () -> 100);
+        voteBalanceStore.debit(2, 4, () -> 101);
+        voteBalanceStore.debit(2, 1, () -> 102);
+
+        voteBalanceStore.flush();
+        voteBalanceStore.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), rows.capture());
+        List<Object[]> written = rows.getValue();
+        assertEquals(2, written.size());
+        assertArrayEquals(new Object[]{7, 100, 1}, written.get(0));
+        assertArrayEquals(new Object[]{5, 102, 2}, written.get(1));
+    }
+
+    @Test
+    void shouldNotFlushBalancesThatWereOnlyRead() {
+        voteBalanceStore.getBalance(1);
+
+        voteBalanceStore.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStillFlushDirtyBalanceEvictedFromCache() {
+        voteBalanceStore.debit(1, 3, () -> 100);
+        voteBalanceStore.getBalance(2);
+        voteBalanceStore.getBalance(3);
+
+        voteBalanceStore.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertArrayEquals(new Object[]{7, 100, 1}, rows.getValue().get(0));
+    }
+
+    @Test
+    void shouldKeepEvictedBalanceVisibleWhileItIsBeingFlushed() {
+        voteBalanceStore.debit(1, 3, () -> 100);
+        voteBalanceStore.getBalance(2);
+        voteBalanceStore.getBalance(3);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            assertEquals(Optional.of(7), voteBalanceStore.getBalance(1));
+            return new int[]{1};
+        });
+
+        voteBalanceStore.flush();
+
+        verify(userRepository, times(1)).findVoteNumById(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldKeepBalanceDirtyUntilFlushCommits() {
+        voteBalanceStore.debit(1, 3, () -> 100);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            voteBalanceStore.invalidate(Collections.singletonList(1));
+            assertEquals(Optional.of(7), voteBalanceStore.getBalance(1));
+            voteBalanceStore.debit(1, 2, () -> 101);
+            return new int[]{1};
+        }).thenReturn(new int[]{1});
+
+        voteBalanceStore.flush();
+        voteBalanceStore.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture());
+        assertArrayEquals(new Object[]{5, 101, 1}, rows.getAllValues().get(1).get(0));
+        verify(userRepository, times(1)).findVoteNumById(1);
+    }
+}
@@ -0,0 +1,138 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ReplenishCheckpointDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.ReplenishCheckpointRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = {"rs.replenish.amount=5", "rs.replenish.cap=12", "rs.replenish.chunk-size=2"})
+class VoteReplenishmentServiceTest {
+    @Autowired
+    VoteReplenishmentService voteReplenishmentService;
+    @Autowired
+    VoteBalanceStore voteBalanceStore;
+    @Autowired
+    ReplenishCheckpointRepository checkpointRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        checkpointRepository.deleteAll();
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldReplenishAllUsersInChunksUpToCap() {
+        List<UserDto> users = saveUsers(0, 4, 9, 12, 11);
+
+        ReplenishCheckpointDto checkpoint = voteReplenishmentService.replenish();
+
+        assertNotNull(checkpoint.getFinishedAt());
+        assertEquals(users.get(users.size() - 1).getId(), checkpoint.getLastUserId());
+        assertEquals(4, checkpoint.getReplenishedUsers());
+        assertEquals(5, voteNumOf(users.get(0)));
+        assertEquals(9, voteNumOf(users.get(1)));
+        assertEquals(12, voteNumOf(users.get(2)));
+        assertEquals(12, voteNumOf(users.get(3)));
+        assertEquals(12, voteNumOf(users.get(4)));
+    }
+
+    @Test
+    void shouldCreditCachedBalanceWithoutLosingPendingDebits() {
+        List<UserDto> users = saveUsers(10);
+        int userId = users.get(0).getId();
+        voteBalanceStore.debit(userId, 8, () -> 0);
+
+        voteReplenishmentService.replenish();
+
+        assertEquals(Optional.of(7), voteBalanceStore.getBalance(userId));
+        voteBalanceStore.flush();
+        assertEquals(7, voteNumOf(users.get(0)));
+    }
+
+    @Test
+    void shouldKeepWatermarkWhenFlushingOnlyAReplenishedBalance() {
+        List<UserDto> users = saveUsers(10);
+        UserDto user = users.get(0);
+        RsEventDto rsEvent = rsEventRepository.save(RsEventDto.builder()
+                .eventName("event name").keyword("keyword").user(user).build());
+        VoteDto vote = voteRepository.save(VoteDto.builder()
+                .user(user).rsEvent(rsEvent).num(3).localDateTime(LocalDateTime.now()).build());
+        user.setVoteNum(7);
+        user.setVoteWatermark(vote.getId());
+        userRepository.save(user);
+        assertEquals(Optional.of(7), voteBalanceStore.getBalance(user.getId()));
+
+        voteReplenishmentService.replenish();
+        voteBalanceStore.flush();
+        voteBalanceStore.reconcile();
+
+        assertEquals(12, voteNumOf(user));
+    }
+
+    @Test
+    void shouldResumeUnfinishedRunFromCheckpoint() {
+        List<UserDto> users = saveUsers(0, 0, 0);
+        checkpointRepository.save(ReplenishCheckpointDto.builder()
+                .amount(1)
+                .cap(12)
+                .lastUserId(users.get(0).getId())
+                .maxUserId(users.get(2).getId())
+                .replenishedUsers(1)
+                .startedAt(LocalDateTime.now())
+                .build());
+
+        ReplenishCheckpointDto checkpoint = voteReplenishmentService.replenish();
+
+        assertEquals(3, checkpoint.getReplenishedUsers());
+        assertEquals(0, voteNumOf(users.get(0)));
+        assertEquals(1, voteNumOf(users.get(1)));
+        assertEquals(1, voteNumOf(users.get(2)));
+    }
+
+    private List<UserDto> saveUsers(int... voteNums) {
+        List<UserDto> users = new ArrayList<>();
+        for (int voteNum : voteNums) {
+            users.add(userRepository.save(UserDto.builder()
+                    .userName("idolice")
+                    .gender("female")
+                    .age(19)
+                    .email("a@b.com")
+                    .phone("18888888888")
+                    .voteNum(voteNum)
+                    .build()));
+        }
+        return users;
+    }
+
+    private int voteNumOf(UserDto user) {
+        return userRepository.findById(user.getId()).get().getVoteNum();
+    }
+}
@@ -0,0 +1,94 @@
+package com.thoughtworks.rslist.tracing;
+
+import com.thoughtworks.rslist.domain.RequestTrace;
+import com.thoughtworks.rslist.domain.TraceSpan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TracerTest {
+    Tracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        tracer = new Tracer(true, Duration.ofSeconds(10), 2, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void shouldAggregateSpansByPath() {
+        Tracer.Trace trace = tracer.start();
+        try (Tracer.Span ignored = tracer.span("RsEventRepository.findById")) {
+            // loaded
+        }
+        try (Tracer.Span rerank = tracer.span("buy.rerank")) {
+            for (int i = 0; i < 3; i++) {
+                try (Tracer.Span ignored = tracer.span("RsEventRepository.save")) {
+                    // saved
+                }
+            }
+        }
+        tracer.finish(trace, "POST /rs/buy/{id}", 200);
+
+        List<RequestTrace> slowest = tracer.slowest(10);
+        assertEquals(1, slowest.size());
+        assertEquals("POST /rs/buy/{id}", slowest.get(0).getName());
+        assertEquals(200, slowest.get(0).getStatus());
+        List<TraceSpan> spans = slowest.get(0).getSpans();
+        assertEquals(3, spans.size());
+        assertEquals("RsEventRepository.findById", spans.get(0).getPath());
+        assertEquals(1, spans.get(0).getCount());
+        assertEquals("buy.rerank > RsEventRepository.save", spans.get(1).getPath());
+        assertEquals(3, spans.get(1).getCount());
+        assertTrue(spans.get(1).getMaxMillis() <= spans.get(1).getTotalMillis());
+        assertEquals("buy.rerank", spans.get(2).getPath());
+        assertTrue(spans.get(2).getTotalMillis() >= spans.get(1).getTotalMillis());
+    }
+
+    @Test
+    void shouldKeepOnlyTheSlowestRequests() throws InterruptedException {
+        for (int sleep : new int[]{1, 40, 20, 5}) {
+            Tracer.Trace trace = tracer.start();
+            Thread.sleep(sleep);
+            tracer.finish(trace, "GET /sleep/" + sleep, 200);
+        }
+
+        List<RequestTrace> slowest = tracer.slowest(10);
+        assertEquals(2, slowest.size());
+        assertEquals("GET /sleep/40", slowest.get(0).getName());
+        assertEquals("GET /sleep/20", slowest.get(1).getName());
+        assertEquals(1, tracer.slowest(1).size());
+    }
+
+    @Test
+    void shouldFoldPathsBeyondTheCap() {
+        Tracer.Trace trace = tracer.start();
+        for (int i = 0; i < Tracer.MAX_PATHS + 5; i++) {
+            try (Tracer.Span ignored = tracer.span("phase" + i)) {
+                // timed
+            }
+        }
+        tracer.finish(trace, "GET /phases", 200);
+
+        List<TraceSpan> spans = tracer.slowest(1).get(0).getSpans();
+        assertEquals(Tracer.MAX_PATHS + 1, spans.size());
+        assertEquals(Tracer.OTHER_PATH, spans.get(Tracer.MAX_PATHS).getPath());
+        assertEquals(5, spans.get(Tracer.MAX_PATHS).getCount());
+    }
+
+    @Test
+    void shouldRecordNothingOutsideARequestOrWhenDisabled() {
+        try (Tracer.Span ignored = tracer.span("scheduled")) {
+            // not traced
+        }
+        assertTrue(tracer.slowest(10).isEmpty());
+
+        Tracer disabled = new Tracer(false, Duration.ofSeconds(10), 2, Duration.ofMinutes(5));
+        assertNull(disabled.start());
+    }
+}
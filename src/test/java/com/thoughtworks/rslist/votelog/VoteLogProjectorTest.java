@@ -0,0 +1,113 @@
+package com.thoughtworks.rslist.votelog;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.RsService;
+import com.thoughtworks.rslist.service.VoteBalanceStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "rs.vote-log.enabled=true",
+        "rs.vote-log.dir=${java.io.tmpdir}/rs-vote-log-test",
+        "rs.vote-log.segment-records=16",
+        "rs.vote-log.projection-interval=3600000"})
+@AutoConfigureMockMvc
+class VoteLogProjectorTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    @Autowired
+    VoteBalanceStore voteBalanceStore;
+    @Autowired
+    VoteLogProjector voteLogProjector;
+    @Autowired
+    RsService rsService;
+
+    @BeforeAll
+    @AfterAll
+    static void cleanUp() {
+        FileSystemUtils.deleteRecursively(Paths.get(System.getProperty("java.io.tmpdir"), "rs-vote-log-test").toFile());
+    }
+
+    @BeforeEach
+    void setUp() {
+        voteLogProjector.project();
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldProjectLoggedVotes() throws Exception {
+        UserDto user = userRepository.save(UserDto.builder().userName("idolice").gender("female").age(19)
+                .email("a@b.com").phone("18888888888").voteNum(10).build());
+        RsEventDto rsEvent = rsEventRepository.save(RsEventDto.builder().eventName("event").keyword("keyword")
+                .user(user).build());
+
+        for (int i = 0; i < 4; i++) {
+            mockMvc.perform(post("/rs/vote/{id}", rsEvent.getId())
+                    .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":%d}",
+                            user.getId(), LocalDateTime.now(), i < 3 ? 2 : 1))
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+        assertEquals(0, voteRepository.findAll().size());
+
+        assertEquals(4, voteLogProjector.project());
+        voteBalanceStore.flush();
+
+        List<VoteDto> votes = voteRepository.findAll();
+        assertEquals(4, votes.size());
+        assertEquals(7, rsEventRepository.findById(rsEvent.getId()).get().getVoteNum());
+        assertEquals(3, userRepository.findById(user.getId()).get().getVoteNum());
+        rsService.updateRanks();
+        assertEquals(1, rsEventRepository.findById(rsEvent.getId()).get().getRank());
+    }
+
+    @Test
+    void shouldSkipVotesOfDeletedEvents() throws Exception {
+        UserDto user = userRepository.save(UserDto.builder().userName("idolice").gender("female").age(19)
+                .email("a@b.com").phone("18888888888").voteNum(10).build());
+        RsEventDto rsEvent = rsEventRepository.save(RsEventDto.builder().eventName("event").keyword("keyword")
+                .user(user).build());
+        mockMvc.perform(post("/rs/vote/{id}", rsEvent.getId())
+                .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}",
+                        user.getId(), LocalDateTime.now()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        rsEventRepository.deleteAll();
+
+        assertEquals(1, voteLogProjector.project());
+        assertEquals(0, voteRepository.findAll().size());
+    }
+}
@@ -0,0 +1,73 @@
+package com.thoughtworks.rslist.votelog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VoteLogTest {
+    @TempDir
+    Path dir;
+    Clock clock = Clock.fixed(Instant.parse("2020-09-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void shouldReadAppendedRecordsAcrossSegments() {
+        VoteLog voteLog = new VoteLog(true, dir, 4, false, clock);
+        LocalDateTime time = LocalDateTime.of(2020, 9, 1, 8, 0);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, voteLog.append(i, 100 + i, i % 3 + 1, time));
+        }
+
+        List<int[]> records = new ArrayList<>();
+        assertEquals(5, voteLog.read(3, 5, (position, userId, rsEventId, num, epochMillis) -> {
+            assertEquals(time.toInstant(ZoneOffset.UTC).toEpochMilli(), epochMillis);
+            records.add(new int[]{position, userId, rsEventId, num});
+        }));
+
+        assertEquals(5, records.size());
+        assertEquals(4, records.get(0)[0]);
+        assertEquals(108, records.get(4)[2]);
+        assertEquals(3, Stream.of(dir.toFile().list()).count());
+    }
+
+    @Test
+    void shouldResumeAtHeadWhenReopened() {
+        VoteLog voteLog = new VoteLog(true, dir, 4, false, clock);
+        for (int i = 1; i <= 6; i++) {
+            voteLog.append(1, 1, 1, null);
+        }
+        voteLog.close();
+
+        VoteLog reopened = new VoteLog(true, dir, 4, false, clock);
+
+        assertEquals(6, reopened.head());
+        assertEquals(7, reopened.append(2, 2, 2, null));
+    }
+
+    @Test
+    void shouldStopAtTornRecord() throws Exception {
+        VoteLog voteLog = new VoteLog(true, dir, 8, false, clock);
+        for (int i = 1; i <= 3; i++) {
+            voteLog.append(1, 1, 1, null);
+        }
+        voteLog.close();
+        try (FileChannel channel = FileChannel.open(Files.list(dir).findFirst().get(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 2L * VoteLog.RECORD_BYTES);
+        }
+
+        assertEquals(2, new VoteLog(true, dir, 8, false, clock).head());
+    }
+}